@@ -0,0 +1,156 @@
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Prueba de escalabilidad de la grilla de casilleros.
+ * Lanza de 2 a 64 hilos que ocupan un casillero y lo liberan enseguida, sin ningún
+ * trabajo en el medio, y mide las operaciones (ocupar más liberar) por segundo para
+ * cada cantidad de hilos. Así toda la corrida pasa por el asignador y lo que se mide
+ * es cuánto serializa.
+ *
+ * Cada cantidad de hilos se corre contra dos asignadores: el actual
+ * ({@link SistemaAlmacenamiento}, con franjas, índice de libres y transiciones por
+ * CAS) y una copia del original, con un único lock para toda la grilla, sondeo al
+ * azar y {@code signalAll} al liberar (sin su log a consola). Al final de cada
+ * corrida verifica que todos los casilleros hayan quedado vacíos. Antes de medir se
+ * corre una vuelta de calentamiento de cada uno.
+ *
+ * Uso: java EscalabilidadCasilleros [duracionMs]
+ */
+public class EscalabilidadCasilleros {
+    private static final int[] HILOS = {2, 4, 8, 16, 32, 64};
+    private static final int CASILLEROS = 200;
+
+    /** Una operación del asignador: ocupar un casillero y liberarlo. */
+    private interface Ciclo {
+        void ejecutar();
+    }
+
+    /** Asignador original: un lock global sobre toda la grilla. */
+    private static class AsignadorGlobal {
+        private final boolean[] ocupados = new boolean[CASILLEROS];
+        private final ReentrantLock lock = new ReentrantLock(false);
+        private final Condition casilleroLibre = lock.newCondition();
+        private int visitados;
+
+        int ocupar() {
+            lock.lock();
+            try {
+                while (visitados == CASILLEROS) {
+                    casilleroLibre.awaitUninterruptibly();
+                }
+                while (true) {
+                    int nro = new Random().nextInt(CASILLEROS);
+                    if (!ocupados[nro]) {
+                        ocupados[nro] = true;
+                        visitados++;
+                        return nro;
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void desocupar(int nro) {
+            lock.lock();
+            try {
+                ocupados[nro] = false;
+                visitados--;
+                casilleroLibre.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        boolean vacio() {
+            return visitados == 0;
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        long duracionMs = args.length > 0 ? Long.parseLong(args[0]) : 1000;
+
+        // Calentamiento: que el JIT compile ambos asignadores antes de medir.
+        AsignadorGlobal calentarGlobal = new AsignadorGlobal();
+        SistemaAlmacenamiento calentarActual = new SistemaAlmacenamiento(Integer.MAX_VALUE);
+        calentarActual.setLogActivo(false);
+        correr(HILOS[0], duracionMs, () -> calentarGlobal.desocupar(calentarGlobal.ocupar()));
+        correr(HILOS[0], duracionMs, () -> calentarActual.desocuparCasillero(calentarActual.ocuparCasillero()));
+
+        System.out.printf("%6s %14s %8s %14s %8s %10s%n", "hilos", "global ops/s", "escala", "actual ops/s",
+                "escala", "actual/gl.");
+        double baseGlobal = 0;
+        double baseActual = 0;
+        boolean creciente = true;
+        double anterior = 0;
+        for (int nHilos : HILOS) {
+            AsignadorGlobal global = new AsignadorGlobal();
+            double opsGlobal = correr(nHilos, duracionMs, () -> global.desocupar(global.ocupar()));
+            if (!global.vacio()) {
+                throw new IllegalStateException("Casillero no liberado tras la corrida global de " + nHilos + " hilos");
+            }
+
+            SistemaAlmacenamiento sistema = new SistemaAlmacenamiento(Integer.MAX_VALUE);
+            sistema.setLogActivo(false);
+            double opsActual = correr(nHilos, duracionMs, () -> sistema.desocuparCasillero(sistema.ocuparCasillero()));
+            ArrayList<Casillero> matriz = sistema.getMatrizCasilleros();
+            for (Casillero c : matriz) {
+                if (!c.estaVacio()) {
+                    throw new IllegalStateException("Casillero no liberado tras la corrida de " + nHilos + " hilos");
+                }
+            }
+
+            if (baseGlobal == 0) {
+                baseGlobal = opsGlobal;
+                baseActual = opsActual;
+            }
+            if (opsActual < anterior) {
+                creciente = false;
+            }
+            anterior = opsActual;
+            System.out.printf("%6d %14.0f %7.2fx %14.0f %7.2fx %9.2fx%n", nHilos, opsGlobal, opsGlobal / baseGlobal,
+                    opsActual, opsActual / baseActual, opsActual / opsGlobal);
+        }
+        System.out.printf("Procesadores disponibles: %d%n", Runtime.getRuntime().availableProcessors());
+        System.out.println(creciente ? "OK: el throughput del asignador actual crece con la cantidad de hilos"
+                                     : "AVISO: el throughput del asignador actual no creció en todos los pasos");
+    }
+
+    private static double correr(int nHilos, long duracionMs, Ciclo ciclo) throws InterruptedException {
+        LongAdder operaciones = new LongAdder();
+        CountDownLatch largada = new CountDownLatch(1);
+        long[] fin = new long[1];
+
+        Thread[] hilos = new Thread[nHilos];
+        for (int i = 0; i < nHilos; i++) {
+            hilos[i] = new Thread(() -> {
+                try {
+                    largada.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                long hechas = 0;
+                while (System.nanoTime() < fin[0]) {
+                    ciclo.ejecutar();
+                    hechas++;
+                }
+                operaciones.add(hechas);
+            });
+            hilos[i].start();
+        }
+
+        long inicio = System.nanoTime();
+        fin[0] = inicio + duracionMs * 1_000_000L;
+        largada.countDown();
+        for (Thread t : hilos) {
+            t.join();
+        }
+        long transcurrido = System.nanoTime() - inicio;
+        return operaciones.sum() * 1e9 / transcurrido;
+    }
+}
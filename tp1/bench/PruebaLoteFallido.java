@@ -0,0 +1,64 @@
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Prueba del cierre del circuito cuando falla el último lote de despacho entero.
+ *
+ * Con todas las fallas de despacho y sin reintentos, el último pedido del lote
+ * que falla completa el registro y cierra las etapas. El despachante no debe
+ * intentar pasar a tránsito el lote vacío que le queda: antes lanzaba
+ * {@code IllegalStateException} porque la etapa de tránsito ya estaba cerrada. Se
+ * prueba el lote retirado por el despachante ({@link Despacho#despacharLote}) y el
+ * que le entrega la red de almacenes ({@link Despacho#despachar(Pedido[], int)}).
+ *
+ * Uso: java PruebaLoteFallido
+ */
+public class PruebaLoteFallido {
+    private static final int PEDIDOS = 8;
+
+    public static void main(String[] args) throws Exception {
+        RegistroEventos.instalar(new RegistroEventos(1 << 10, PoliticaDesborde.DESCARTAR, 1024, System.out));
+        ConfiguracionEscenario cfg = ConfiguracionEscenario.desdeArgumentos(new String[] {
+            "--semilla=1", "--log=false", "--falla.despacho=100", "--reintentos.max=0",
+            "--hilos.reparacion=0", "--despacho.lote=" + PEDIDOS
+        });
+        FuenteAleatoria.instalar(new FuenteAleatoria(cfg.getSemilla()));
+        probar(cfg, true);
+        probar(cfg, false);
+        System.out.println("OK: el último lote fallido cierra el registro sin errores");
+    }
+
+    private static void probar(ConfiguracionEscenario cfg, boolean retirando) throws Exception {
+        SistemaAlmacenamiento sistema = new SistemaAlmacenamiento(PEDIDOS, 16, cfg.getPolitica(), 1);
+        sistema.setLogActivo(false);
+        RegistrodePedidos registro = new RegistrodePedidos(cfg.getCapacidadEtapa(), cfg.getOrdenSeleccion());
+        Despacho despacho = new Despacho(sistema, registro, cfg);
+        Pedido[] lote = new Pedido[PEDIDOS];
+        for (int i = 0; i < PEDIDOS; i++) {
+            lote[i] = sistema.ocuparCasillero();
+            registro.iniciarPedido(lote[i]);
+            registro.addListaPreparacion(lote[i]);
+        }
+        registro.completarCon(PEDIDOS);
+
+        if (retirando) {
+            int despachados = despacho.despacharLote(lote, PEDIDOS);
+            comprobar(despachados == PEDIDOS, "se despacharon " + despachados + " de " + PEDIDOS);
+            comprobar(despacho.despacharLote(lote, PEDIDOS) == 0, "la etapa de preparación sigue abierta");
+        } else {
+            for (int i = 0; i < PEDIDOS; i++) {
+                lote[i] = registro.getListaPreparacion();
+            }
+            despacho.despachar(lote, PEDIDOS);
+        }
+        registro.getCompletado().get(1, TimeUnit.SECONDS);
+        comprobar(registro.sizeListaFallidos() == PEDIDOS,
+                "fallidos " + registro.sizeListaFallidos() + " de " + PEDIDOS);
+        comprobar(registro.sizeListaTransito() == 0, "quedaron pedidos en tránsito");
+    }
+
+    private static void comprobar(boolean condicion, String mensaje) {
+        if (!condicion) {
+            throw new IllegalStateException(mensaje);
+        }
+    }
+}
@@ -0,0 +1,374 @@
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * Suite de benchmarks del asignador de casilleros, de las colas entre etapas y del
+ * circuito completo sin esperas.
+ *
+ * Cada benchmark se ejecuta con iteraciones de calentamiento y de medición de
+ * duración fija; se informa el promedio de operaciones por segundo y su error
+ * (desvío estándar). Los resultados se escriben en JSON con la misma estructura
+ * que usa JMH ({@code benchmark}, {@code params}, {@code primaryMetric}), para poder
+ * compararlos entre versiones con las herramientas habituales.
+ *
+ * Uso: java SuiteBenchmarks [--salida=resultados.json] [--filtro=regex]
+ *      [--calentamiento=2] [--iteraciones=5] [--duracionMs=500] [--hilos=1,2,4,8] [--semilla=1]
+ *      [--perfilLocks=false]
+ *
+ * Todos los sorteos salen de una {@link FuenteAleatoria} con semilla fija, para que
+ * dos corridas con la misma semilla hagan el mismo trabajo.
+ */
+public class SuiteBenchmarks {
+
+    /** Una iteración de medición: corre durante la duración pedida y devuelve operaciones por segundo. */
+    private interface Medicion {
+        double ejecutar(long duracionNanos) throws Exception;
+    }
+
+    private static class Resultado {
+        final String nombre;
+        final Map<String, String> parametros;
+        final double[] muestras;
+
+        Resultado(String nombre, Map<String, String> parametros, double[] muestras) {
+            this.nombre = nombre;
+            this.parametros = parametros;
+            this.muestras = muestras;
+        }
+
+        double promedio() {
+            double suma = 0;
+            for (double m : muestras) {
+                suma += m;
+            }
+            return suma / muestras.length;
+        }
+
+        double error() {
+            if (muestras.length < 2) {
+                return 0;
+            }
+            double prom = promedio();
+            double suma = 0;
+            for (double m : muestras) {
+                suma += (m - prom) * (m - prom);
+            }
+            return Math.sqrt(suma / (muestras.length - 1));
+        }
+    }
+
+    private final Map<String, String> opciones = new LinkedHashMap<>();
+    private final List<Resultado> resultados = new ArrayList<>();
+    private final Pattern filtro;
+    private final int calentamiento;
+    private final int iteraciones;
+    private final long duracionNanos;
+    private final int[] hilos;
+
+    private SuiteBenchmarks(String[] args) {
+        for (String arg : args) {
+            int igual = arg.indexOf('=');
+            if (!arg.startsWith("--") || igual < 0) {
+                throw new IllegalArgumentException("Argumento inválido: " + arg + " (se espera --clave=valor)");
+            }
+            opciones.put(arg.substring(2, igual), arg.substring(igual + 1));
+        }
+        filtro = Pattern.compile(opciones.getOrDefault("filtro", ".*"));
+        calentamiento = Integer.parseInt(opciones.getOrDefault("calentamiento", "2"));
+        iteraciones = Integer.parseInt(opciones.getOrDefault("iteraciones", "5"));
+        duracionNanos = Long.parseLong(opciones.getOrDefault("duracionMs", "500")) * 1_000_000L;
+        String[] listaHilos = opciones.getOrDefault("hilos", "1,2,4,8").split(",");
+        hilos = new int[listaHilos.length];
+        for (int i = 0; i < listaHilos.length; i++) {
+            hilos[i] = Integer.parseInt(listaHilos[i].trim());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        RegistroEventos.instalar(new RegistroEventos(1 << 10, PoliticaDesborde.DESCARTAR, 1024, System.out));
+        SuiteBenchmarks suite = new SuiteBenchmarks(args);
+        FuenteAleatoria.instalar(new FuenteAleatoria(Long.parseLong(suite.opciones.getOrDefault("semilla", "1"))));
+        LockMedido.setPerfilado(Boolean.parseBoolean(suite.opciones.getOrDefault("perfilLocks", "false")));
+        suite.asignador();
+        suite.etapas();
+        suite.instantanea();
+        suite.circuito();
+        suite.escribirJson(suite.opciones.getOrDefault("salida", "resultados.json"));
+    }
+
+    private void medir(String nombre, Map<String, String> parametros, Medicion medicion) throws Exception {
+        String clave = nombre + parametros;
+        if (!filtro.matcher(clave).find()) {
+            return;
+        }
+        for (int i = 0; i < calentamiento; i++) {
+            medicion.ejecutar(duracionNanos);
+        }
+        double[] muestras = new double[iteraciones];
+        for (int i = 0; i < iteraciones; i++) {
+            muestras[i] = medicion.ejecutar(duracionNanos);
+        }
+        Resultado r = new Resultado(nombre, parametros, muestras);
+        resultados.add(r);
+        System.out.printf("%-32s %-60s %14.0f ± %.0f ops/s%n", nombre, parametros, r.promedio(), r.error());
+    }
+
+    private static Map<String, String> parametros(Object... claveValor) {
+        Map<String, String> p = new LinkedHashMap<>();
+        for (int i = 0; i < claveValor.length; i += 2) {
+            p.put(String.valueOf(claveValor[i]), String.valueOf(claveValor[i + 1]));
+        }
+        return p;
+    }
+
+    /**
+     * ocuparCasillero + desocuparCasillero con la grilla parcialmente llena y con
+     * una fracción de casilleros fuera de servicio.
+     */
+    private void asignador() throws Exception {
+        final int n = 10_000;
+        double[] llenados = {0.0, 0.5, 0.9, 0.99};
+        double[] fallados = {0.0, 0.25, 0.5};
+        for (PoliticaAsignacion politica : PoliticaAsignacion.values()) {
+            for (double fallado : fallados) {
+                for (double llenado : llenados) {
+                    int fuera = (int) (n * fallado);
+                    int ocupados = (int) ((n - fuera) * llenado);
+                    if (fuera + ocupados >= n) {
+                        continue;
+                    }
+                    SistemaAlmacenamiento sistema = new SistemaAlmacenamiento(Integer.MAX_VALUE, n, politica, 1);
+                    sistema.setLogActivo(false);
+                    for (int i = 0; i < fuera; i++) {
+                        sistema.setCasilleroFueraServicio(sistema.ocuparCasillero());
+                    }
+                    for (int i = 0; i < ocupados; i++) {
+                        sistema.ocuparCasillero();
+                    }
+                    medir("asignador.ocuparDesocupar",
+                          parametros("politica", politica, "llenado", llenado, "fueraServicio", fallado),
+                          duracion -> {
+                              long ops = 0;
+                              long inicio = System.nanoTime();
+                              long fin = inicio + duracion;
+                              while (System.nanoTime() < fin) {
+                                  for (int k = 0; k < 1000; k++) {
+                                      sistema.desocuparCasillero(sistema.ocuparCasillero());
+                                  }
+                                  ops += 1000;
+                              }
+                              return ops * 1e9 / (System.nanoTime() - inicio);
+                          });
+                }
+            }
+        }
+    }
+
+    /**
+     * Foto paralela de grillas grandes con los trabajadores detenidos: fotos por segundo.
+     */
+    private void instantanea() throws Exception {
+        for (int n : new int[] {10_000, 1_000_000}) {
+            SistemaAlmacenamiento sistema = new SistemaAlmacenamiento(Integer.MAX_VALUE, n, PoliticaAsignacion.ALEATORIA, 1);
+            sistema.setLogActivo(false);
+            for (int i = 0; i < n / 2; i++) {
+                Pedido pedido = sistema.ocuparCasillero();
+                if (i % 10 == 0) {
+                    sistema.setCasilleroFueraServicio(pedido);
+                }
+            }
+            for (boolean conGrilla : new boolean[] {false, true}) {
+                medir("grilla.instantanea", parametros("casilleros", n, "conGrilla", conGrilla),
+                      duracion -> {
+                          long fotos = 0;
+                          long inicio = System.nanoTime();
+                          while (System.nanoTime() - inicio < duracion) {
+                              sistema.tomarInstantanea(10, conGrilla);
+                              fotos++;
+                          }
+                          return fotos * 1e9 / (System.nanoTime() - inicio);
+                      });
+            }
+        }
+    }
+
+    /**
+     * Pares add/get de cada etapa de RegistrodePedidos con la misma cantidad de
+     * productores y consumidores.
+     */
+    private void etapas() throws Exception {
+        String[] nombres = {"preparacion", "transito", "entregados"};
+        for (OrdenSeleccion orden : OrdenSeleccion.values()) {
+            for (int e = 0; e < nombres.length; e++) {
+                final int etapa = e;
+                for (int nHilos : hilos) {
+                    medir("etapas.addGet",
+                          parametros("etapa", nombres[etapa], "orden", orden, "productores", nHilos, "consumidores", nHilos),
+                          duracion -> paresEtapa(etapa, orden, nHilos, duracion));
+                }
+            }
+        }
+    }
+
+    private static double paresEtapa(int etapa, OrdenSeleccion orden, int nHilos, long duracion)
+            throws InterruptedException {
+        RegistrodePedidos registro = new RegistrodePedidos(1024, orden);
+        ColaEtapa cola = etapa == 0 ? registro.getColaPreparacion()
+                       : etapa == 1 ? registro.getColaTransito()
+                       : registro.getColaEntregados();
+        Pedido pedido = new Pedido(0, 0);
+        LongAdder consumidos = new LongAdder();
+        CountDownLatch largada = new CountDownLatch(1);
+        long[] limite = new long[1];
+
+        List<Thread> hilos = new ArrayList<>();
+        for (int i = 0; i < nHilos; i++) {
+            hilos.add(new Thread(() -> {
+                esperar(largada);
+                while (System.nanoTime() < limite[0]) {
+                    for (int k = 0; k < 100; k++) {
+                        cola.poner(pedido);
+                    }
+                }
+            }));
+        }
+        List<Thread> consumidores = new ArrayList<>();
+        for (int i = 0; i < nHilos; i++) {
+            consumidores.add(new Thread(() -> {
+                esperar(largada);
+                long propios = 0;
+                while (cola.tomar() != null) {
+                    propios++;
+                }
+                consumidos.add(propios);
+            }));
+        }
+        hilos.forEach(Thread::start);
+        consumidores.forEach(Thread::start);
+
+        long inicio = System.nanoTime();
+        limite[0] = inicio + duracion;
+        largada.countDown();
+        for (Thread t : hilos) {
+            t.join();
+        }
+        cola.cerrar();
+        for (Thread t : consumidores) {
+            t.join();
+        }
+        return consumidos.sum() * 1e9 / (System.nanoTime() - inicio);
+    }
+
+    /**
+     * Circuito completo sin esperas, con hilos y con el motor de eventos discretos.
+     * La métrica es pedidos terminados por segundo.
+     */
+    private void circuito() throws Exception {
+        int pedidos = Integer.parseInt(opciones.getOrDefault("pedidosCircuito", "20000"));
+        String[] escenario = {
+            "--pedidos=" + pedidos, "--casilleros=1000", "--falla.despacho=0", "--log=false",
+            "--espera.preparacion=0", "--espera.despacho=0", "--espera.entrega=0", "--espera.verificacion=0"
+        };
+        ConfiguracionEscenario cfg = ConfiguracionEscenario.desdeArgumentos(escenario);
+
+        medir("circuito.hilos", parametros("pedidos", pedidos, "hilos", "3/2/3/2"),
+              duracion -> circuitoHilos(cfg));
+        medir("circuito.discreto", parametros("pedidos", pedidos, "hilos", "3/2/3/2"),
+              duracion -> {
+                  long inicio = System.nanoTime();
+                  SistemaAlmacenamiento sistema = nuevoSistema(cfg);
+                  new SimulacionEventos(cfg, sistema, new RegistrodePedidos(cfg.getCapacidadEtapa(),
+                          cfg.getOrdenSeleccion())).ejecutar(null);
+                  return cfg.getPedidos() * 1e9 / (System.nanoTime() - inicio);
+              });
+    }
+
+    private static SistemaAlmacenamiento nuevoSistema(ConfiguracionEscenario cfg) {
+        SistemaAlmacenamiento sistema = new SistemaAlmacenamiento(cfg.getPedidos(), cfg.getCasilleros(),
+                cfg.getPolitica(), cfg.getFranjas());
+        sistema.setLogActivo(false);
+        return sistema;
+    }
+
+    private static double circuitoHilos(ConfiguracionEscenario cfg) throws InterruptedException {
+        long inicio = System.nanoTime();
+        SistemaAlmacenamiento sistema = nuevoSistema(cfg);
+        RegistrodePedidos registro = new RegistrodePedidos(cfg.getCapacidadEtapa(), cfg.getOrdenSeleccion());
+        registro.completarCon(cfg.getPedidos());
+        Preparacion preparacion = new Preparacion(sistema, registro, cfg);
+        Despacho despacho = new Despacho(sistema, registro, cfg);
+        Entrega entrega = new Entrega(registro, cfg);
+        VerificacionFinal verificacion = new VerificacionFinal(registro, cfg);
+
+        List<Thread> hilos = new ArrayList<>();
+        for (int i = 0; i < cfg.getHilosPreparacion(); i++) {
+            hilos.add(new Thread(preparacion));
+        }
+        for (int i = 0; i < cfg.getHilosDespacho(); i++) {
+            hilos.add(new Thread(despacho));
+        }
+        for (int i = 0; i < cfg.getHilosEntrega(); i++) {
+            hilos.add(new Thread(entrega));
+        }
+        for (int i = 0; i < cfg.getHilosVerificacion(); i++) {
+            hilos.add(new Thread(verificacion));
+        }
+        hilos.forEach(Thread::start);
+        for (Thread t : hilos) {
+            t.join();
+        }
+        return cfg.getPedidos() * 1e9 / (System.nanoTime() - inicio);
+    }
+
+    private static void esperar(CountDownLatch largada) {
+        try {
+            largada.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void escribirJson(String archivo) throws IOException {
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(Paths.get(archivo), StandardCharsets.UTF_8))) {
+            out.println("[");
+            for (int i = 0; i < resultados.size(); i++) {
+                Resultado r = resultados.get(i);
+                out.println("    {");
+                out.printf("        \"benchmark\" : \"%s\",%n", r.nombre);
+                out.println("        \"mode\" : \"thrpt\",");
+                out.printf("        \"warmupIterations\" : %d,%n", calentamiento);
+                out.printf("        \"measurementIterations\" : %d,%n", iteraciones);
+                out.println("        \"params\" : {");
+                int k = 0;
+                for (Map.Entry<String, String> p : r.parametros.entrySet()) {
+                    out.printf("            \"%s\" : \"%s\"%s%n", p.getKey(), p.getValue(),
+                               ++k < r.parametros.size() ? "," : "");
+                }
+                out.println("        },");
+                out.println("        \"primaryMetric\" : {");
+                out.printf(java.util.Locale.ROOT, "            \"score\" : %.3f,%n", r.promedio());
+                out.printf(java.util.Locale.ROOT, "            \"scoreError\" : %.3f,%n", r.error());
+                out.println("            \"scoreUnit\" : \"ops/s\",");
+                StringBuilder crudos = new StringBuilder();
+                for (int m = 0; m < r.muestras.length; m++) {
+                    crudos.append(m == 0 ? "" : ", ").append(String.format(java.util.Locale.ROOT, "%.3f", r.muestras[m]));
+                }
+                out.printf("            \"rawData\" : [ [ %s ] ]%n", crudos);
+                out.println("        }");
+                out.println(i + 1 < resultados.size() ? "    }," : "    }");
+            }
+            out.println("]");
+        }
+        System.out.println("Resultados en " + archivo);
+    }
+}
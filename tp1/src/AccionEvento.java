@@ -0,0 +1,14 @@
+/**
+ * Acciones que se registran en el log de eventos.
+ */
+public enum AccionEvento {
+    CASILLEROS_LLENOS,
+    CASILLERO_OCUPADO,
+    CASILLERO_LIBERADO,
+    PEDIDO_FALLIDO,
+    CASILLERO_REPARADO,
+    PEDIDO_ENTREGADO,
+    PEDIDO_VERIFICADO,
+    ENTREGA_FINALIZACION,
+    VERIFICACION_FINALIZACION
+}
@@ -0,0 +1,238 @@
+import java.util.Arrays;
+
+/**
+ * Almacén de pedidos en columnas de tipos primitivos (struct-of-arrays).
+ *
+ * En lugar de un objeto {@link Pedido} por pedido, cada pedido en curso ocupa una
+ * posición (handle) de arreglos paralelos: número de pedido, casillero, estado,
+ * reintentos, clase, plazo, el inicio y las cuatro marcas de tiempo. Las etapas se
+ * pasan el handle, un {@code int}. Cuando el pedido termina, su handle vuelve a una
+ * pila de libres y lo reutiliza el próximo pedido, así que la memoria depende de los
+ * pedidos en curso y no del total procesado.
+ *
+ * No es seguro para hilos: lo usa el motor de eventos discretos, que corre en un solo hilo.
+ */
+public class AlmacenPedidos {
+    /** Marcas de tiempo por pedido: una por etapa ({@link #columnaMarca}) y el inicio. */
+    private static final int MARCAS = 5;
+    private static final int INICIO = 4;
+
+    /** Bytes de columnas que ocupa cada pedido en curso. */
+    public static final int BYTES_POR_PEDIDO = 4 + 4 + 1 + 1 + 1 + 8 + 8 * MARCAS + 4;
+
+    private static final EstadoPedido[] ESTADOS = EstadoPedido.values();
+    private static final ClasePedido[] CLASES = ClasePedido.values();
+
+    private int[] id;
+    private int[] casillero;
+    private byte[] estado;
+    private byte[] intentos;
+    private byte[] clase;
+    private long[] vence;
+    private long[] marcas;
+    private int[] libres;
+    private int cantidadLibres;
+    private int usados;
+    private int maximoEnCurso;
+
+    /**
+     * Constructor.
+     * @param capacidadInicial cantidad de handles reservados al inicio; crece al doble cuando hace falta.
+     */
+    public AlmacenPedidos(int capacidadInicial) {
+        int n = Math.max(16, capacidadInicial);
+        id = new int[n];
+        casillero = new int[n];
+        estado = new byte[n];
+        intentos = new byte[n];
+        clase = new byte[n];
+        vence = new long[n];
+        marcas = new long[n * MARCAS];
+        libres = new int[n];
+    }
+
+    /**
+     * Da de alta un pedido.
+     * @param nroPedido número de pedido.
+     * @param nroCasillero casillero ocupado por el pedido.
+     * @return handle del pedido.
+     */
+    public int crear(int nroPedido, int nroCasillero) {
+        int h;
+        if (cantidadLibres > 0) {
+            h = libres[--cantidadLibres];
+        } else {
+            if (usados == id.length) {
+                crecer();
+            }
+            h = usados++;
+        }
+        id[h] = nroPedido;
+        casillero[h] = nroCasillero;
+        estado[h] = 0;
+        intentos[h] = 0;
+        clase[h] = (byte) ClasePedido.ESTANDAR.ordinal();
+        vence[h] = Long.MAX_VALUE;
+        Arrays.fill(marcas, h * MARCAS, h * MARCAS + MARCAS, 0L);
+        maximoEnCurso = Math.max(maximoEnCurso, getEnCurso());
+        return h;
+    }
+
+    /**
+     * Devuelve el handle de un pedido terminado para que se reutilice.
+     * @param h handle del pedido.
+     */
+    public void liberar(int h) {
+        libres[cantidadLibres++] = h;
+    }
+
+    /**
+     * @param h handle del pedido.
+     * @return número de pedido.
+     */
+    public int getId(int h) {
+        return id[h];
+    }
+
+    /**
+     * @param h handle del pedido.
+     * @return casillero asignado al pedido.
+     */
+    public int getCasillero(int h) {
+        return casillero[h];
+    }
+
+    /**
+     * Asigna otro casillero al pedido, cuando se reintenta tras fallar en el despacho.
+     * @param h handle del pedido.
+     * @param nroCasillero número del nuevo casillero.
+     */
+    public void setCasillero(int h, int nroCasillero) {
+        casillero[h] = nroCasillero;
+    }
+
+    /**
+     * Asigna la clase de servicio y el plazo del pedido, como {@link Pedido#setClase}.
+     * @param h handle del pedido.
+     * @param nueva clase de servicio.
+     * @param instanteVence instante en que vence el plazo, en el reloj de las marcas.
+     */
+    public void setClase(int h, ClasePedido nueva, long instanteVence) {
+        clase[h] = (byte) nueva.ordinal();
+        vence[h] = instanteVence;
+    }
+
+    /**
+     * @param h handle del pedido.
+     * @return clase de servicio del pedido.
+     */
+    public ClasePedido getClase(int h) {
+        return CLASES[clase[h]];
+    }
+
+    /**
+     * @param h handle del pedido.
+     * @return instante en que vence el plazo del pedido; {@code Long.MAX_VALUE} si no tiene.
+     */
+    public long getVence(int h) {
+        return vence[h];
+    }
+
+    /**
+     * @param h handle del pedido.
+     * @return reintentos que lleva el pedido.
+     */
+    public int getIntentos(int h) {
+        return intentos[h];
+    }
+
+    /**
+     * Cuenta un reintento más del pedido.
+     * @param h handle del pedido.
+     * @return reintentos que lleva el pedido, contando este.
+     */
+    public int sumarIntento(int h) {
+        return ++intentos[h];
+    }
+
+    /**
+     * @param h handle del pedido.
+     * @return estado del pedido, o null si todavía no entró al circuito.
+     */
+    public EstadoPedido getEstado(int h) {
+        return estado[h] == 0 ? null : ESTADOS[estado[h] - 1];
+    }
+
+    /**
+     * Pasa el pedido a un nuevo estado y anota el instante, como {@link Pedido#marcar}.
+     * @param h handle del pedido.
+     * @param nuevo estado al que entra.
+     * @param instante instante de la transición, en nanosegundos.
+     */
+    public void marcar(int h, EstadoPedido nuevo, long instante) {
+        if (estado[h] == 0) {
+            marcas[h * MARCAS + INICIO] = instante;
+        }
+        estado[h] = (byte) (nuevo.ordinal() + 1);
+        marcas[h * MARCAS + columnaMarca(nuevo)] = instante;
+    }
+
+    /**
+     * @param h handle del pedido.
+     * @param etapa estado consultado; FALLIDO y VERIFICADO comparten la marca final.
+     * @return instante en que el pedido entró al estado.
+     */
+    public long getMarca(int h, EstadoPedido etapa) {
+        return marcas[h * MARCAS + columnaMarca(etapa)];
+    }
+
+    /**
+     * @param h handle del pedido.
+     * @return instante en que el pedido entró al sistema, antes de cualquier reintento.
+     */
+    public long getInicio(int h) {
+        return marcas[h * MARCAS + INICIO];
+    }
+
+    /**
+     * @return cantidad de pedidos en curso (handles no liberados).
+     */
+    public int getEnCurso() {
+        return usados - cantidadLibres;
+    }
+
+    /**
+     * @return mayor cantidad de pedidos que estuvieron en curso a la vez.
+     */
+    public int getMaximoEnCurso() {
+        return maximoEnCurso;
+    }
+
+    /**
+     * @return bytes reservados por las columnas del almacén.
+     */
+    public long getBytesReservados() {
+        return (long) id.length * BYTES_POR_PEDIDO;
+    }
+
+    private static int columnaMarca(EstadoPedido etapa) {
+        switch (etapa) {
+            case PREPARACION: return 0;
+            case TRANSITO:    return 1;
+            case ENTREGADO:   return 2;
+            default:          return 3;
+        }
+    }
+
+    private void crecer() {
+        int n = id.length * 2;
+        id = Arrays.copyOf(id, n);
+        casillero = Arrays.copyOf(casillero, n);
+        estado = Arrays.copyOf(estado, n);
+        intentos = Arrays.copyOf(intentos, n);
+        clase = Arrays.copyOf(clase, n);
+        vence = Arrays.copyOf(vence, n);
+        marcas = Arrays.copyOf(marcas, n * MARCAS);
+        libres = Arrays.copyOf(libres, n);
+    }
+}
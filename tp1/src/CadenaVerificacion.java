@@ -0,0 +1,255 @@
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Verificación final de un pedido como una cadena de controles ({@link Verificador}):
+ * el pedido queda verificado si pasa todos.
+ *
+ * En paralelo, cada control de cada pedido corre como una tarea propia y el
+ * resultado es un {@link CompletableFuture} que se completa con false en cuanto un
+ * control rechaza el pedido, o con true cuando aprobaron todos. Así un pedido
+ * tarda lo que su control más lento y no la suma, y un verificador puede tener
+ * muchos pedidos en curso a la vez. Con el primer rechazo se cancelan los demás
+ * controles del pedido: los que esperan turno no llegan a correr y los que están
+ * corriendo se interrumpen; su resultado no cuenta como rechazo. Las tareas corren en hilos de fondo creados por
+ * la {@link FabricaHilos} del escenario: con hilos virtuales, el grupo crece según
+ * haga falta, porque los controles pasan casi todo su tiempo esperando; con hilos de
+ * plataforma, tiene un máximo y las tareas que no entran esperan turno. Sin
+ * paralelismo, los controles corren uno tras otro en el hilo que verifica y se
+ * corta en el primer rechazo.
+ *
+ * Un control que lanza una excepción rechaza el pedido: se cuenta como rechazo de
+ * ese control y, aparte, como error, y el hilo que verifica sigue con el próximo.
+ */
+public class CadenaVerificacion {
+    private final Verificador[] controles;
+    private final FabricaHilos fabrica;
+    private final ExecutorService ejecutor;
+    private final AtomicInteger hilosCreados = new AtomicInteger();
+
+    private final LongAdder[] rechazos;
+    private final LongAdder errores = new LongAdder();
+    private final LongAdder cancelados = new LongAdder();
+    private final LongAdder verificados = new LongAdder();
+    private final LongAdder aprobados = new LongAdder();
+    private final Histograma duracion = new Histograma();
+
+    /**
+     * Constructor.
+     * @param controles controles que debe pasar cada pedido; al menos uno.
+     * @param paralela si es true, los controles de cada pedido corren a la vez en hilos de fondo.
+     * @param fabrica fábrica de los hilos de fondo.
+     * @param maxHilos máximo de hilos de fondo cuando son de plataforma.
+     */
+    public CadenaVerificacion(List<? extends Verificador> controles, boolean paralela, FabricaHilos fabrica,
+                              int maxHilos) {
+        if (controles.isEmpty()) {
+            throw new IllegalArgumentException("La verificación necesita al menos un control");
+        }
+        if (maxHilos <= 0) {
+            throw new IllegalArgumentException("La verificación necesita al menos un hilo de fondo");
+        }
+        this.controles = controles.toArray(new Verificador[0]);
+        this.fabrica = fabrica;
+        this.ejecutor = paralela ? crearEjecutor(maxHilos) : null;
+        this.rechazos = new LongAdder[this.controles.length];
+        for (int i = 0; i < rechazos.length; i++) {
+            rechazos[i] = new LongAdder();
+        }
+    }
+
+    private ExecutorService crearEjecutor(int maxHilos) {
+        if (fabrica.getModo() == ModoHilos.VIRTUAL) {
+            return Executors.newCachedThreadPool(this::crearHilo);
+        }
+        ThreadPoolExecutor grupo = new ThreadPoolExecutor(maxHilos, maxHilos, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), this::crearHilo);
+        grupo.allowCoreThreadTimeOut(true);
+        return grupo;
+    }
+
+    private Thread crearHilo(Runnable tarea) {
+        Thread t = fabrica.crear(tarea, "Control-" + hilosCreados.getAndIncrement());
+        if (!t.isDaemon()) {
+            t.setDaemon(true);
+        }
+        return t;
+    }
+
+    /**
+     * Verifica un pedido y espera el resultado.
+     * @param pedido pedido entregado.
+     * @return true si pasó todos los controles.
+     */
+    public boolean verificar(Pedido pedido) {
+        if (ejecutor == null) {
+            long inicio = System.nanoTime();
+            boolean aprobado = true;
+            for (int i = 0; i < controles.length && aprobado; i++) {
+                aprobado = aprueba(i, pedido);
+            }
+            contar(aprobado, inicio);
+            return aprobado;
+        }
+        return verificarAsync(pedido).join();
+    }
+
+    /**
+     * Lanza los controles de un pedido sin esperarlos. Sin paralelismo, los corre
+     * en el hilo que llama y devuelve el resultado ya completo.
+     * @param pedido pedido entregado.
+     * @return futuro que se completa con true si el pedido pasó todos los controles.
+     */
+    public CompletableFuture<Boolean> verificarAsync(Pedido pedido) {
+        if (ejecutor == null) {
+            return CompletableFuture.completedFuture(verificar(pedido));
+        }
+        long inicio = System.nanoTime();
+        CompletableFuture<Boolean> resultado = new CompletableFuture<>();
+        AtomicInteger pendientes = new AtomicInteger(controles.length);
+        AtomicReferenceArray<Future<?>> tareas = new AtomicReferenceArray<>(controles.length);
+        for (int i = 0; i < controles.length && !resultado.isDone(); i++) {
+            final int c = i;
+            tareas.set(c, ejecutor.submit(() -> {
+                boolean aprobado = false;
+                try {
+                    aprobado = aprueba(c, pedido);
+                } finally {
+                    if (!aprobado) {
+                        if (resultado.complete(false)) {
+                            cancelar(tareas, c);
+                        }
+                    } else if (pendientes.decrementAndGet() == 0) {
+                        resultado.complete(true);
+                    }
+                }
+            }));
+            // Si un control rechazó mientras se lanzaba este, puede no haberlo visto.
+            if (resultado.isDone()) {
+                tareas.get(c).cancel(true);
+            }
+        }
+        return resultado.whenComplete((aprobado, error) -> contar(aprobado, inicio));
+    }
+
+    /** Cancela los controles de un pedido rechazado, salvo el que lo rechazó. */
+    private static void cancelar(AtomicReferenceArray<Future<?>> tareas, int rechazo) {
+        for (int i = 0; i < tareas.length(); i++) {
+            Future<?> tarea = tareas.get(i);
+            if (i != rechazo && tarea != null) {
+                tarea.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Corre un control y cuenta su rechazo; si el control lanza una excepción, el
+     * pedido queda rechazado. En paralelo, un control interrumpido fue cancelado
+     * porque otro ya rechazó el pedido: no cuenta como rechazo ni como error.
+     */
+    private boolean aprueba(int control, Pedido pedido) {
+        boolean aprobado;
+        boolean error = false;
+        try {
+            aprobado = controles[control].verificar(pedido);
+        } catch (RuntimeException e) {
+            error = true;
+            aprobado = false;
+        }
+        if (ejecutor != null && Thread.interrupted()) {
+            cancelados.increment();
+            return false;
+        }
+        if (error) {
+            errores.increment();
+        }
+        if (!aprobado) {
+            rechazos[control].increment();
+        }
+        return aprobado;
+    }
+
+    private void contar(boolean aprobado, long inicio) {
+        duracion.registrar(System.nanoTime() - inicio);
+        verificados.increment();
+        if (aprobado) {
+            aprobados.increment();
+        }
+    }
+
+    /**
+     * Deja de aceptar controles nuevos; los que están en curso terminan.
+     */
+    public void cerrar() {
+        if (ejecutor != null) {
+            ejecutor.shutdown();
+        }
+    }
+
+    /** @return true si los controles de cada pedido corren en paralelo. */
+    public boolean isParalela() {
+        return ejecutor != null;
+    }
+
+    /** @return pedidos verificados, aprobados o no. */
+    public long getVerificados() {
+        return verificados.sum();
+    }
+
+    /** @return pedidos que pasaron todos los controles. */
+    public long getAprobados() {
+        return aprobados.sum();
+    }
+
+    /**
+     * @param control posición del control en la cadena.
+     * @return pedidos que rechazó ese control.
+     */
+    public long getRechazos(int control) {
+        return rechazos[control].sum();
+    }
+
+    /** @return controles que lanzaron una excepción; cada uno rechazó su pedido. */
+    public long getErrores() {
+        return errores.sum();
+    }
+
+    /** @return controles cancelados porque otro control ya había rechazado su pedido. */
+    public long getCancelados() {
+        return cancelados.sum();
+    }
+
+    /** @return duración de la verificación de cada pedido, en nanosegundos. */
+    public Histograma getDuracion() {
+        return duracion;
+    }
+
+    /**
+     * @return una línea con los pedidos verificados, los rechazos de cada control y la duración.
+     */
+    public String resumen() {
+        StringBuilder sb = new StringBuilder(String.format("Verificación (%s): %d pedidos, %d aprobados | rechazos",
+                isParalela() ? "controles en paralelo" : "controles en serie", getVerificados(), getAprobados()));
+        for (int i = 0; i < controles.length; i++) {
+            sb.append(String.format(" %s %d", controles[i].getNombre(), getRechazos(i)));
+        }
+        if (getErrores() > 0) {
+            sb.append(String.format(" | errores %d", getErrores()));
+        }
+        if (getCancelados() > 0) {
+            sb.append(String.format(" | cancelados %d", getCancelados()));
+        }
+        sb.append(String.format(" | duración p50 %.1f ms, p99 %.1f ms%n",
+                duracion.percentil(50) / 1e6, duracion.percentil(99) / 1e6));
+        return sb.toString();
+    }
+}
@@ -1,33 +1,79 @@
+import java.util.concurrent.atomic.AtomicReference;
+
 public class Casillero {
-        private EstadoCasillero estado;
-        int Contador;
+        private final AtomicReference<EstadoCasillero> estado;
+        // Solo lo incrementa el hilo que ganó la ocupación; volátil para leerlo sin locks.
+        volatile int Contador;
+        // Veces que el casillero quedó fuera de servicio; lo incrementa el hilo que ganó la transición.
+        volatile int Fallas;
 
         Casillero(){
-            estado   = EstadoCasillero.VACIO;
+            estado   = new AtomicReference<>(EstadoCasillero.VACIO);
             Contador = 0;
         }
 
         public boolean estaVacio(){
-            return estado == EstadoCasillero.VACIO; 
+            return estado.get() == EstadoCasillero.VACIO;
         }
 
         public boolean estaFueraServicio(){
-            return estado == EstadoCasillero.FUERA_DE_SERVICIO ;
+            return estado.get() == EstadoCasillero.FUERA_DE_SERVICIO ;
         }
-        
+
         public void ocupar(){
-            estado = EstadoCasillero.OCUPADO;
+            estado.set(EstadoCasillero.OCUPADO);
             Contador++;
         }
 
         public void desocupar(){
-            estado = EstadoCasillero.VACIO;
+            estado.set(EstadoCasillero.VACIO);
         }
 
         public void setFueraServicio(){
-            estado = EstadoCasillero.FUERA_DE_SERVICIO;
+            estado.set(EstadoCasillero.FUERA_DE_SERVICIO);
+        }
+
+        /**
+         * Transición atómica VACIO -> OCUPADO.
+         * @return true si el casillero estaba vacío y quedó ocupado.
+         */
+        public boolean intentarOcupar(){
+            if (estado.compareAndSet(EstadoCasillero.VACIO, EstadoCasillero.OCUPADO)) {
+                Contador++;
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Transición atómica OCUPADO -> VACIO.
+         * @return true si el casillero estaba ocupado y quedó vacío.
+         */
+        public boolean intentarDesocupar(){
+            return estado.compareAndSet(EstadoCasillero.OCUPADO, EstadoCasillero.VACIO);
         }
+
+        /**
+         * Transición atómica OCUPADO -> FUERA_DE_SERVICIO.
+         * @return true si el casillero estaba ocupado y quedó fuera de servicio.
+         */
+        public boolean intentarFueraServicio(){
+            if (estado.compareAndSet(EstadoCasillero.OCUPADO, EstadoCasillero.FUERA_DE_SERVICIO)) {
+                Fallas++;
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Transición atómica FUERA_DE_SERVICIO -> VACIO, al terminar una reparación.
+         * @return true si el casillero estaba fuera de servicio y quedó vacío.
+         */
+        public boolean intentarReparar(){
+            return estado.compareAndSet(EstadoCasillero.FUERA_DE_SERVICIO, EstadoCasillero.VACIO);
+        }
+
         public EstadoCasillero getEstado() {
-            return estado;
+            return estado.get();
         }
 }
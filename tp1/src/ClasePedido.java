@@ -0,0 +1,11 @@
+/**
+ * Clase de servicio de un pedido. Cada clase tiene su plazo de entrega (ver
+ * {@link ConfiguracionEscenario}), y las colas con orden PRIORIDAD atienden
+ * primero a las clases declaradas antes.
+ */
+public enum ClasePedido {
+    /** Pedido urgente, con plazo corto. */
+    EXPRESS,
+    /** Pedido común, como todos los de la simulación original. */
+    ESTANDAR
+}
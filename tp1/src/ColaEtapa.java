@@ -0,0 +1,516 @@
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+
+/**
+ * Cola acotada de pedidos entre dos etapas del circuito.
+ * Usa un buffer circular que crece hasta la capacidad máxima, por lo que tomar
+ * y agregar cuestan tiempo constante sin importar cuántos pedidos haya. Con los
+ * órdenes PLAZO y PRIORIDAD el mismo arreglo es un heap binario por clave (plazo o
+ * clase) y orden de llegada, así que tomar y agregar cuestan O(log n) con el lock
+ * tomado y la sección crítica sigue siendo corta aunque la cola esté llena.
+ * Los productores esperan cuando la cola está llena y los consumidores cuando
+ * está vacía; cada operación despierta a un único hilo del otro lado.
+ * El tamaño se consulta en las {@link MetricasEtapa} de la cola, sin tomar el lock.
+ *
+ * Cuando ya no van a llegar más pedidos la cola se cierra ({@link #cerrar()}): los
+ * consumidores que esperan se despiertan y, una vez vacía, {@code tomar} devuelve
+ * null en lugar de esperar.
+ */
+public class ColaEtapa {
+    private static final int CAPACIDAD_INICIAL = 16;
+
+    private final String nombre;
+    private final int capacidad;
+    private final OrdenSeleccion orden;
+    private final MetricasEtapa metricas;
+
+    private Pedido[] buffer;
+    private long[] claves;     // solo con orden por clave: clave y llegada de cada posición del heap
+    private long[] llegadas;
+    private long llegada;
+    private int cabeza;
+    private int cantidad;
+    private boolean cerrada;
+
+    private final LockMedido lock;
+    private final Condition noVacia;
+    private final Condition noLlena;
+
+    /**
+     * Constructor.
+     * @param nombre nombre de la etapa (para mensajes de error).
+     * @param capacidad cantidad máxima de pedidos en la cola.
+     * @param orden orden en el que se entregan los pedidos.
+     */
+    public ColaEtapa(String nombre, int capacidad, OrdenSeleccion orden) {
+        if (capacidad <= 0) {
+            throw new IllegalArgumentException("La capacidad de " + nombre + " debe ser positiva");
+        }
+        this.nombre = nombre;
+        this.capacidad = capacidad;
+        this.orden = orden;
+        this.metricas = new MetricasEtapa(nombre);
+        this.lock = new LockMedido(nombre);
+        this.noVacia = lock.newCondition();
+        this.noLlena = lock.newCondition();
+        this.buffer = new Pedido[Math.min(CAPACIDAD_INICIAL, capacidad)];
+        if (orden.porClave()) {
+            claves = new long[buffer.length];
+            llegadas = new long[buffer.length];
+        }
+    }
+
+    /**
+     * Agrega un pedido. Espera si la cola está llena.
+     * @param pedido el pedido a agregar.
+     */
+    public void poner(Pedido pedido) {
+        lock.lock();
+        try {
+            verificarAbierta();
+            while (cantidad == capacidad) {
+                try {
+                    noLlena.await();
+                    verificarAbierta();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("Interrupted while waiting for space in " + nombre, e);
+                }
+            }
+            insertar(pedido);
+            metricas.registrarEntrada();
+            noVacia.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Agrega un pedido sin esperar.
+     * @param pedido el pedido a agregar.
+     * @return false si la cola estaba llena y el pedido no se agregó.
+     */
+    public boolean intentarPoner(Pedido pedido) {
+        lock.lock();
+        try {
+            verificarAbierta();
+            if (cantidad == capacidad) {
+                return false;
+            }
+            insertar(pedido);
+            metricas.registrarEntrada();
+            noVacia.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Obtiene y remueve un pedido según el orden de la cola, sin esperar.
+     * @return el pedido retirado, o null si la cola estaba vacía.
+     */
+    public Pedido intentarTomar() {
+        lock.lock();
+        try {
+            if (cantidad == 0) {
+                return null;
+            }
+            Pedido pedido = extraer();
+            metricas.registrarSalida();
+            noLlena.signal();
+            return pedido;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Obtiene y remueve un pedido según el orden de la cola. Espera si está vacía.
+     * @return el pedido retirado, o null si la cola está cerrada y vacía.
+     */
+    public Pedido tomar() {
+        lock.lock();
+        try {
+            while (cantidad == 0) {
+                if (cerrada) {
+                    return null;
+                }
+                try {
+                    noVacia.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("Interrupted while waiting for pedidos in " + nombre, e);
+                }
+            }
+            Pedido pedido = extraer();
+            metricas.registrarSalida();
+            noLlena.signal();
+            return pedido;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Obtiene y remueve un pedido según el orden de la cola, esperando como máximo
+     * el tiempo indicado si está vacía.
+     * @param espera tiempo máximo de espera.
+     * @param unidad unidad de {@code espera}.
+     * @return el pedido retirado, o null si no llegó ninguno a tiempo o la cola está cerrada y vacía.
+     */
+    public Pedido tomar(long espera, TimeUnit unidad) {
+        long restante = unidad.toNanos(espera);
+        lock.lock();
+        try {
+            while (cantidad == 0) {
+                if (restante <= 0 || cerrada) {
+                    return null;
+                }
+                try {
+                    restante = noVacia.awaitNanos(restante);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("Interrupted while waiting for pedidos in " + nombre, e);
+                }
+            }
+            Pedido pedido = extraer();
+            metricas.registrarSalida();
+            noLlena.signal();
+            return pedido;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Agrega un lote de pedidos tomando el lock una sola vez mientras haya lugar.
+     * Si la cola se llena a mitad del lote, espera lugar para el resto. Un lote
+     * vacío no hace nada, aunque la cola esté cerrada.
+     * @param lote arreglo con los pedidos.
+     * @param n cantidad de pedidos del arreglo a agregar, desde el principio.
+     */
+    public void ponerTodos(Pedido[] lote, int n) {
+        if (n == 0) {
+            return;
+        }
+        lock.lock();
+        try {
+            verificarAbierta();
+            int puestos = 0;
+            while (puestos < n) {
+                while (cantidad == capacidad) {
+                    try {
+                        noLlena.await();
+                        verificarAbierta();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new RuntimeException("Interrupted while waiting for space in " + nombre, e);
+                    }
+                }
+                int agregados = 0;
+                while (puestos < n && cantidad < capacidad) {
+                    insertar(lote[puestos++]);
+                    metricas.registrarEntrada();
+                    agregados++;
+                }
+                despertar(noVacia, agregados);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Retira hasta {@code max} pedidos con una sola toma del lock. Espera si la cola
+     * está vacía, pero no espera a completar el lote.
+     * @param destino arreglo donde se dejan los pedidos retirados.
+     * @param max cantidad máxima a retirar.
+     * @return cantidad de pedidos retirados: al menos uno, o 0 si la cola está cerrada y vacía.
+     */
+    public int drenar(Pedido[] destino, int max) {
+        lock.lock();
+        try {
+            while (cantidad == 0) {
+                if (cerrada) {
+                    return 0;
+                }
+                try {
+                    noVacia.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("Interrupted while waiting for pedidos in " + nombre, e);
+                }
+            }
+            int n = Math.min(max, cantidad);
+            for (int i = 0; i < n; i++) {
+                destino[i] = extraer();
+                metricas.registrarSalida();
+            }
+            despertar(noLlena, n);
+            return n;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Retira hasta {@code max} pedidos con una sola toma del lock, esperando como
+     * máximo el tiempo indicado si la cola está vacía.
+     * @param destino arreglo donde se dejan los pedidos retirados.
+     * @param max cantidad máxima a retirar.
+     * @param espera tiempo máximo de espera; 0 para no esperar.
+     * @param unidad unidad de {@code espera}.
+     * @return cantidad de pedidos retirados, o 0 si no llegó ninguno a tiempo o la cola está cerrada y vacía.
+     */
+    public int drenar(Pedido[] destino, int max, long espera, TimeUnit unidad) {
+        long restante = unidad.toNanos(espera);
+        lock.lock();
+        try {
+            while (cantidad == 0) {
+                if (restante <= 0 || cerrada) {
+                    return 0;
+                }
+                try {
+                    restante = noVacia.awaitNanos(restante);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("Interrupted while waiting for pedidos in " + nombre, e);
+                }
+            }
+            int n = Math.min(max, cantidad);
+            for (int i = 0; i < n; i++) {
+                destino[i] = extraer();
+                metricas.registrarSalida();
+            }
+            despertar(noLlena, n);
+            return n;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Retira un pedido determinado, esté donde esté, sin alterar el orden de los
+     * demás. Recorre la cola, así que cuesta O(n); la usa la reproducción de una
+     * traza, que sabe qué pedido tomó cada trabajador.
+     * @param pedido pedido a retirar.
+     * @return true si el pedido estaba en la cola.
+     */
+    public boolean quitar(Pedido pedido) {
+        lock.lock();
+        try {
+            for (int k = 0; k < cantidad; k++) {
+                int i = claves != null ? k : (cabeza + k) % buffer.length;
+                if (buffer[i] == pedido) {
+                    quitarEn(k);
+                    metricas.registrarSalida();
+                    noLlena.signal();
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Cierra la cola: no admite más pedidos y despierta a todos los consumidores en
+     * espera, que reciben null cuando la cola queda vacía.
+     */
+    public void cerrar() {
+        lock.lock();
+        try {
+            cerrada = true;
+            noVacia.signalAll();
+            noLlena.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return true si la cola fue cerrada.
+     */
+    public boolean estaCerrada() {
+        lock.lock();
+        try {
+            return cerrada;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void verificarAbierta() {
+        if (cerrada) {
+            throw new IllegalStateException("La etapa " + nombre + " está cerrada");
+        }
+    }
+
+    /**
+     * Despierta a tantos hilos como lugares o pedidos aparecieron: uno con signal,
+     * varios con signalAll.
+     */
+    private static void despertar(Condition condicion, int cambios) {
+        if (cambios == 1) {
+            condicion.signal();
+        } else if (cambios > 1) {
+            condicion.signalAll();
+        }
+    }
+
+    /**
+     * @return contadores de la etapa, legibles sin tomar el lock.
+     */
+    public MetricasEtapa getMetricas() {
+        return metricas;
+    }
+
+    /**
+     * @return lock de la cola, con sus tiempos de espera.
+     */
+    public LockMedido getLock() {
+        return lock;
+    }
+
+    /**
+     * @return clave de orden del pedido: su plazo con PLAZO, su clase con PRIORIDAD.
+     */
+    private long clave(Pedido pedido) {
+        return orden == OrdenSeleccion.PLAZO ? pedido.getVence() : pedido.getClase().ordinal();
+    }
+
+    private void insertar(Pedido pedido) {
+        if (cantidad == buffer.length) {
+            crecer();
+        }
+        if (claves == null) {
+            buffer[(cabeza + cantidad) % buffer.length] = pedido;
+            cantidad++;
+            return;
+        }
+        int i = cantidad++;
+        buffer[i] = pedido;
+        claves[i] = clave(pedido);
+        llegadas[i] = llegada++;
+        subir(i);
+    }
+
+    private Pedido extraer() {
+        if (claves != null) {
+            Pedido primero = buffer[0];
+            cantidad--;
+            mover(cantidad, 0);
+            buffer[cantidad] = null;
+            bajar(0);
+            return primero;
+        }
+        int ultimo = (cabeza + cantidad - 1) % buffer.length;
+        Pedido pedido;
+        switch (orden) {
+            case FIFO:
+                pedido = buffer[cabeza];
+                buffer[cabeza] = null;
+                cabeza = (cabeza + 1) % buffer.length;
+                break;
+            case LIFO:
+                pedido = buffer[ultimo];
+                buffer[ultimo] = null;
+                break;
+            default:
+                int elegido = (cabeza + FuenteAleatoria.actual().nextInt(cantidad)) % buffer.length;
+                pedido = buffer[elegido];
+                buffer[elegido] = buffer[ultimo];
+                buffer[ultimo] = null;
+                break;
+        }
+        cantidad--;
+        return pedido;
+    }
+
+    /**
+     * Quita el pedido de la posición {@code k} (desde la cabeza, o del heap).
+     */
+    private void quitarEn(int k) {
+        cantidad--;
+        if (claves != null) {
+            if (k < cantidad) {
+                mover(cantidad, k);
+                buffer[cantidad] = null;
+                bajar(k);
+                subir(k);
+            } else {
+                buffer[k] = null;
+            }
+            return;
+        }
+        for (; k < cantidad; k++) {
+            buffer[(cabeza + k) % buffer.length] = buffer[(cabeza + k + 1) % buffer.length];
+        }
+        buffer[(cabeza + cantidad) % buffer.length] = null;
+    }
+
+    private boolean antes(int i, int j) {
+        return claves[i] < claves[j] || (claves[i] == claves[j] && llegadas[i] < llegadas[j]);
+    }
+
+    private void mover(int desde, int hasta) {
+        buffer[hasta] = buffer[desde];
+        claves[hasta] = claves[desde];
+        llegadas[hasta] = llegadas[desde];
+    }
+
+    private void intercambiar(int i, int j) {
+        Pedido p = buffer[i];
+        long c = claves[i];
+        long l = llegadas[i];
+        mover(j, i);
+        buffer[j] = p;
+        claves[j] = c;
+        llegadas[j] = l;
+    }
+
+    private void subir(int i) {
+        while (i > 0) {
+            int padre = (i - 1) / 2;
+            if (!antes(i, padre)) {
+                break;
+            }
+            intercambiar(i, padre);
+            i = padre;
+        }
+    }
+
+    private void bajar(int i) {
+        while (true) {
+            int hijo = 2 * i + 1;
+            if (hijo >= cantidad) {
+                break;
+            }
+            if (hijo + 1 < cantidad && antes(hijo + 1, hijo)) {
+                hijo++;
+            }
+            if (!antes(hijo, i)) {
+                break;
+            }
+            intercambiar(i, hijo);
+            i = hijo;
+        }
+    }
+
+    private void crecer() {
+        int nuevaLongitud = (int) Math.min((long) buffer.length * 2, capacidad);
+        if (claves != null) {
+            claves = Arrays.copyOf(claves, nuevaLongitud);
+            llegadas = Arrays.copyOf(llegadas, nuevaLongitud);
+        }
+        Pedido[] nuevo = new Pedido[nuevaLongitud];
+        for (int i = 0; i < cantidad; i++) {
+            nuevo[i] = buffer[(cabeza + i) % buffer.length];
+        }
+        buffer = nuevo;
+        cabeza = 0;
+    }
+}
@@ -0,0 +1,141 @@
+import java.util.Arrays;
+
+/**
+ * Cola de prioridad de eventos del motor de eventos discretos.
+ *
+ * Cada evento es un instante virtual, una etapa y un trabajador (o el handle del
+ * pedido, en los eventos de reintento). En lugar de un objeto por evento, es un heap
+ * binario sobre arreglos paralelos de tipos primitivos: agregar y quitar no crean
+ * objetos ni comparan por {@code Comparable}. Los eventos del mismo instante salen en
+ * el orden en que se agregaron, con un número de secuencia que asigna la cola.
+ *
+ * No es seguro para hilos: la usa un único hilo.
+ */
+public class ColaEventos {
+    private static final int CAPACIDAD_INICIAL = 64;
+
+    private long[] tiempos;
+    private long[] secuencias;
+    private int[] etapas;
+    private int[] trabajadores;
+    private int cantidad;
+    private long secuencia;
+
+    /**
+     * Constructor.
+     * @param capacidadInicial eventos reservados al inicio; crece al doble cuando hace falta.
+     */
+    public ColaEventos(int capacidadInicial) {
+        int n = Math.max(CAPACIDAD_INICIAL, capacidadInicial);
+        tiempos = new long[n];
+        secuencias = new long[n];
+        etapas = new int[n];
+        trabajadores = new int[n];
+    }
+
+    /**
+     * Agrega un evento.
+     * @param tiempo instante virtual en que ocurre.
+     * @param etapa etapa (o tipo de evento).
+     * @param trabajador trabajador de la etapa, o handle del pedido.
+     */
+    public void agregar(long tiempo, int etapa, int trabajador) {
+        if (cantidad == tiempos.length) {
+            crecer();
+        }
+        long sec = secuencia++;
+        int i = cantidad++;
+        while (i > 0) {
+            int padre = (i - 1) >>> 1;
+            if (!antes(tiempo, sec, padre)) {
+                break;
+            }
+            mover(padre, i);
+            i = padre;
+        }
+        poner(i, tiempo, sec, etapa, trabajador);
+    }
+
+    /**
+     * Quita el primer evento; antes se leen sus datos con {@link #getTiempo()},
+     * {@link #getEtapa()} y {@link #getTrabajador()}.
+     */
+    public void quitar() {
+        int n = --cantidad;
+        if (n == 0) {
+            return;
+        }
+        long tiempo = tiempos[n];
+        long sec = secuencias[n];
+        int i = 0;
+        int mitad = n >>> 1;
+        while (i < mitad) {
+            int hijo = 2 * i + 1;
+            int derecho = hijo + 1;
+            if (derecho < n && antes(tiempos[derecho], secuencias[derecho], hijo)) {
+                hijo = derecho;
+            }
+            if (!antes(tiempos[hijo], secuencias[hijo], tiempo, sec)) {
+                break;
+            }
+            mover(hijo, i);
+            i = hijo;
+        }
+        poner(i, tiempo, sec, etapas[n], trabajadores[n]);
+    }
+
+    /** @return true si no quedan eventos. */
+    public boolean estaVacia() {
+        return cantidad == 0;
+    }
+
+    /** @return cantidad de eventos pendientes. */
+    public int size() {
+        return cantidad;
+    }
+
+    /** @return instante del primer evento. */
+    public long getTiempo() {
+        return tiempos[0];
+    }
+
+    /** @return etapa del primer evento. */
+    public int getEtapa() {
+        return etapas[0];
+    }
+
+    /** @return trabajador (o handle) del primer evento. */
+    public int getTrabajador() {
+        return trabajadores[0];
+    }
+
+    private boolean antes(long tiempo, long sec, int j) {
+        return antes(tiempo, sec, tiempos[j], secuencias[j]);
+    }
+
+    private static boolean antes(long tiempo, long sec, long otroTiempo, long otraSec) {
+        return tiempo < otroTiempo || (tiempo == otroTiempo && sec < otraSec);
+    }
+
+    private void mover(int desde, int hasta) {
+        tiempos[hasta] = tiempos[desde];
+        secuencias[hasta] = secuencias[desde];
+        etapas[hasta] = etapas[desde];
+        trabajadores[hasta] = trabajadores[desde];
+    }
+
+    private void poner(int i, long tiempo, long sec, int etapa, int trabajador) {
+        tiempos[i] = tiempo;
+        secuencias[i] = sec;
+        etapas[i] = etapa;
+        trabajadores[i] = trabajador;
+    }
+
+    private void crecer() {
+        int n = tiempos.length * 2;
+        tiempos = Arrays.copyOf(tiempos, n);
+        secuencias = Arrays.copyOf(secuencias, n);
+        etapas = Arrays.copyOf(etapas, n);
+        trabajadores = Arrays.copyOf(trabajadores, n);
+    }
+}
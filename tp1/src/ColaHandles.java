@@ -0,0 +1,190 @@
+import java.util.Arrays;
+import java.util.random.RandomGenerator;
+
+/**
+ * Cola acotada de handles de {@link AlmacenPedidos} entre dos etapas.
+ *
+ * Es la contraparte de {@link ColaEtapa} para el motor de eventos discretos: el
+ * mismo buffer circular que crece hasta la capacidad y el mismo orden de selección,
+ * pero guarda {@code int} y no sincroniza, porque la usa un único hilo. Con los
+ * órdenes PLAZO y PRIORIDAD la clave de cada handle la da quien lo agrega, ya que la
+ * cola no conoce el almacén; el arreglo es entonces un heap por clave y llegada. Informa
+ * entradas y salidas en unas {@link MetricasEtapa}, de modo que el registro de
+ * estado se lee igual que con las colas de objetos.
+ */
+public class ColaHandles {
+    private static final int CAPACIDAD_INICIAL = 16;
+
+    private final int capacidad;
+    private final OrdenSeleccion orden;
+    private final MetricasEtapa metricas;
+    private final RandomGenerator rnd;
+
+    private int[] buffer;
+    private long[] claves;
+    private long[] llegadas;
+    private long llegada;
+    private int cabeza;
+    private int cantidad;
+
+    /**
+     * Constructor.
+     * @param capacidad cantidad máxima de handles en la cola.
+     * @param orden orden en el que se entregan los handles.
+     * @param metricas contadores donde se registran entradas y salidas.
+     * @param rnd fuente de aleatoriedad para el orden ALEATORIO.
+     */
+    public ColaHandles(int capacidad, OrdenSeleccion orden, MetricasEtapa metricas, RandomGenerator rnd) {
+        this.capacidad = capacidad;
+        this.orden = orden;
+        this.metricas = metricas;
+        this.rnd = rnd;
+        this.buffer = new int[Math.min(CAPACIDAD_INICIAL, capacidad)];
+        if (orden.porClave()) {
+            claves = new long[buffer.length];
+            llegadas = new long[buffer.length];
+        }
+    }
+
+    /**
+     * Agrega un handle sin clave; con orden por clave queda detrás de los que la tienen.
+     * @param h handle del pedido.
+     * @return false si la cola estaba llena y el handle no se agregó.
+     */
+    public boolean intentarPoner(int h) {
+        return intentarPoner(h, Long.MAX_VALUE);
+    }
+
+    /**
+     * Agrega un handle.
+     * @param h handle del pedido.
+     * @param clave clave de orden (plazo o clase); solo la usan PLAZO y PRIORIDAD.
+     * @return false si la cola estaba llena y el handle no se agregó.
+     */
+    public boolean intentarPoner(int h, long clave) {
+        if (cantidad == capacidad) {
+            return false;
+        }
+        if (cantidad == buffer.length) {
+            crecer();
+        }
+        if (claves == null) {
+            buffer[(cabeza + cantidad) % buffer.length] = h;
+            cantidad++;
+        } else {
+            int i = cantidad++;
+            buffer[i] = h;
+            claves[i] = clave;
+            llegadas[i] = llegada++;
+            subir(i);
+        }
+        metricas.registrarEntrada();
+        return true;
+    }
+
+    /**
+     * Obtiene y remueve un handle según el orden de la cola.
+     * @return el handle retirado, o -1 si la cola estaba vacía.
+     */
+    public int intentarTomar() {
+        if (cantidad == 0) {
+            return -1;
+        }
+        if (claves != null) {
+            int primero = buffer[0];
+            cantidad--;
+            mover(cantidad, 0);
+            bajar(0);
+            metricas.registrarSalida();
+            return primero;
+        }
+        int ultimo = (cabeza + cantidad - 1) % buffer.length;
+        int h;
+        switch (orden) {
+            case FIFO:
+                h = buffer[cabeza];
+                cabeza = (cabeza + 1) % buffer.length;
+                break;
+            case LIFO:
+                h = buffer[ultimo];
+                break;
+            default:
+                int elegido = (cabeza + rnd.nextInt(cantidad)) % buffer.length;
+                h = buffer[elegido];
+                buffer[elegido] = buffer[ultimo];
+                break;
+        }
+        cantidad--;
+        metricas.registrarSalida();
+        return h;
+    }
+
+    /**
+     * @return cantidad de handles en la cola.
+     */
+    public int getCantidad() {
+        return cantidad;
+    }
+
+    private boolean antes(int i, int j) {
+        return claves[i] < claves[j] || (claves[i] == claves[j] && llegadas[i] < llegadas[j]);
+    }
+
+    private void mover(int desde, int hasta) {
+        buffer[hasta] = buffer[desde];
+        claves[hasta] = claves[desde];
+        llegadas[hasta] = llegadas[desde];
+    }
+
+    private void intercambiar(int i, int j) {
+        int h = buffer[i];
+        long c = claves[i];
+        long l = llegadas[i];
+        mover(j, i);
+        buffer[j] = h;
+        claves[j] = c;
+        llegadas[j] = l;
+    }
+
+    private void subir(int i) {
+        while (i > 0) {
+            int padre = (i - 1) / 2;
+            if (!antes(i, padre)) {
+                break;
+            }
+            intercambiar(i, padre);
+            i = padre;
+        }
+    }
+
+    private void bajar(int i) {
+        while (true) {
+            int hijo = 2 * i + 1;
+            if (hijo >= cantidad) {
+                break;
+            }
+            if (hijo + 1 < cantidad && antes(hijo + 1, hijo)) {
+                hijo++;
+            }
+            if (!antes(hijo, i)) {
+                break;
+            }
+            intercambiar(i, hijo);
+            i = hijo;
+        }
+    }
+
+    private void crecer() {
+        int nuevaLongitud = (int) Math.min((long) buffer.length * 2, capacidad);
+        if (claves != null) {
+            claves = Arrays.copyOf(claves, nuevaLongitud);
+            llegadas = Arrays.copyOf(llegadas, nuevaLongitud);
+        }
+        int[] nuevo = new int[nuevaLongitud];
+        for (int i = 0; i < cantidad; i++) {
+            nuevo[i] = buffer[(cabeza + i) % buffer.length];
+        }
+        buffer = nuevo;
+        cabeza = 0;
+    }
+}
@@ -0,0 +1,664 @@
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.random.RandomGenerator;
+
+/**
+ * Parámetros de un escenario de simulación: tamaño de la grilla, volumen de pedidos,
+ * cantidad de trabajadores por etapa, tasas de falla y tiempos de espera.
+ *
+ * Los valores se toman, en este orden de prioridad, de la línea de comandos
+ * ({@code --clave=valor}), de un archivo de propiedades ({@code --config=archivo})
+ * y de los valores por defecto, que reproducen el escenario original con dos
+ * agregados: los casilleros averiados se reparan y los pedidos que fallan se
+ * reintentan. Sin {@code semilla}, cada corrida sortea una y la muestra, para
+ * poder repetirla.
+ */
+public class ConfiguracionEscenario {
+
+    /**
+     * Rango de espera en milisegundos, [min, max).
+     * Si max no es mayor que min se espera exactamente min.
+     */
+    public static class RangoEspera {
+        private final int min;
+        private final int max;
+
+        public RangoEspera(int min, int max) {
+            this.min = min;
+            this.max = max;
+        }
+
+        /**
+         * @param rnd fuente de aleatoriedad.
+         * @return espera sorteada dentro del rango.
+         */
+        public int sortear(RandomGenerator rnd) {
+            return max > min ? rnd.nextInt(min, max) : min;
+        }
+
+        public int getMin() {
+            return min;
+        }
+
+        public int getMax() {
+            return max;
+        }
+
+        @Override
+        public String toString() {
+            return min + "-" + max;
+        }
+    }
+
+    private long semilla = FuenteAleatoria.semillaAlAzar();
+    private int casilleros = 200;
+    private int pedidos = 500;
+    private PoliticaAsignacion politica = PoliticaAsignacion.ALEATORIA;
+    private int franjas = Runtime.getRuntime().availableProcessors();
+    private int almacenes = 1;
+    private int capacidadEtapa = RegistrodePedidos.CAPACIDAD_POR_DEFECTO;
+    private OrdenSeleccion ordenSeleccion = OrdenSeleccion.ALEATORIO;
+
+    private ModoSimulacion modoSimulacion = ModoSimulacion.TIEMPO_REAL;
+    private double factorTiempo = 0;
+    private ModoHilos modoHilos = ModoHilos.PLATAFORMA;
+    private int hilosPreparacion = 3;
+    private int hilosDespacho = 2;
+    private int hilosEntrega = 3;
+    private int hilosVerificacion = 2;
+    private int hilosReparacion = 2;
+    private int loteDespacho = 1;
+    private int loteVerificacion = 1;
+    private String controlesVerificacion = "";
+
+    private boolean escalado = false;
+    private int presupuestoEscalado = 0;
+    private int minEscalado = 1;
+    private int maxEscalado = 0;
+    private int periodoEscaladoMs = 100;
+    private int horizonteEscaladoMs = 1000;
+
+    private double fallaDespacho = 15;
+    private double fallaEntrega = 10;
+    private double fallaVerificacion = 5;
+
+    private RangoEspera esperaPreparacion = new RangoEspera(90, 180);
+    private RangoEspera esperaDespacho = new RangoEspera(60, 120);
+    private RangoEspera esperaEntrega = new RangoEspera(90, 180);
+    private RangoEspera esperaVerificacion = new RangoEspera(60, 120);
+    private RangoEspera esperaReparacion = new RangoEspera(100, 300);
+
+    private int maxReintentos = 3;
+    private int esperaBaseReintentoMs = 50;
+    private int esperaMaxReintentoMs = 2000;
+
+    private double porcentajeExpress = 20;
+    private int plazoExpressMs = 1500;
+    private int plazoEstandarMs = 6000;
+
+    private double umbralDegradado = SaludCasilleros.UMBRAL_POR_DEFECTO;
+    private int minFallasDegradado = SaludCasilleros.MIN_FALLAS_POR_DEFECTO;
+
+    private int periodoRegistroMs = 200;
+    private String archivoRegistro = "registro.txt";
+    private int columnasGrilla = 20;
+    private boolean volcarGrilla = true;
+    private boolean retenerTerminales = true;
+    private String archivoTerminales = "";
+    private String archivoTraza = "";
+    private int puertoMetricas = 0;
+    private boolean perfilLocks = false;
+    private String archivoDiario = "registro.bin";
+    private int diarioPeriodoMicros = 500;
+    private int diarioCommitRegistros = 4096;
+    private int diarioCommitMs = 100;
+    private boolean log = true;
+    private int logCapacidad = 1 << 16;
+    private PoliticaDesborde logPolitica = PoliticaDesborde.BLOQUEAR;
+    private int logLote = 1024;
+
+    /**
+     * Crea la configuración por defecto (escenario original).
+     */
+    public ConfiguracionEscenario() {
+    }
+
+    /**
+     * Crea la configuración a partir de los argumentos de línea de comandos.
+     * Acepta {@code --config=archivo.properties} y cualquier clave del archivo como
+     * {@code --clave=valor}; los argumentos pisan los valores del archivo.
+     * @param args argumentos de línea de comandos.
+     * @return configuración resultante.
+     */
+    public static ConfiguracionEscenario desdeArgumentos(String[] args) {
+        Properties propiedades = new Properties();
+        Properties lineaComandos = new Properties();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Argumento inválido: " + arg + " (se espera --clave=valor)");
+            }
+            int igual = arg.indexOf('=');
+            lineaComandos.setProperty(arg.substring(2, igual), arg.substring(igual + 1));
+        }
+
+        String archivo = lineaComandos.getProperty("config");
+        if (archivo != null) {
+            try (InputStream in = new FileInputStream(archivo)) {
+                propiedades.load(new InputStreamReader(in, StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                throw new IllegalArgumentException("No se pudo leer el escenario " + archivo, e);
+            }
+            lineaComandos.remove("config");
+        }
+        propiedades.putAll(lineaComandos);
+
+        ConfiguracionEscenario cfg = new ConfiguracionEscenario();
+        cfg.aplicar(propiedades);
+        return cfg;
+    }
+
+    /**
+     * Aplica los valores presentes en las propiedades; las claves ausentes conservan su valor.
+     * @param p propiedades a aplicar.
+     */
+    public void aplicar(Properties p) {
+        for (String clave : p.stringPropertyNames()) {
+            String valor = p.getProperty(clave).trim();
+            try {
+                aplicar(clave, valor);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Valor inválido para " + clave + ": " + valor, e);
+            }
+        }
+        validar();
+    }
+
+    private void aplicar(String clave, String valor) {
+        switch (clave) {
+            case "semilla":               semilla = Long.parseLong(valor); break;
+            case "casilleros":            casilleros = Integer.parseInt(valor); break;
+            case "pedidos":               pedidos = Integer.parseInt(valor); break;
+            case "politicaAsignacion":    politica = PoliticaAsignacion.valueOf(valor.toUpperCase()); break;
+            case "franjas":               franjas = Integer.parseInt(valor); break;
+            case "almacenes":             almacenes = Integer.parseInt(valor); break;
+            case "capacidadEtapa":        capacidadEtapa = Integer.parseInt(valor); break;
+            case "ordenSeleccion":        ordenSeleccion = OrdenSeleccion.valueOf(valor.toUpperCase()); break;
+            case "modoSimulacion":        modoSimulacion = ModoSimulacion.valueOf(valor.toUpperCase()); break;
+            case "simulacion.factorTiempo": factorTiempo = Double.parseDouble(valor); break;
+            case "modoHilos":             modoHilos = ModoHilos.valueOf(valor.toUpperCase()); break;
+            case "hilos.preparacion":     hilosPreparacion = Integer.parseInt(valor); break;
+            case "hilos.despacho":        hilosDespacho = Integer.parseInt(valor); break;
+            case "hilos.entrega":         hilosEntrega = Integer.parseInt(valor); break;
+            case "hilos.verificacion":    hilosVerificacion = Integer.parseInt(valor); break;
+            case "hilos.reparacion":      hilosReparacion = Integer.parseInt(valor); break;
+            case "despacho.lote":         loteDespacho = Integer.parseInt(valor); break;
+            case "verificacion.lote":     loteVerificacion = Integer.parseInt(valor); break;
+            case "verificacion.controles": controlesVerificacion = valor.trim(); break;
+            case "escalado":              escalado = Boolean.parseBoolean(valor); break;
+            case "escalado.presupuesto":  presupuestoEscalado = Integer.parseInt(valor); break;
+            case "escalado.min":          minEscalado = Integer.parseInt(valor); break;
+            case "escalado.max":          maxEscalado = Integer.parseInt(valor); break;
+            case "escalado.periodoMs":    periodoEscaladoMs = Integer.parseInt(valor); break;
+            case "escalado.horizonteMs":  horizonteEscaladoMs = Integer.parseInt(valor); break;
+            case "falla.despacho":        fallaDespacho = Double.parseDouble(valor); break;
+            case "falla.entrega":         fallaEntrega = Double.parseDouble(valor); break;
+            case "falla.verificacion":    fallaVerificacion = Double.parseDouble(valor); break;
+            case "espera.preparacion":    esperaPreparacion = parsearRango(valor); break;
+            case "espera.despacho":       esperaDespacho = parsearRango(valor); break;
+            case "espera.entrega":        esperaEntrega = parsearRango(valor); break;
+            case "espera.verificacion":   esperaVerificacion = parsearRango(valor); break;
+            case "espera.reparacion":     esperaReparacion = parsearRango(valor); break;
+            case "reintentos.max":        maxReintentos = Integer.parseInt(valor); break;
+            case "reintentos.esperaBaseMs": esperaBaseReintentoMs = Integer.parseInt(valor); break;
+            case "reintentos.esperaMaxMs": esperaMaxReintentoMs = Integer.parseInt(valor); break;
+            case "pedidos.express":       porcentajeExpress = Double.parseDouble(valor); break;
+            case "plazo.express":         plazoExpressMs = Integer.parseInt(valor); break;
+            case "plazo.estandar":        plazoEstandarMs = Integer.parseInt(valor); break;
+            case "salud.umbralDegradado": umbralDegradado = Double.parseDouble(valor); break;
+            case "salud.minFallas":       minFallasDegradado = Integer.parseInt(valor); break;
+            case "registro.periodoMs":    periodoRegistroMs = Integer.parseInt(valor); break;
+            case "registro.archivo":      archivoRegistro = valor; break;
+            case "registro.columnasGrilla": columnasGrilla = Integer.parseInt(valor); break;
+            case "registro.volcarGrilla": volcarGrilla = Boolean.parseBoolean(valor); break;
+            case "terminales.retener":    retenerTerminales = Boolean.parseBoolean(valor); break;
+            case "terminales.archivo":    archivoTerminales = valor; break;
+            case "traza.archivo":         archivoTraza = valor; break;
+            case "metricas.puerto":       puertoMetricas = Integer.parseInt(valor); break;
+            case "perfil.locks":          perfilLocks = Boolean.parseBoolean(valor); break;
+            case "diario.archivo":        archivoDiario = valor; break;
+            case "diario.periodoMicros":  diarioPeriodoMicros = Integer.parseInt(valor); break;
+            case "diario.commitRegistros": diarioCommitRegistros = Integer.parseInt(valor); break;
+            case "diario.commitMs":       diarioCommitMs = Integer.parseInt(valor); break;
+            case "log":                   log = Boolean.parseBoolean(valor); break;
+            case "log.capacidad":         logCapacidad = Integer.parseInt(valor); break;
+            case "log.politica":          logPolitica = PoliticaDesborde.valueOf(valor.toUpperCase()); break;
+            case "log.lote":              logLote = Integer.parseInt(valor); break;
+            default:
+                throw new IllegalArgumentException("Clave desconocida");
+        }
+    }
+
+    private static RangoEspera parsearRango(String valor) {
+        int guion = valor.indexOf('-');
+        if (guion < 0) {
+            int fijo = Integer.parseInt(valor);
+            return new RangoEspera(fijo, fijo);
+        }
+        return new RangoEspera(Integer.parseInt(valor.substring(0, guion).trim()),
+                               Integer.parseInt(valor.substring(guion + 1).trim()));
+    }
+
+    private void validar() {
+        if (casilleros <= 0 || pedidos < 0 || franjas <= 0 || capacidadEtapa <= 0 || columnasGrilla <= 0) {
+            throw new IllegalArgumentException("casilleros, franjas, capacidadEtapa y columnasGrilla deben ser positivos");
+        }
+        if (hilosPreparacion <= 0 || hilosDespacho <= 0 || hilosEntrega <= 0 || hilosVerificacion <= 0) {
+            throw new IllegalArgumentException("Cada etapa necesita al menos un hilo");
+        }
+        if (hilosReparacion < 0) {
+            throw new IllegalArgumentException("hilos.reparacion no puede ser negativo");
+        }
+        if (umbralDegradado < 0 || minFallasDegradado <= 0) {
+            throw new IllegalArgumentException("salud.umbralDegradado no puede ser negativo y salud.minFallas debe ser positivo");
+        }
+        if (maxReintentos < 0 || esperaBaseReintentoMs <= 0 || esperaMaxReintentoMs < esperaBaseReintentoMs) {
+            throw new IllegalArgumentException("reintentos.max no puede ser negativo y las esperas de reintento"
+                    + " deben ser positivas, con la máxima no menor que la base");
+        }
+        if (porcentajeExpress < 0 || porcentajeExpress > 100) {
+            throw new IllegalArgumentException("pedidos.express debe estar entre 0 y 100");
+        }
+        if (plazoExpressMs <= 0 || plazoEstandarMs <= 0) {
+            throw new IllegalArgumentException("Los plazos de entrega deben ser positivos");
+        }
+        if (almacenes <= 0) {
+            throw new IllegalArgumentException("almacenes debe ser positivo");
+        }
+        if (loteDespacho <= 0) {
+            throw new IllegalArgumentException("despacho.lote debe ser positivo");
+        }
+        if (loteVerificacion <= 0) {
+            throw new IllegalArgumentException("verificacion.lote debe ser positivo");
+        }
+        for (VerificadorSimulado control : crearControlesVerificacion()) {
+            if (control.getFalla() < 0 || control.getFalla() > 100 || control.getEspera().getMin() < 0
+                    || control.getEspera().getMax() < control.getEspera().getMin()) {
+                throw new IllegalArgumentException("Control de verificación inválido: " + control);
+            }
+        }
+        if (presupuestoEscalado < 0 || minEscalado <= 0 || maxEscalado < 0
+                || periodoEscaladoMs <= 0 || horizonteEscaladoMs <= 0) {
+            throw new IllegalArgumentException("Los parámetros de escalado deben ser positivos (presupuesto y máximo 0 = automático)");
+        }
+        if (escalado && getPresupuestoEscalado() < 3 * minEscalado) {
+            throw new IllegalArgumentException("escalado.presupuesto no cubre escalado.min en cada etapa");
+        }
+        if (puertoMetricas < 0 || puertoMetricas > 65535) {
+            throw new IllegalArgumentException("metricas.puerto debe estar entre 0 y 65535");
+        }
+        if (periodoRegistroMs <= 0) {
+            throw new IllegalArgumentException("registro.periodoMs debe ser positivo");
+        }
+        if (diarioPeriodoMicros <= 0 || diarioCommitRegistros <= 0 || diarioCommitMs <= 0) {
+            throw new IllegalArgumentException("diario.periodoMicros, diario.commitRegistros y diario.commitMs deben ser positivos");
+        }
+        if (logCapacidad <= 0 || logLote <= 0) {
+            throw new IllegalArgumentException("log.capacidad y log.lote deben ser positivos");
+        }
+    }
+
+    public int getCasilleros() {
+        return casilleros;
+    }
+
+    public int getPedidos() {
+        return pedidos;
+    }
+
+    /** @return cantidad de almacenes de la red; cada uno con su grilla, sus colas y sus hilos. */
+    public int getAlmacenes() {
+        return almacenes;
+    }
+
+    public PoliticaAsignacion getPolitica() {
+        return politica;
+    }
+
+    public int getFranjas() {
+        return franjas;
+    }
+
+    public int getCapacidadEtapa() {
+        return capacidadEtapa;
+    }
+
+    /** @return semilla de la que salen todos los sorteos de la corrida (ver {@link FuenteAleatoria}). */
+    public long getSemilla() {
+        return semilla;
+    }
+
+    public OrdenSeleccion getOrdenSeleccion() {
+        return ordenSeleccion;
+    }
+
+    public ModoSimulacion getModoSimulacion() {
+        return modoSimulacion;
+    }
+
+    /**
+     * @return cuántas veces más rápido que el tiempo real avanza el reloj virtual
+     *         en modo DISCRETO; 0 para avanzar sin esperas.
+     */
+    public double getFactorTiempo() {
+        return factorTiempo;
+    }
+
+    public ModoHilos getModoHilos() {
+        return modoHilos;
+    }
+
+    public int getHilosPreparacion() {
+        return hilosPreparacion;
+    }
+
+    public int getHilosDespacho() {
+        return hilosDespacho;
+    }
+
+    public int getHilosEntrega() {
+        return hilosEntrega;
+    }
+
+    public int getHilosVerificacion() {
+        return hilosVerificacion;
+    }
+
+    /** @return cantidad de reparadores de casilleros; 0 para que las fallas sean permanentes. */
+    public int getHilosReparacion() {
+        return hilosReparacion;
+    }
+
+    /**
+     * @return true si despacho, entrega y verificación ajustan su cantidad de hilos
+     *         según la carga (ver {@link EscaladorEtapas}); en ese caso se despacha de a uno.
+     */
+    public boolean isEscalado() {
+        return escalado;
+    }
+
+    /** @return hilos en total entre despacho, entrega y verificación cuando se escala. */
+    public int getPresupuestoEscalado() {
+        return presupuestoEscalado > 0 ? presupuestoEscalado : hilosDespacho + hilosEntrega + hilosVerificacion;
+    }
+
+    /** @return hilos mínimos por etapa escalada. */
+    public int getMinEscalado() {
+        return minEscalado;
+    }
+
+    /** @return hilos máximos por etapa escalada; por defecto, todo el presupuesto. */
+    public int getMaxEscalado() {
+        return maxEscalado > 0 ? maxEscalado : getPresupuestoEscalado();
+    }
+
+    /** @return período del control de escalado, en milisegundos. */
+    public int getPeriodoEscaladoMs() {
+        return periodoEscaladoMs;
+    }
+
+    /** @return tiempo en el que el escalado busca vaciar la cola acumulada de una etapa, en milisegundos. */
+    public int getHorizonteEscaladoMs() {
+        return horizonteEscaladoMs;
+    }
+
+    /** @return cantidad máxima de pedidos que un despachante carga por vez (1 = de a uno). */
+    public int getLoteDespacho() {
+        return loteDespacho;
+    }
+
+    /** @return cantidad máxima de pedidos que un verificador retira y controla a la vez (1 = de a uno). */
+    public int getLoteVerificacion() {
+        return loteVerificacion;
+    }
+
+    /**
+     * @return true si la verificación usa los controles de {@code verificacion.controles}
+     *         en lugar de la falla única de {@code falla.verificacion}.
+     */
+    public boolean isVerificacionPorControles() {
+        return !controlesVerificacion.isEmpty();
+    }
+
+    /**
+     * Crea los controles de la verificación final. Cada control de
+     * {@code verificacion.controles} tiene la forma {@code nombre:falla%:espera ms}
+     * y se separan con comas; sin controles, la verificación es un único control
+     * instantáneo con la falla de {@code falla.verificacion}.
+     * @return controles en el orden configurado.
+     */
+    public List<VerificadorSimulado> crearControlesVerificacion() {
+        List<VerificadorSimulado> controles = new ArrayList<>();
+        if (controlesVerificacion.isEmpty()) {
+            controles.add(new VerificadorSimulado("verificacion", fallaVerificacion, new RangoEspera(0, 0)));
+            return controles;
+        }
+        for (String control : controlesVerificacion.split(",")) {
+            String[] partes = control.trim().split(":");
+            if (partes.length != 3) {
+                throw new IllegalArgumentException("Control de verificación inválido: " + control
+                        + " (se espera nombre:falla:espera)");
+            }
+            controles.add(new VerificadorSimulado(partes[0].trim(), Double.parseDouble(partes[1].trim()),
+                    parsearRango(partes[2].trim())));
+        }
+        return controles;
+    }
+
+    /**
+     * @return porcentaje de pedidos que no pasan la verificación: con controles, la
+     *         probabilidad de que falle al menos uno.
+     */
+    public double getFallaVerificacionEfectiva() {
+        double pasan = 1;
+        for (VerificadorSimulado control : crearControlesVerificacion()) {
+            pasan *= 1 - control.getFalla() / 100;
+        }
+        return 100 * (1 - pasan);
+    }
+
+    /** @return porcentaje de pedidos que fallan en el despacho. */
+    public double getFallaDespacho() {
+        return fallaDespacho;
+    }
+
+    /** @return porcentaje de pedidos que fallan en la entrega. */
+    public double getFallaEntrega() {
+        return fallaEntrega;
+    }
+
+    /** @return porcentaje de pedidos que fallan en la verificación. */
+    public double getFallaVerificacion() {
+        return fallaVerificacion;
+    }
+
+    public RangoEspera getEsperaPreparacion() {
+        return esperaPreparacion;
+    }
+
+    public RangoEspera getEsperaDespacho() {
+        return esperaDespacho;
+    }
+
+    public RangoEspera getEsperaEntrega() {
+        return esperaEntrega;
+    }
+
+    public RangoEspera getEsperaVerificacion() {
+        return esperaVerificacion;
+    }
+
+    /** @return tiempo que tarda cada reparación (el MTTR es su promedio). */
+    public RangoEspera getEsperaReparacion() {
+        return esperaReparacion;
+    }
+
+    /** @return reintentos permitidos por pedido que falla; 0 para no reintentar. */
+    public int getMaxReintentos() {
+        return maxReintentos;
+    }
+
+    /** @return espera antes del primer reintento, en milisegundos; se duplica en cada intento. */
+    public int getEsperaBaseReintentoMs() {
+        return esperaBaseReintentoMs;
+    }
+
+    /** @return espera máxima entre reintentos, en milisegundos. */
+    public int getEsperaMaxReintentoMs() {
+        return esperaMaxReintentoMs;
+    }
+
+    /** @return porcentaje de pedidos que se generan con clase express. */
+    public double getPorcentajeExpress() {
+        return porcentajeExpress;
+    }
+
+    /**
+     * @param clase clase de servicio.
+     * @return plazo de la clase desde que el pedido entra a preparación, en milisegundos.
+     */
+    public int getPlazoMs(ClasePedido clase) {
+        return clase == ClasePedido.EXPRESS ? plazoExpressMs : plazoEstandarMs;
+    }
+
+    /**
+     * Sortea la clase de un pedido nuevo según el porcentaje de express.
+     * @param rnd fuente de aleatoriedad.
+     * @return clase sorteada.
+     */
+    public ClasePedido sortearClase(RandomGenerator rnd) {
+        return rnd.nextDouble() * 100 < porcentajeExpress ? ClasePedido.EXPRESS : ClasePedido.ESTANDAR;
+    }
+
+    /** @return porcentaje de fallas sobre usos a partir del cual un casillero está degradado. */
+    public double getUmbralDegradado() {
+        return umbralDegradado;
+    }
+
+    /** @return fallas mínimas para considerar degradado a un casillero. */
+    public int getMinFallasDegradado() {
+        return minFallasDegradado;
+    }
+
+    /**
+     * @return salud de una grilla de este escenario, con reparación si hay reparadores.
+     */
+    public SaludCasilleros crearSalud() {
+        return new SaludCasilleros(casilleros, umbralDegradado, minFallasDegradado, hilosReparacion > 0);
+    }
+
+    public int getPeriodoRegistroMs() {
+        return periodoRegistroMs;
+    }
+
+    public String getArchivoRegistro() {
+        return archivoRegistro;
+    }
+
+    public int getColumnasGrilla() {
+        return columnasGrilla;
+    }
+
+    public boolean isVolcarGrilla() {
+        return volcarGrilla;
+    }
+
+    /** @return true si fallidos y verificados se guardan en memoria; false para solo contarlos. */
+    public boolean isRetenerTerminales() {
+        return retenerTerminales;
+    }
+
+    /** @return archivo donde se vuelcan los pedidos terminados; vacío si no se vuelcan. */
+    public String getArchivoTerminales() {
+        return archivoTerminales;
+    }
+
+    /**
+     * @return archivo donde se graba la traza de la corrida para reproducirla con
+     *         {@link ReproductorTraza}; vacío si no se graba.
+     */
+    public String getArchivoTraza() {
+        return archivoTraza;
+    }
+
+    /**
+     * @return puerto HTTP en el que {@link ServidorMetricas} publica las métricas; 0 si no se publican.
+     */
+    public int getPuertoMetricas() {
+        return puertoMetricas;
+    }
+
+    /**
+     * @return true si los locks del circuito perfilan su contención (ver {@link LockMedido}).
+     */
+    public boolean isPerfilLocks() {
+        return perfilLocks;
+    }
+
+    public String getArchivoDiario() {
+        return archivoDiario;
+    }
+
+    /** @return período de muestreo del diario de estado, en microsegundos. */
+    public int getDiarioPeriodoMicros() {
+        return diarioPeriodoMicros;
+    }
+
+    /** @return cantidad de muestras por confirmación a disco del diario. */
+    public int getDiarioCommitRegistros() {
+        return diarioCommitRegistros;
+    }
+
+    /** @return tiempo máximo entre confirmaciones a disco del diario, en milisegundos. */
+    public int getDiarioCommitMs() {
+        return diarioCommitMs;
+    }
+
+    public boolean isLog() {
+        return log;
+    }
+
+    /** @return cantidad de registros del buffer del log de eventos. */
+    public int getLogCapacidad() {
+        return logCapacidad;
+    }
+
+    public PoliticaDesborde getLogPolitica() {
+        return logPolitica;
+    }
+
+    /** @return cantidad máxima de registros que el escritor del log vuelca por vez. */
+    public int getLogLote() {
+        return logLote;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("semilla=%d modo=%s casilleros=%d pedidos=%d politica=%s franjas=%d almacenes=%d hilos=%d/%d/%d/%d (%s) lote=%d "
+                        + "fallas=%.2f/%.2f/%.2f%% esperas=%s/%s/%s/%s ms reparadores=%d (%s ms) reintentos=%d (%d-%d ms) "
+                        + "orden=%s express=%.0f%% plazos=%d/%d ms escalado=%s verificacion=%s (lote %d)",
+                semilla, modoSimulacion, casilleros, pedidos, politica, franjas, almacenes,
+                hilosPreparacion, hilosDespacho, hilosEntrega, hilosVerificacion, modoHilos, loteDespacho,
+                fallaDespacho, fallaEntrega, fallaVerificacion,
+                esperaPreparacion, esperaDespacho, esperaEntrega, esperaVerificacion,
+                hilosReparacion, esperaReparacion, maxReintentos, esperaBaseReintentoMs, esperaMaxReintentoMs,
+                ordenSeleccion, porcentajeExpress, plazoExpressMs, plazoEstandarMs,
+                escalado ? getPresupuestoEscalado() + " hilos" : "no",
+                isVerificacionPorControles() ? controlesVerificacion : "falla única", loteVerificacion);
+    }
+}
@@ -1,5 +1,5 @@
-import java.util.Random;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.random.RandomGenerator;
 
 /**
  * Clase Despacho que simula el rol de consumidor.
@@ -9,28 +9,53 @@ public class Despacho implements Runnable {
     private SistemaAlmacenamiento sistema;
     private RegistrodePedidos Registropedidos;
     private AtomicInteger pedidosCompletados = new AtomicInteger(0);
+    private ConfiguracionEscenario configuracion;
 
     /**
-     * Constructor.
+     * Constructor con los parámetros del escenario original.
      * @param sistema instancia del sistema de almacenamiento.
      * @param pedidos referencia al registro compartido de pedidos.
      */
     public Despacho(SistemaAlmacenamiento sistema, RegistrodePedidos pedidos) {
+        this(sistema, pedidos, new ConfiguracionEscenario());
+    }
+
+    /**
+     * Constructor.
+     * @param sistema instancia del sistema de almacenamiento.
+     * @param pedidos referencia al registro compartido de pedidos.
+     * @param configuracion escenario con la tasa de falla y los tiempos de despacho.
+     */
+    public Despacho(SistemaAlmacenamiento sistema, RegistrodePedidos pedidos, ConfiguracionEscenario configuracion) {
         this.sistema = sistema;
         this.Registropedidos = pedidos;
+        this.configuracion = configuracion;
     }
 
     /**
-     * Despacha un pedido, liberando el casillero o marcándolo como fuera de servicio en caso de error.
+     * Despacha un pedido, liberando el casillero o marcándolo como fuera de servicio en caso de error;
+     * el pedido que falla queda a cargo del registro, que lo reintenta o lo pasa a fallidos.
+     * @return false si la etapa de preparación se cerró y no hay más pedidos.
      */
-    public void despacharPedido() {
+    public boolean despacharPedido() {
         Pedido pedido = Registropedidos.getListaPreparacion();
-        Random rnd = new Random();
+        if (pedido == null) {
+            return false;
+        }
+        despachar(pedido);
+        return true;
+    }
+
+    /**
+     * Despacha un pedido ya retirado de la lista de preparación de este almacén.
+     * @param pedido pedido a despachar.
+     */
+    public void despachar(Pedido pedido) {
+        contarPreparado(pedido);
 
-        if (rnd.nextInt(100) < 15) { // 15% de fallas
+        if (FuenteAleatoria.actual().nextDouble() * 100 < configuracion.getFallaDespacho()) {
             sistema.setCasilleroFueraServicio(pedido);
-            pedido.setFallido();
-            Registropedidos.addListaFallidos(pedido);
+            Registropedidos.fallar(pedido, EtapaFalla.DESPACHO);
         } else {
             sistema.desocuparCasillero(pedido);
             Registropedidos.addListaTransito(pedido);
@@ -38,16 +63,55 @@ public class Despacho implements Runnable {
     }
 
     /**
-     * Método sincronizado para incrementar y devolver el número de pedido procesado.
-     * @return número del siguiente pedido a procesar o el total si ya se completó.
+     * Despacha un lote: retira hasta {@code max} pedidos de preparación de una vez,
+     * marca fuera de servicio los casilleros de los que fallan y libera los demás
+     * juntos antes de pasarlos a tránsito también juntos.
+     * @param lote arreglo de trabajo, de al menos {@code max} posiciones.
+     * @param max cantidad máxima de pedidos a despachar.
+     * @return cantidad de pedidos despachados; 0 si la etapa de preparación se cerró.
      */
-    public int siguientePedido() {
-        int pedido;
-        if (pedidosCompletados.get() < sistema.getTotalPedidos()) {
-            pedido = pedidosCompletados.getAndIncrement();
-            return pedido;
-        } else {
-            return sistema.getTotalPedidos(); // o -1 si querés evitar que se repita
+    public int despacharLote(Pedido[] lote, int max) {
+        int n = Registropedidos.drainPreparacion(lote, max);
+        if (n > 0) {
+            despachar(lote, n);
+        }
+        return n;
+    }
+
+    /**
+     * Despacha un lote ya retirado de la lista de preparación de este almacén, como
+     * {@link #despacharLote(Pedido[], int)}.
+     * @param lote arreglo con los pedidos; se reordena.
+     * @param n cantidad de pedidos del arreglo, desde el principio.
+     */
+    public void despachar(Pedido[] lote, int n) {
+        RandomGenerator rnd = FuenteAleatoria.actual();
+        int correctos = 0;
+        for (int i = 0; i < n; i++) {
+            Pedido pedido = lote[i];
+            contarPreparado(pedido);
+            if (rnd.nextDouble() * 100 < configuracion.getFallaDespacho()) {
+                sistema.setCasilleroFueraServicio(pedido);
+                Registropedidos.fallar(pedido, EtapaFalla.DESPACHO);
+            } else {
+                lote[correctos++] = pedido;
+            }
+        }
+        if (correctos == 0) {
+            // Si fallaron todos, el último pudo haber terminado el circuito y cerrado las etapas.
+            return;
+        }
+        sistema.desocuparCasilleros(lote, correctos);
+        Registropedidos.addListaTransito(lote, correctos);
+    }
+
+    /**
+     * Cuenta el pedido como preparado solo en su primer despacho; los reintentos no
+     * suman, así que la cuenta no supera la de pedidos.
+     */
+    private void contarPreparado(Pedido pedido) {
+        if (pedido.getIntentos() == 0) {
+            pedidosCompletados.incrementAndGet();
         }
     }
 
@@ -60,28 +124,35 @@ public class Despacho implements Runnable {
     }
 
     /**
-     * Ejecuta el hilo de despacho hasta completar la cantidad total de pedidos.
+     * Ejecuta el hilo de despacho hasta que se cierra la etapa de preparación, es
+     * decir, hasta que terminaron todos los pedidos.
      */
     @Override
     public void run() {
-        while (siguientePedido() < sistema.getTotalPedidos()) {
-            despacharPedido();
-            try {
-                Random rnd = new Random();
-                Thread.sleep(rnd.nextInt(60, 120));
-            } catch (InterruptedException e) {
-                e.printStackTrace();
+        int tamLote = configuracion.getLoteDespacho();
+        if (tamLote > 1) {
+            Pedido[] lote = new Pedido[tamLote];
+            while (despacharLote(lote, tamLote) > 0) {
+                esperar();
+            }
+        } else {
+            while (despacharPedido()) {
+                esperar();
             }
         }
+    }
 
-        Pedido pedidoPoison = new Pedido(null, -1);
-        pedidoPoison.setPoisonPill();
+    /**
+     * Espera el tiempo de despacho sorteado; con lotes, se espera una vez por carga.
+     */
+    private void esperar() {
         try {
-            Thread.sleep(100);
+            int espera = configuracion.getEsperaDespacho().sortear(FuenteAleatoria.actual());
+            if (espera > 0) {
+                Thread.sleep(espera);
+            }
         } catch (InterruptedException e) {
             e.printStackTrace();
         }
-
-        Registropedidos.addListaTransito(pedidoPoison);
     }
 }
\ No newline at end of file
@@ -0,0 +1,133 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Diario binario del estado del sistema a lo largo del tiempo.
+ *
+ * Cada muestra es un registro de tamaño fijo con el instante (ns desde el inicio),
+ * el tamaño de cada etapa y la ocupación de los casilleros. Los registros se
+ * escriben sobre un archivo mapeado en memoria, por segmentos, y se confirman a
+ * disco en grupo: cada {@code commitRegistros} muestras o cada {@code commitMs}
+ * milisegundos, lo que ocurra primero.
+ *
+ * Con cada confirmación se anota en la cabecera cuántos registros quedaron en
+ * disco, así que el lector sabe dónde terminan aunque la corrida se haya cortado.
+ * El archivo conserva el tamaño de sus segmentos: no se recorta al cerrar, porque
+ * el último segmento sigue mapeado hasta que lo libera el recolector, y recortar un
+ * archivo mapeado falla en Windows y deja el mapeo inválido en Linux.
+ *
+ * Formato: cabecera de {@value #CABECERA} bytes (magia, versión, tamaño de registro,
+ * reservado y cantidad de registros confirmados) seguida de registros de
+ * {@value #TAM_REGISTRO} bytes en orden little-endian.
+ */
+public class DiarioEstado implements Closeable {
+    public static final int MAGIA = 0x44494152; // "DIAR"
+    public static final int VERSION = 2;
+    public static final int CABECERA = 24;
+    public static final int TAM_REGISTRO = 8 + 8 * 4;
+    /** Posición en la cabecera de la cantidad de registros confirmados. */
+    public static final int POS_REGISTROS = 16;
+    /** Tamaño de cada segmento mapeado del archivo. */
+    public static final long SEGMENTO = 4L << 20;
+
+    private final FileChannel canal;
+    private final MappedByteBuffer cabecera;
+    private final int commitRegistros;
+    private final long commitNanos;
+
+    private MappedByteBuffer mapa;
+    private long inicioMapa;
+    private long posicion;
+    private int sinConfirmar;
+    private long ultimoCommit;
+    private long registros;
+
+    /**
+     * Crea (o reemplaza) el diario en la ruta indicada.
+     * @param ruta archivo del diario.
+     * @param commitRegistros cantidad de muestras por confirmación a disco.
+     * @param commitMs tiempo máximo entre confirmaciones, en milisegundos.
+     * @throws IOException si no se puede crear el archivo.
+     */
+    public DiarioEstado(Path ruta, int commitRegistros, int commitMs) throws IOException {
+        canal = FileChannel.open(ruta, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        this.commitRegistros = Math.max(1, commitRegistros);
+        this.commitNanos = commitMs * 1_000_000L;
+        mapear(0);
+        mapa.putInt(MAGIA).putInt(VERSION).putInt(TAM_REGISTRO).putInt(0).putLong(0);
+        cabecera = canal.map(FileChannel.MapMode.READ_WRITE, 0, CABECERA);
+        cabecera.order(ByteOrder.LITTLE_ENDIAN);
+        posicion = CABECERA;
+        ultimoCommit = System.nanoTime();
+    }
+
+    /**
+     * Agrega una muestra. Solo debe llamarla un hilo (el muestreador).
+     * @param nanos instante de la muestra, en nanosegundos desde el inicio.
+     * @param etapas tamaños de preparación, tránsito, entregados, fallidos y verificados.
+     * @param ocupados casilleros ocupados.
+     * @param libres casilleros libres.
+     * @param fueraServicio casilleros fuera de servicio.
+     * @throws IOException si falla el mapeo de un nuevo segmento.
+     */
+    public void escribir(long nanos, int[] etapas, int ocupados, int libres, int fueraServicio) throws IOException {
+        if (posicion + TAM_REGISTRO > inicioMapa + mapa.capacity()) {
+            confirmar();
+            mapear(posicion);
+        }
+        mapa.putLong(nanos);
+        for (int i = 0; i < 5; i++) {
+            mapa.putInt(etapas[i]);
+        }
+        mapa.putInt(ocupados).putInt(libres).putInt(fueraServicio);
+        posicion += TAM_REGISTRO;
+        registros++;
+
+        sinConfirmar++;
+        long ahora = System.nanoTime();
+        if (sinConfirmar >= commitRegistros || ahora - ultimoCommit >= commitNanos) {
+            confirmar();
+            ultimoCommit = ahora;
+        }
+    }
+
+    /**
+     * Baja a disco los registros y después anota su cantidad en la cabecera, para
+     * que la cabecera nunca cuente registros que no llegaron al archivo.
+     */
+    private void confirmar() {
+        mapa.force();
+        cabecera.putLong(POS_REGISTROS, registros);
+        cabecera.force();
+        sinConfirmar = 0;
+    }
+
+    /**
+     * @return cantidad de muestras escritas.
+     */
+    public long getRegistros() {
+        return registros;
+    }
+
+    /**
+     * Confirma lo pendiente, con la cantidad final de registros en la cabecera, y
+     * cierra el archivo.
+     */
+    @Override
+    public void close() throws IOException {
+        confirmar();
+        canal.close();
+    }
+
+    private void mapear(long desde) throws IOException {
+        inicioMapa = desde;
+        mapa = canal.map(FileChannel.MapMode.READ_WRITE, desde, SEGMENTO);
+        mapa.order(ByteOrder.LITTLE_ENDIAN);
+    }
+}
@@ -1,84 +1,83 @@
-import java.util.Date;
-import java.util.Random;
-
 public class Entrega implements Runnable {
     private RegistrodePedidos Registropedidos;
-    private boolean finalizacion = false;
+    private ConfiguracionEscenario configuracion;
 
     /**
-     * Constructor.
-     * @param sistema instancia del sistema de almacenamiento.
+     * Constructor con los parámetros del escenario original.
      * @param pedidos referencia al registro compartido de pedidos.
      */
     public Entrega( RegistrodePedidos pedidos) {
+        this(pedidos, new ConfiguracionEscenario());
+    }
+
+    /**
+     * Constructor.
+     * @param pedidos referencia al registro compartido de pedidos.
+     * @param configuracion escenario con la tasa de falla y los tiempos de entrega.
+     */
+    public Entrega(RegistrodePedidos pedidos, ConfiguracionEscenario configuracion) {
         this.Registropedidos = pedidos;
+        this.configuracion = configuracion;
     }
 
     /**
-     * Entrega un pedido, liberando el casillero o marcándolo como fuera de servicio en caso de error.
+     * Entrega un pedido de la lista de tránsito o informa su falla al registro.
+     * @return false si la etapa de tránsito se cerró y no hay más pedidos.
      */
-    public void entregaPedido() {
+    public boolean entregaPedido() {
         Pedido pedido = Registropedidos.getListaTransito();
-        if (pedido.pedidoPoison()) {
-            Registropedidos.addListaTransito(pedido);
-            finalizacion = true;
-            return;
+        if (pedido == null) {
+            return false;
         }
+        entregar(pedido);
+        return true;
+    }
 
-        Random rnd = new Random();
-
-        if (rnd.nextInt(100) < 10) { // 10% de fallas
-            pedido.setFallido();
-            Registropedidos.addListaFallidos(pedido);
-            log("PEDIDO_FALLIDO", pedido);
+    /**
+     * Entrega un pedido ya retirado de la lista de tránsito de este almacén.
+     * @param pedido pedido a entregar.
+     */
+    public void entregar(Pedido pedido) {
+        if (FuenteAleatoria.actual().nextDouble() * 100 < configuracion.getFallaEntrega()) {
+            Registropedidos.fallar(pedido, EtapaFalla.ENTREGA);
+            log(AccionEvento.PEDIDO_FALLIDO, pedido);
         } else {
             Registropedidos.addListaEntregados(pedido);
-            log("PEDIDO_ENTREGADO", pedido);
+            log(AccionEvento.PEDIDO_ENTREGADO, pedido);
         }
 
     }
 
 
     /**
-     * Registra en consola información sobre acciones realizadas en el sistema.
+     * Registra en el log de eventos asíncrono una acción realizada en el sistema.
      * @param accion Descripción de la acción.
      * @param pedido Pedido involucrado (puede ser null).
      */
-    private void log(String accion, Pedido pedido) {
-        String msg = String.format("%1$tF %1$tT.%1$tL [%2$s] %3$s %4$s",
-                new Date(),
-                Thread.currentThread().getName(),
-                accion,
-                (pedido != null ? pedido : ""));
-        System.out.println(msg);
+    private void log(AccionEvento accion, Pedido pedido) {
+        if (!configuracion.isLog()) {
+            return;
+        }
+        RegistroEventos.log(accion, pedido);
     }
 
  
     /**
-     * Ejecuta el hilo de despacho hasta completar la cantidad total de pedidos.
+     * Ejecuta el hilo de entrega hasta que se cierra la etapa de tránsito.
      */
     @Override
     public void run() {
-        while (!finalizacion){
-            entregaPedido();
+        while (entregaPedido()) {
             try {
-                Random rnd = new Random();
-                Thread.sleep(rnd.nextInt(90, 180));
+                int espera = configuracion.getEsperaEntrega().sortear(FuenteAleatoria.actual());
+                if (espera > 0) {
+                    Thread.sleep(espera);
+                }
             } catch (InterruptedException e) {
                 e.printStackTrace();
             }
         }
-
-        Pedido pedidoPoison = new Pedido(null, -1);
-        pedidoPoison.setPoisonPill();
-        try {
-            Thread.sleep(100);
-        } catch (InterruptedException e) {
-            e.printStackTrace();
-        }
-
-        Registropedidos.addListaEntregados(pedidoPoison);
-        log("ENTREGA_FINALIZACION", null);
+        log(AccionEvento.ENTREGA_FINALIZACION, null);
     }
 
 }
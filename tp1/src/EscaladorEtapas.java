@@ -0,0 +1,204 @@
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Controlador que reparte un presupuesto fijo de trabajadores entre las etapas del
+ * circuito según la carga de cada una.
+ *
+ * Cada período mide, por etapa, la tasa de llegada a su cola (λ), el tiempo de
+ * servicio por pedido (S) y la profundidad de la cola (Q). Por la ley de Little, la
+ * etapa tiene en promedio {@code λ·S} trabajadores ocupados; a eso se suma lo
+ * necesario para vaciar la cola acumulada dentro del horizonte, {@code Q·S/horizonte}.
+ * λ y S se suavizan con un promedio exponencial para no reaccionar a un solo período.
+ *
+ * Cada etapa recibe primero su mínimo y el resto del presupuesto se reparte de a un
+ * trabajador, siempre a la etapa con más demanda insatisfecha, sin pasar su máximo.
+ * Así, si el presupuesto alcanza cada etapa recibe lo que pide, y si no alcanza, el
+ * faltante se reparte en proporción a la demanda.
+ */
+public class EscaladorEtapas implements Runnable {
+    private static final double SUAVIZADO = 0.5;
+
+    private final GrupoEtapa[] grupos;
+    private final int presupuesto;
+    private final int min;
+    private final int max;
+    private final long periodoNanos;
+    private final double horizonteNanos;
+
+    private final long[] encoladosPrevios;
+    private final long[] atendidosPrevios;
+    private final long[] ocupadoPrevio;
+    private final double[] tasa;
+    private final double[] servicio;
+    private final double[] demanda;
+    private final int[] maximoAlcanzado;
+    private long ajustes;
+    private volatile boolean detenido;
+    private volatile Thread hilo;
+
+    /**
+     * Constructor.
+     * @param grupos grupos de las etapas a escalar.
+     * @param presupuesto trabajadores en total entre todas las etapas.
+     * @param min trabajadores mínimos por etapa.
+     * @param max trabajadores máximos por etapa.
+     * @param periodoMs período de control, en milisegundos.
+     * @param horizonteMs tiempo en el que se busca vaciar la cola acumulada, en milisegundos.
+     */
+    public EscaladorEtapas(GrupoEtapa[] grupos, int presupuesto, int min, int max, long periodoMs, long horizonteMs) {
+        if (presupuesto < min * grupos.length) {
+            throw new IllegalArgumentException("El presupuesto de trabajadores no cubre el mínimo de cada etapa");
+        }
+        this.grupos = grupos;
+        this.presupuesto = presupuesto;
+        this.min = min;
+        this.max = max;
+        this.periodoNanos = TimeUnit.MILLISECONDS.toNanos(periodoMs);
+        this.horizonteNanos = TimeUnit.MILLISECONDS.toNanos(horizonteMs);
+        int n = grupos.length;
+        encoladosPrevios = new long[n];
+        atendidosPrevios = new long[n];
+        ocupadoPrevio = new long[n];
+        tasa = new double[n];
+        servicio = new double[n];
+        demanda = new double[n];
+        maximoAlcanzado = new int[n];
+        for (int i = 0; i < n; i++) {
+            servicio[i] = grupos[i].getServicioEstimadoNanos();
+        }
+    }
+
+    /**
+     * Inicia cada etapa con la cantidad de trabajadores indicada, acotada por el mínimo y el máximo.
+     * @param iniciales trabajadores iniciales de cada etapa, en el orden de los grupos.
+     */
+    public void arrancar(int[] iniciales) {
+        for (int i = 0; i < grupos.length; i++) {
+            encoladosPrevios[i] = grupos[i].getEntrada().getMetricas().getEncolados();
+            int cantidad = Math.max(min, Math.min(max, iniciales[i]));
+            grupos[i].ajustar(cantidad);
+            maximoAlcanzado[i] = cantidad;
+        }
+    }
+
+    /**
+     * Ajusta las etapas cada período hasta que se detiene o se cerraron todas sus colas.
+     */
+    @Override
+    public void run() {
+        hilo = Thread.currentThread();
+        long anterior = System.nanoTime();
+        while (!detenido && !todasCerradas()) {
+            LockSupport.parkNanos(periodoNanos);
+            long ahora = System.nanoTime();
+            if (!detenido) {
+                ajustar(ahora - anterior);
+            }
+            anterior = ahora;
+        }
+    }
+
+    private boolean todasCerradas() {
+        for (GrupoEtapa g : grupos) {
+            if (!g.getEntrada().estaCerrada()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Un paso de control: mide cada etapa, calcula su demanda y reparte el presupuesto.
+     * @param transcurrido nanosegundos desde el paso anterior.
+     */
+    void ajustar(long transcurrido) {
+        if (transcurrido <= 0) {
+            return;
+        }
+        for (int i = 0; i < grupos.length; i++) {
+            GrupoEtapa g = grupos[i];
+            long encolados = g.getEntrada().getMetricas().getEncolados();
+            long atendidos = g.getAtendidos();
+            long ocupado = g.getOcupadoNanos();
+            double llegadas = (double) (encolados - encoladosPrevios[i]) / transcurrido;
+            tasa[i] = SUAVIZADO * llegadas + (1 - SUAVIZADO) * tasa[i];
+            if (atendidos > atendidosPrevios[i]) {
+                double medido = (double) (ocupado - ocupadoPrevio[i]) / (atendidos - atendidosPrevios[i]);
+                servicio[i] = SUAVIZADO * medido + (1 - SUAVIZADO) * servicio[i];
+            }
+            encoladosPrevios[i] = encolados;
+            atendidosPrevios[i] = atendidos;
+            ocupadoPrevio[i] = ocupado;
+            long cola = g.getEntrada().getMetricas().getProfundidad();
+            demanda[i] = tasa[i] * servicio[i] + cola * servicio[i] / horizonteNanos;
+        }
+        int[] objetivos = repartir();
+        for (int i = 0; i < grupos.length; i++) {
+            if (objetivos[i] != grupos[i].getObjetivo()) {
+                grupos[i].ajustar(objetivos[i]);
+                ajustes++;
+            }
+            maximoAlcanzado[i] = Math.max(maximoAlcanzado[i], objetivos[i]);
+        }
+    }
+
+    /**
+     * @return trabajadores para cada etapa según la demanda medida.
+     */
+    private int[] repartir() {
+        int[] objetivos = new int[grupos.length];
+        int libres = presupuesto;
+        for (int i = 0; i < grupos.length; i++) {
+            objetivos[i] = min;
+            libres -= min;
+        }
+        while (libres > 0) {
+            int elegida = -1;
+            double faltante = 0;
+            for (int i = 0; i < grupos.length; i++) {
+                double f = demanda[i] - objetivos[i];
+                if (objetivos[i] < max && f > faltante) {
+                    elegida = i;
+                    faltante = f;
+                }
+            }
+            if (elegida < 0) {
+                break;
+            }
+            objetivos[elegida]++;
+            libres--;
+        }
+        return objetivos;
+    }
+
+    /**
+     * Deja de ajustar; los grupos conservan la cantidad de trabajadores que tenían.
+     * Al volver, el escalador ya no inicia hilos nuevos.
+     * @throws InterruptedException si se interrumpe la espera del hilo del escalador.
+     */
+    public void detener() throws InterruptedException {
+        detenido = true;
+        Thread h = hilo;
+        if (h != null) {
+            LockSupport.unpark(h);
+            h.join();
+        }
+    }
+
+    /**
+     * @return una línea por etapa con su demanda, trabajadores y ajustes.
+     */
+    public String resumen() {
+        StringBuilder sb = new StringBuilder(String.format("Escalado: presupuesto %d (%d-%d por etapa), %d ajustes%n",
+                presupuesto, min, max, ajustes));
+        for (int i = 0; i < grupos.length; i++) {
+            GrupoEtapa g = grupos[i];
+            sb.append(String.format("  %-13s λ %.1f/s | S %.1f ms | demanda %.2f | trabajadores %d (máx %d)"
+                            + " | altas %d, bajas %d | atendidos %d%n",
+                    g.getNombre(), tasa[i] * 1e9, servicio[i] / 1e6, demanda[i], g.getObjetivo(),
+                    maximoAlcanzado[i], g.getAltas(), g.getBajas(), g.getAtendidos()));
+        }
+        return sb.toString();
+    }
+}
@@ -1,3 +1,3 @@
 public enum EstadoPedido {
-    PREPARACION, TRANSITO, ENTREGADO, FALLIDO, VERIFICADO
+    PREPARACION, TRANSITO, ENTREGADO, FALLIDO, VERIFICADO, REINTENTO
 }
@@ -0,0 +1,24 @@
+/**
+ * Etapa en la que falló un pedido; decide por dónde vuelve a entrar si se reintenta.
+ */
+public enum EtapaFalla {
+    /** Falló el despacho: el casillero quedó fuera de servicio y el pedido necesita otro. */
+    DESPACHO(EstadoPedido.PREPARACION),
+    /** Falló la entrega: el pedido vuelve a tránsito para otro intento. */
+    ENTREGA(EstadoPedido.TRANSITO),
+    /** Falló la verificación: el pedido se vuelve a entregar. */
+    VERIFICACION(EstadoPedido.TRANSITO);
+
+    private final EstadoPedido destino;
+
+    EtapaFalla(EstadoPedido destino) {
+        this.destino = destino;
+    }
+
+    /**
+     * @return estado por el que el pedido vuelve a entrar al circuito al reintentarse.
+     */
+    public EstadoPedido getDestino() {
+        return destino;
+    }
+}
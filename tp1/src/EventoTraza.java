@@ -0,0 +1,30 @@
+/**
+ * Decisiones que se anotan en una {@link TrazaEjecucion}. Cada una lleva el pedido
+ * involucrado (o -1) y un dato cuyo significado depende del evento.
+ */
+public enum EventoTraza {
+    /** Un pedido ocupó un casillero; dato: número de casillero. */
+    OCUPAR,
+    /** Se liberó el casillero de un pedido despachado; dato: número de casillero. */
+    LIBERAR,
+    /** El casillero de un pedido quedó fuera de servicio; dato: número de casillero. */
+    AVERIAR,
+    /** Un casillero volvió a la grilla; dato: número de casillero. */
+    REPARAR,
+    /** El pedido entró a preparación; dato: clase de servicio. */
+    PREPARACION,
+    /** El pedido pasó a tránsito. */
+    TRANSITO,
+    /** El pedido pasó a entregados. */
+    ENTREGADO,
+    /** El pedido pasó a verificados. */
+    VERIFICADO,
+    /** El pedido falló; dato: {@link EtapaFalla}. */
+    FALLA,
+    /** El pedido pasó a fallidos. */
+    FALLIDO,
+    /** El pedido volvió al circuito tras un reintento; dato: estado de destino. */
+    REINGRESO,
+    /** Se descartaron pedidos que ya no se iban a generar; dato: cantidad. */
+    DESCARTE
+}
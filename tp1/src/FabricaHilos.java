@@ -0,0 +1,86 @@
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * Crea los hilos de los trabajadores según el {@link ModoHilos} elegido.
+ *
+ * Los hilos virtuales se obtienen por reflexión ({@code Thread.ofVirtual()}), para
+ * que el proyecto siga compilando con Java 17. Si la JVM no los soporta, se usan
+ * hilos de plataforma y se avisa por consola.
+ *
+ * Las esperas entre etapas usan {@code ReentrantLock}/{@code Condition} y
+ * {@code Semaphore}, no {@code synchronized}/{@code wait}, por lo que un hilo
+ * virtual bloqueado en ellas libera su hilo portador.
+ */
+public class FabricaHilos {
+    private static final MethodHandle OF_VIRTUAL;
+    private static final MethodHandle NOMBRE;
+    private static final MethodHandle SIN_INICIAR;
+
+    static {
+        MethodHandle ofVirtual = null;
+        MethodHandle nombre = null;
+        MethodHandle sinIniciar = null;
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            Class<?> builder = Class.forName("java.lang.Thread$Builder");
+            Class<?> builderVirtual = Class.forName("java.lang.Thread$Builder$OfVirtual");
+            ofVirtual = lookup.findStatic(Thread.class, "ofVirtual", MethodType.methodType(builderVirtual));
+            nombre = lookup.findVirtual(builder, "name", MethodType.methodType(builder, String.class));
+            sinIniciar = lookup.findVirtual(builder, "unstarted", MethodType.methodType(Thread.class, Runnable.class));
+        } catch (ReflectiveOperationException e) {
+            ofVirtual = null;
+        }
+        OF_VIRTUAL = ofVirtual;
+        NOMBRE = nombre;
+        SIN_INICIAR = sinIniciar;
+    }
+
+    private final ModoHilos modo;
+
+    /**
+     * Constructor.
+     * @param modo tipo de hilo pedido. Si es VIRTUAL y la JVM no lo soporta, se usa PLATAFORMA.
+     */
+    public FabricaHilos(ModoHilos modo) {
+        if (modo == ModoHilos.VIRTUAL && !soportaVirtuales()) {
+            System.out.println("Hilos virtuales no disponibles en esta JVM, se usan hilos de plataforma");
+            modo = ModoHilos.PLATAFORMA;
+        }
+        this.modo = modo;
+    }
+
+    /**
+     * @return true si la JVM permite crear hilos virtuales.
+     */
+    public static boolean soportaVirtuales() {
+        return OF_VIRTUAL != null;
+    }
+
+    /**
+     * @return modo efectivo de los hilos creados.
+     */
+    public ModoHilos getModo() {
+        return modo;
+    }
+
+    /**
+     * Crea un hilo sin iniciarlo.
+     * @param tarea tarea a ejecutar.
+     * @param nombre nombre del hilo.
+     * @return el hilo creado.
+     */
+    public Thread crear(Runnable tarea, String nombre) {
+        if (modo == ModoHilos.VIRTUAL) {
+            try {
+                Object builder = OF_VIRTUAL.invoke();
+                builder = NOMBRE.invoke(builder, nombre);
+                return (Thread) SIN_INICIAR.invoke(builder, tarea);
+            } catch (Throwable e) {
+                throw new IllegalStateException("No se pudo crear el hilo virtual " + nombre, e);
+            }
+        }
+        return new Thread(tarea, nombre);
+    }
+}
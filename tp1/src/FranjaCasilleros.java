@@ -0,0 +1,156 @@
+import java.util.ArrayList;
+import java.util.random.RandomGenerator;
+
+/**
+ * Porción contigua de la matriz de casilleros con su propio lock e índice de libres.
+ * Repartir los casilleros en franjas permite que varios hilos ocupen y liberen
+ * casilleros a la vez sin serializarse en un único lock.
+ *
+ * Los libres se reparten en dos niveles: los sanos y los degradados según
+ * {@link SaludCasilleros}. Un casillero se clasifica al volver a la franja, y los
+ * degradados solo se entregan cuando no queda ningún sano.
+ */
+public class FranjaCasilleros {
+    private final int desde;
+    private final int cantidad;
+    private final ArrayList<Casillero> matriz;
+    private final SaludCasilleros salud;
+    private final IndiceCasillerosLibres libres;
+    private final IndiceCasillerosLibres degradados;
+    private final LockMedido lock;
+
+    /**
+     * Constructor. Todos los casilleros de la franja arrancan libres.
+     * @param matriz casilleros del sistema.
+     * @param politica criterio de elección de casilleros dentro de la franja.
+     * @param desde primer casillero de la franja.
+     * @param cantidad cantidad de casilleros de la franja.
+     * @param salud historial de fallas con el que se clasifican los casilleros liberados.
+     */
+    public FranjaCasilleros(ArrayList<Casillero> matriz, PoliticaAsignacion politica, int desde, int cantidad,
+                            SaludCasilleros salud) {
+        this.desde = desde;
+        this.cantidad = cantidad;
+        this.matriz = matriz;
+        this.salud = salud;
+        this.lock = new LockMedido("casilleros " + desde + "-" + (desde + cantidad - 1));
+        this.libres = new IndiceCasillerosLibres(matriz, politica, desde, cantidad);
+        this.degradados = new IndiceCasillerosLibres(matriz, politica, desde, cantidad);
+        for (int i = desde; i < desde + cantidad; i++) {
+            libres.agregar(i);
+        }
+    }
+
+    /**
+     * @param nro número de casillero.
+     * @return true si el casillero pertenece a esta franja.
+     */
+    public boolean contiene(int nro) {
+        return nro >= desde && nro < desde + cantidad;
+    }
+
+    /**
+     * Toma un casillero libre de la franja; uno degradado solo si no queda ninguno sano.
+     * @param rnd fuente de aleatoriedad para la política ALEATORIA.
+     * @param esperar si es false y el lock está tomado, desiste sin bloquear.
+     * @return número de casillero, o -1 si no hay libres (o el lock estaba ocupado).
+     */
+    public int tomar(RandomGenerator rnd, boolean esperar) {
+        if (esperar) {
+            lock.lock();
+        } else if (!lock.tryLock()) {
+            return -1;
+        }
+        try {
+            int nro = libres.tomar(rnd);
+            if (nro < 0) {
+                nro = degradados.tomar(rnd);
+                if (nro >= 0) {
+                    salud.contarAsignacionDegradada();
+                }
+            }
+            return nro;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Devuelve un casillero a los libres de la franja.
+     * @param nro número de casillero.
+     */
+    public void liberar(int nro) {
+        lock.lock();
+        try {
+            agregar(nro);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Devuelve varios casilleros de la franja a los libres con una sola toma del lock.
+     * @param nros arreglo con los números de casillero.
+     * @param desde primera posición del arreglo a devolver.
+     * @param hasta posición siguiente a la última a devolver.
+     */
+    public void liberarTodos(int[] nros, int desde, int hasta) {
+        lock.lock();
+        try {
+            for (int i = desde; i < hasta; i++) {
+                agregar(nros[i]);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Toma un casillero determinado, sano o degradado, si está libre.
+     * @param nro número de casillero.
+     * @return true si estaba libre y se quitó de los libres.
+     */
+    public boolean tomarNumero(int nro) {
+        lock.lock();
+        try {
+            IndiceCasillerosLibres indice = libres.contiene(nro) ? libres
+                    : degradados.contiene(nro) ? degradados : null;
+            if (indice == null) {
+                return false;
+            }
+            indice.remover(nro);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Quita un casillero de los libres de la franja, si estaba.
+     * @param nro número de casillero.
+     */
+    public void remover(int nro) {
+        lock.lock();
+        try {
+            libres.remover(nro);
+            degradados.remover(nro);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void agregar(int nro) {
+        if (salud.esDegradado(matriz.get(nro))) {
+            degradados.agregar(nro);
+        } else {
+            libres.agregar(nro);
+        }
+    }
+
+    /**
+     * @return lock de la franja, con sus tiempos de espera.
+     */
+    public LockMedido getLock() {
+        return lock;
+    }
+}
@@ -0,0 +1,100 @@
+import java.util.SplittableRandom;
+import java.util.random.RandomGenerator;
+
+/**
+ * Fuente de aleatoriedad de una corrida, derivada de una única semilla.
+ *
+ * Cada hilo recibe su propio {@link SplittableRandom}, que se crea la primera vez
+ * que lo pide y después se reutiliza: sortear no reserva memoria ni comparte estado
+ * entre hilos. La semilla de cada flujo se obtiene mezclando la de la corrida con el
+ * nombre del hilo, que es estable ("Despacho-0", "Almacen-1-Entrega-2", ...), así que
+ * cada trabajador repite su secuencia en cada corrida con la misma semilla. La
+ * simulación discreta corre en un solo hilo y se repite exacta; en tiempo real
+ * se repiten las secuencias de cada trabajador, no el orden en que se intercalan.
+ *
+ * La fuente compartida por el programa se instala con {@link #instalar}; hasta
+ * entonces se usa una con semilla al azar.
+ */
+public class FuenteAleatoria {
+    private static volatile FuenteAleatoria instancia = new FuenteAleatoria(semillaAlAzar());
+
+    private final long semilla;
+    private final ThreadLocal<SplittableRandom> flujos;
+
+    /**
+     * Constructor.
+     * @param semilla semilla de la corrida.
+     */
+    public FuenteAleatoria(long semilla) {
+        this.semilla = semilla;
+        this.flujos = ThreadLocal.withInitial(() -> flujo(Thread.currentThread().getName()));
+    }
+
+    /**
+     * @return una semilla distinta en cada llamada, para corridas que no fijan la suya.
+     */
+    public static long semillaAlAzar() {
+        return mezclar(System.nanoTime() ^ System.identityHashCode(new Object()));
+    }
+
+    /**
+     * Reemplaza la fuente compartida. Se llama antes de crear los trabajadores; los
+     * hilos que ya sortearon con la anterior siguen con su flujo.
+     * @param nueva fuente a instalar.
+     */
+    public static void instalar(FuenteAleatoria nueva) {
+        instancia = nueva;
+    }
+
+    /**
+     * @return fuente compartida por el programa.
+     */
+    public static FuenteAleatoria getInstancia() {
+        return instancia;
+    }
+
+    /**
+     * @return flujo del hilo actual en la fuente compartida.
+     */
+    public static RandomGenerator actual() {
+        return instancia.delHilo();
+    }
+
+    /**
+     * @return flujo del hilo actual en esta fuente.
+     */
+    public RandomGenerator delHilo() {
+        return flujos.get();
+    }
+
+    /**
+     * Crea un flujo nuevo identificado por nombre. Dos flujos con el mismo nombre y
+     * la misma semilla producen la misma secuencia.
+     * @param nombre nombre del flujo.
+     * @return flujo nuevo, para un solo hilo.
+     */
+    public SplittableRandom flujo(String nombre) {
+        long h = 1125899906842597L;
+        for (int i = 0; i < nombre.length(); i++) {
+            h = 31 * h + nombre.charAt(i);
+        }
+        return new SplittableRandom(mezclar(semilla ^ mezclar(h)));
+    }
+
+    /**
+     * @return semilla de la corrida.
+     */
+    public long getSemilla() {
+        return semilla;
+    }
+
+    /**
+     * Mezclador de 64 bits (variante 13 de Stafford): semillas cercanas dan flujos
+     * sin relación entre sí.
+     */
+    private static long mezclar(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,177 @@
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.random.RandomGenerator;
+
+/**
+ * Grupo elástico de trabajadores de una etapa: toman pedidos de la cola de entrada
+ * de la etapa, los procesan de a uno y esperan el tiempo de la etapa. La cantidad de
+ * trabajadores la fija {@link EscaladorEtapas} con {@link #ajustar(int)}.
+ *
+ * Para crecer se crean hilos nuevos; para achicarse, cada trabajador revisa entre
+ * pedido y pedido si sobra y, si es así, se retira. La espera por pedidos está
+ * acotada, de modo que también se retiran los que están ociosos. El grupo mide el
+ * tiempo de servicio de cada pedido (proceso más espera), que es lo que ocupa a un
+ * trabajador, para que el escalador estime cuántos hacen falta.
+ */
+public class GrupoEtapa {
+    private static final long ESPERA_ENTRADA_MS = 20;
+
+    private final String nombre;
+    private final ColaEtapa entrada;
+    private final Consumer<Pedido> proceso;
+    private final ConfiguracionEscenario.RangoEspera espera;
+    private final FabricaHilos fabrica;
+
+    private final AtomicInteger activos = new AtomicInteger();
+    private volatile int objetivo;
+    private int creados;
+    private final ConcurrentLinkedQueue<Thread> hilos = new ConcurrentLinkedQueue<>();
+
+    private final LongAdder atendidos = new LongAdder();
+    private final LongAdder ocupadoNanos = new LongAdder();
+    private final LongAdder altas = new LongAdder();
+    private final LongAdder bajas = new LongAdder();
+
+    /**
+     * Constructor. El grupo empieza sin trabajadores.
+     * @param nombre nombre de la etapa, prefijo del nombre de cada hilo.
+     * @param entrada cola de la que la etapa toma los pedidos.
+     * @param proceso procesamiento de un pedido ya retirado de la cola.
+     * @param espera tiempo que tarda la etapa con cada pedido.
+     * @param fabrica fábrica que decide el tipo de hilo.
+     */
+    public GrupoEtapa(String nombre, ColaEtapa entrada, Consumer<Pedido> proceso,
+                      ConfiguracionEscenario.RangoEspera espera, FabricaHilos fabrica) {
+        this.nombre = nombre;
+        this.entrada = entrada;
+        this.proceso = proceso;
+        this.espera = espera;
+        this.fabrica = fabrica;
+    }
+
+    /**
+     * Fija la cantidad de trabajadores. Si faltan se inician enseguida; si sobran,
+     * se retiran al terminar el pedido que tienen en curso. No hace nada si la
+     * cola de entrada ya se cerró. Lo llama un solo hilo: el que arma el circuito
+     * antes de empezar y después el escalador.
+     * @param cantidad trabajadores deseados.
+     */
+    public void ajustar(int cantidad) {
+        objetivo = cantidad;
+        while (activos.get() < cantidad && !entrada.estaCerrada()) {
+            activos.incrementAndGet();
+            Thread t = fabrica.crear(this::trabajar, nombre + "-" + creados++);
+            hilos.add(t);
+            altas.increment();
+            t.start();
+        }
+    }
+
+    private void trabajar() {
+        RandomGenerator rnd = FuenteAleatoria.actual();
+        while (true) {
+            if (retirarse()) {
+                bajas.increment();
+                return;
+            }
+            Pedido pedido = entrada.tomar(ESPERA_ENTRADA_MS, TimeUnit.MILLISECONDS);
+            if (pedido == null) {
+                if (entrada.estaCerrada()) {
+                    activos.decrementAndGet();
+                    return;
+                }
+                continue;
+            }
+            long inicio = System.nanoTime();
+            proceso.accept(pedido);
+            dormir(espera.sortear(rnd));
+            ocupadoNanos.add(System.nanoTime() - inicio);
+            atendidos.increment();
+        }
+    }
+
+    /**
+     * @return true si el trabajador sobra y se dio de baja.
+     */
+    private boolean retirarse() {
+        while (true) {
+            int actuales = activos.get();
+            if (actuales <= objetivo) {
+                return false;
+            }
+            if (activos.compareAndSet(actuales, actuales - 1)) {
+                return true;
+            }
+        }
+    }
+
+    private static void dormir(int ms) {
+        if (ms <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Espera a que terminen todos los trabajadores que se crearon. Se llama después
+     * de detener al escalador, cuando ya no se crean hilos nuevos.
+     * @throws InterruptedException si se interrumpe la espera.
+     */
+    public void esperarTerminacion() throws InterruptedException {
+        for (Thread t : hilos) {
+            t.join();
+        }
+    }
+
+    /** @return nombre de la etapa. */
+    public String getNombre() {
+        return nombre;
+    }
+
+    /** @return cola de entrada de la etapa. */
+    public ColaEtapa getEntrada() {
+        return entrada;
+    }
+
+    /** @return trabajadores vivos en este momento. */
+    public int getActivos() {
+        return activos.get();
+    }
+
+    /** @return trabajadores deseados. */
+    public int getObjetivo() {
+        return objetivo;
+    }
+
+    /** @return pedidos procesados desde el comienzo. */
+    public long getAtendidos() {
+        return atendidos.sum();
+    }
+
+    /** @return tiempo total ocupado por los trabajadores, en nanosegundos. */
+    public long getOcupadoNanos() {
+        return ocupadoNanos.sum();
+    }
+
+    /** @return trabajadores iniciados desde el comienzo. */
+    public long getAltas() {
+        return altas.sum();
+    }
+
+    /** @return trabajadores que se retiraron por sobrar. */
+    public long getBajas() {
+        return bajas.sum();
+    }
+
+    /** @return tiempo medio de servicio según el rango de espera, en nanosegundos. */
+    public long getServicioEstimadoNanos() {
+        return TimeUnit.MILLISECONDS.toNanos(espera.getMin() + espera.getMax()) / 2;
+    }
+}
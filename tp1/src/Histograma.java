@@ -0,0 +1,114 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histograma de latencias con cubetas log-lineales, al estilo HdrHistogram.
+ *
+ * Los valores menores a {@value #SUBCUBETAS} se guardan exactos; por encima, cada
+ * potencia de dos se divide en {@value #MITAD} cubetas iguales, lo que da un error
+ * relativo menor al 1,6% en todo el rango de {@code long} con un arreglo fijo de
+ * contadores. Registrar es un incremento atómico, sin locks, y se puede hacer desde
+ * varios hilos mientras otro consulta percentiles.
+ */
+public class Histograma {
+    private static final int BITS_SUBCUBETA = 7;
+    private static final int SUBCUBETAS = 1 << BITS_SUBCUBETA;
+    private static final int MITAD = SUBCUBETAS / 2;
+    private static final int CUBETAS = SUBCUBETAS + (64 - BITS_SUBCUBETA) * MITAD;
+
+    private final AtomicLongArray cuentas = new AtomicLongArray(CUBETAS);
+    private final LongAdder total = new LongAdder();
+    private final LongAdder suma = new LongAdder();
+    private final AtomicLong maximo = new AtomicLong();
+
+    /**
+     * Registra un valor. Los negativos se cuentan como cero.
+     * @param valor valor a registrar (por ejemplo, nanosegundos).
+     */
+    public void registrar(long valor) {
+        if (valor < 0) {
+            valor = 0;
+        }
+        cuentas.incrementAndGet(indice(valor));
+        total.increment();
+        suma.add(valor);
+        long actual;
+        while (valor > (actual = maximo.get()) && !maximo.compareAndSet(actual, valor)) {
+            // reintenta hasta dejar el máximo
+        }
+    }
+
+    /**
+     * @return cantidad de valores registrados.
+     */
+    public long getCantidad() {
+        return total.sum();
+    }
+
+    /**
+     * @return suma de los valores registrados.
+     */
+    public long getSuma() {
+        return suma.sum();
+    }
+
+    /**
+     * @return promedio de los valores registrados, o 0 si no hay.
+     */
+    public double getPromedio() {
+        long n = total.sum();
+        return n == 0 ? 0 : (double) suma.sum() / n;
+    }
+
+    /**
+     * @return mayor valor registrado.
+     */
+    public long getMaximo() {
+        return maximo.get();
+    }
+
+    /**
+     * Calcula un percentil recorriendo las cubetas.
+     * @param percentil entre 0 y 100 (por ejemplo 99.9).
+     * @return límite superior de la cubeta que contiene el percentil, acotado al máximo; 0 si no hay valores.
+     */
+    public long percentil(double percentil) {
+        long n = 0;
+        long[] copia = new long[CUBETAS];
+        for (int i = 0; i < CUBETAS; i++) {
+            copia[i] = cuentas.get(i);
+            n += copia[i];
+        }
+        if (n == 0) {
+            return 0;
+        }
+        long objetivo = Math.max(1, (long) Math.ceil(percentil / 100.0 * n));
+        long acumulado = 0;
+        for (int i = 0; i < CUBETAS; i++) {
+            acumulado += copia[i];
+            if (acumulado >= objetivo) {
+                return Math.min(limiteSuperior(i), maximo.get());
+            }
+        }
+        return maximo.get();
+    }
+
+    private static int indice(long valor) {
+        if (valor < SUBCUBETAS) {
+            return (int) valor;
+        }
+        int desplazamiento = 63 - Long.numberOfLeadingZeros(valor) - (BITS_SUBCUBETA - 1);
+        return SUBCUBETAS + (desplazamiento - 1) * MITAD + (int) ((valor >>> desplazamiento) - MITAD);
+    }
+
+    private static long limiteSuperior(int indice) {
+        if (indice < SUBCUBETAS) {
+            return indice;
+        }
+        int desplazamiento = (indice - SUBCUBETAS) / MITAD + 1;
+        long sub = (indice - SUBCUBETAS) % MITAD + MITAD;
+        long limite = ((sub + 1) << desplazamiento) - 1;
+        return limite < 0 ? Long.MAX_VALUE : limite;
+    }
+}
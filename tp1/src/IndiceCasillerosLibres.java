@@ -0,0 +1,185 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.random.RandomGenerator;
+
+/**
+ * Índice de casilleros vacíos y funcionales de un rango contiguo de la matriz.
+ * Permite elegir un casillero libre sin recorrer la matriz completa:
+ * ALEATORIA y PRIMER_LIBRE en tiempo constante o por palabra de bits, y
+ * MENOS_USADO en tiempo logarítmico mediante un heap indexado por {@code Contador}.
+ *
+ * No es thread-safe: el acceso debe estar protegido por el lock del sistema.
+ */
+public class IndiceCasillerosLibres {
+    private final PoliticaAsignacion politica;
+    private final ArrayList<Casillero> matriz;
+    private final int desplazamiento;
+
+    private final int[] elementos;   // casilleros libres (lista densa o heap)
+    private final int[] posicion;    // posición de cada casillero en elementos, -1 si no está
+    private final BitSet libres;     // solo para PRIMER_LIBRE
+    private int cantidad;
+
+    /**
+     * Constructor para toda la matriz. El índice arranca vacío.
+     * @param matriz casilleros del sistema.
+     * @param politica criterio de elección de casilleros.
+     */
+    public IndiceCasillerosLibres(ArrayList<Casillero> matriz, PoliticaAsignacion politica) {
+        this(matriz, politica, 0, matriz.size());
+    }
+
+    /**
+     * Constructor para el rango [desde, desde + n) de la matriz. El índice arranca vacío.
+     * @param matriz casilleros del sistema.
+     * @param politica criterio de elección de casilleros.
+     * @param desde primer casillero del rango.
+     * @param n cantidad de casilleros del rango.
+     */
+    public IndiceCasillerosLibres(ArrayList<Casillero> matriz, PoliticaAsignacion politica, int desde, int n) {
+        this.matriz = matriz;
+        this.politica = politica;
+        this.desplazamiento = desde;
+        elementos = new int[n];
+        posicion = new int[n];
+        Arrays.fill(posicion, -1);
+        libres = (politica == PoliticaAsignacion.PRIMER_LIBRE) ? new BitSet(n) : null;
+        cantidad = 0;
+    }
+
+    /**
+     * @return cantidad de casilleros libres en el índice.
+     */
+    public int cantidad() {
+        return cantidad;
+    }
+
+    /**
+     * @return true si no queda ningún casillero libre.
+     */
+    public boolean estaVacio() {
+        return cantidad == 0;
+    }
+
+    /**
+     * @param nro número de casillero.
+     * @return true si el casillero está registrado como libre.
+     */
+    public boolean contiene(int nro) {
+        return posicion[nro - desplazamiento] >= 0;
+    }
+
+    /**
+     * Registra un casillero como libre. No hace nada si ya estaba.
+     * @param nro número de casillero.
+     */
+    public void agregar(int nro) {
+        if (posicion[nro - desplazamiento] >= 0) {
+            return;
+        }
+        elementos[cantidad] = nro;
+        posicion[nro - desplazamiento] = cantidad;
+        cantidad++;
+        if (politica == PoliticaAsignacion.PRIMER_LIBRE) {
+            libres.set(nro - desplazamiento);
+        } else if (politica == PoliticaAsignacion.MENOS_USADO) {
+            subir(cantidad - 1);
+        }
+    }
+
+    /**
+     * Quita un casillero del índice. No hace nada si no estaba.
+     * @param nro número de casillero.
+     */
+    public void remover(int nro) {
+        int i = posicion[nro - desplazamiento];
+        if (i < 0) {
+            return;
+        }
+        cantidad--;
+        int ultimo = elementos[cantidad];
+        posicion[nro - desplazamiento] = -1;
+        if (politica == PoliticaAsignacion.PRIMER_LIBRE) {
+            libres.clear(nro - desplazamiento);
+        }
+        if (i == cantidad) {
+            return;
+        }
+        elementos[i] = ultimo;
+        posicion[ultimo - desplazamiento] = i;
+        if (politica == PoliticaAsignacion.MENOS_USADO) {
+            bajar(i);
+            subir(posicion[ultimo - desplazamiento]);
+        }
+    }
+
+    /**
+     * Elige un casillero libre según la política y lo quita del índice.
+     * @param rnd fuente de aleatoriedad (solo la usa ALEATORIA).
+     * @return número de casillero, o -1 si no hay libres.
+     */
+    public int tomar(RandomGenerator rnd) {
+        if (cantidad == 0) {
+            return -1;
+        }
+        int nro;
+        switch (politica) {
+            case PRIMER_LIBRE:
+                nro = libres.nextSetBit(0) + desplazamiento;
+                break;
+            case MENOS_USADO:
+                nro = elementos[0];
+                break;
+            default:
+                nro = elementos[rnd.nextInt(cantidad)];
+                break;
+        }
+        remover(nro);
+        return nro;
+    }
+
+    private boolean menor(int a, int b) {
+        int ca = matriz.get(a).Contador;
+        int cb = matriz.get(b).Contador;
+        return ca < cb || (ca == cb && a < b);
+    }
+
+    private void intercambiar(int i, int j) {
+        int a = elementos[i];
+        int b = elementos[j];
+        elementos[i] = b;
+        elementos[j] = a;
+        posicion[b - desplazamiento] = i;
+        posicion[a - desplazamiento] = j;
+    }
+
+    private void subir(int i) {
+        while (i > 0) {
+            int padre = (i - 1) / 2;
+            if (!menor(elementos[i], elementos[padre])) {
+                break;
+            }
+            intercambiar(i, padre);
+            i = padre;
+        }
+    }
+
+    private void bajar(int i) {
+        while (true) {
+            int izq = 2 * i + 1;
+            if (izq >= cantidad) {
+                break;
+            }
+            int hijo = izq;
+            if (izq + 1 < cantidad && menor(elementos[izq + 1], elementos[izq])) {
+                hijo = izq + 1;
+            }
+            if (!menor(elementos[hijo], elementos[i])) {
+                break;
+            }
+            intercambiar(i, hijo);
+            i = hijo;
+        }
+    }
+}
@@ -0,0 +1,322 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Foto de la grilla de casilleros tomada en una sola pasada paralela.
+ *
+ * La grilla se parte en rangos que recorre un {@link ForkJoinPool}; cada rango
+ * cuenta estados, arma su histograma de uso y sus rankings, y los resultados se
+ * combinan al volver. No detiene a los trabajadores: cada casillero se lee una vez
+ * (estado y {@code Contador} son volátiles), así que la foto es exacta para cada
+ * casillero y, en conjunto, refleja la grilla durante la pasada.
+ *
+ * El histograma de uso agrupa el {@code Contador} en potencias de dos: la cubeta 0
+ * cuenta los casilleros nunca usados y la cubeta k los usados entre 2^(k-1) y 2^k - 1
+ * veces. Los rankings solo consideran casilleros funcionales.
+ */
+public class InstantaneaCasilleros {
+    private static final int UMBRAL = 1 << 14;
+    private static final int CUBETAS = 33;
+
+    private final int total;
+    private final int[] porEstado;
+    private final long[] histogramaUso;
+    private final long usoTotal;
+    private final long[] masUsados;
+    private final long[] menosUsados;
+    private final byte[] estados;
+    private final int[] contadores;
+    private final long nanos;
+
+    private InstantaneaCasilleros(int total, Parcial p, int ranking, byte[] estados, int[] contadores, long nanos) {
+        this.total = total;
+        this.porEstado = p.porEstado;
+        this.histogramaUso = p.histograma;
+        this.usoTotal = p.usoTotal;
+        this.masUsados = ordenar(p.calientes, ranking, true);
+        this.menosUsados = ordenar(p.frios, ranking, false);
+        this.estados = estados;
+        this.contadores = contadores;
+        this.nanos = nanos;
+    }
+
+    /**
+     * Toma la foto de una grilla.
+     * @param matriz casilleros del sistema.
+     * @param ranking cantidad de casilleros en cada ranking (más y menos usados).
+     * @param conGrilla si es true, guarda además el estado y el contador de cada casillero.
+     * @return foto de la grilla.
+     */
+    public static InstantaneaCasilleros tomar(List<Casillero> matriz, int ranking, boolean conGrilla) {
+        long inicio = System.nanoTime();
+        int n = matriz.size();
+        byte[] estados = conGrilla ? new byte[n] : null;
+        int[] contadores = conGrilla ? new int[n] : null;
+        Parcial p = ForkJoinPool.commonPool().invoke(new Recorrido(matriz, 0, n, ranking, estados, contadores));
+        return new InstantaneaCasilleros(n, p, ranking, estados, contadores, System.nanoTime() - inicio);
+    }
+
+    /** Resultado de recorrer un rango de la grilla. */
+    private static class Parcial {
+        final int[] porEstado = new int[EstadoCasillero.values().length];
+        final long[] histograma = new long[CUBETAS];
+        long usoTotal;
+        // Uso y número de casillero empaquetados en un long: (Contador << 32) | nro. En los
+        // calientes el número va invertido para que, a igual uso, gane el menor y los
+        // casilleros siguientes no desplacen a los ya elegidos.
+        final PriorityQueue<Long> calientes = new PriorityQueue<>();
+        final PriorityQueue<Long> frios = new PriorityQueue<>(Collections.reverseOrder());
+
+        // Los umbrales evitan tocar los heaps (y crear Long) con casilleros que no entran.
+        long umbralCaliente = Long.MIN_VALUE;
+        long umbralFrio = Long.MAX_VALUE;
+
+        void ofrecer(int uso, int nro, int ranking) {
+            long caliente = ((long) uso << 32) | (Integer.MAX_VALUE - nro);
+            long clave = ((long) uso << 32) | nro;
+            if (caliente > umbralCaliente) {
+                calientes.add(caliente);
+                if (calientes.size() > ranking) {
+                    calientes.poll();
+                }
+                if (calientes.size() == ranking) {
+                    umbralCaliente = calientes.peek();
+                }
+            }
+            if (clave < umbralFrio) {
+                frios.add(clave);
+                if (frios.size() > ranking) {
+                    frios.poll();
+                }
+                if (frios.size() == ranking) {
+                    umbralFrio = frios.peek();
+                }
+            }
+        }
+
+        Parcial combinar(Parcial otro, int ranking) {
+            for (int i = 0; i < porEstado.length; i++) {
+                porEstado[i] += otro.porEstado[i];
+            }
+            for (int i = 0; i < CUBETAS; i++) {
+                histograma[i] += otro.histograma[i];
+            }
+            usoTotal += otro.usoTotal;
+            for (long clave : otro.calientes) {
+                calientes.add(clave);
+                if (calientes.size() > ranking) {
+                    calientes.poll();
+                }
+            }
+            for (long clave : otro.frios) {
+                frios.add(clave);
+                if (frios.size() > ranking) {
+                    frios.poll();
+                }
+            }
+            return this;
+        }
+    }
+
+    private static class Recorrido extends RecursiveTask<Parcial> {
+        private static final long serialVersionUID = 1L;
+
+        private final List<Casillero> matriz;
+        private final int desde;
+        private final int hasta;
+        private final int ranking;
+        private final byte[] estados;
+        private final int[] contadores;
+
+        Recorrido(List<Casillero> matriz, int desde, int hasta, int ranking, byte[] estados, int[] contadores) {
+            this.matriz = matriz;
+            this.desde = desde;
+            this.hasta = hasta;
+            this.ranking = ranking;
+            this.estados = estados;
+            this.contadores = contadores;
+        }
+
+        @Override
+        protected Parcial compute() {
+            if (hasta - desde > UMBRAL) {
+                int medio = (desde + hasta) >>> 1;
+                Recorrido izquierda = new Recorrido(matriz, desde, medio, ranking, estados, contadores);
+                izquierda.fork();
+                Parcial derecha = new Recorrido(matriz, medio, hasta, ranking, estados, contadores).compute();
+                return izquierda.join().combinar(derecha, ranking);
+            }
+            Parcial p = new Parcial();
+            for (int i = desde; i < hasta; i++) {
+                Casillero c = matriz.get(i);
+                EstadoCasillero estado = c.getEstado();
+                int uso = c.Contador;
+                p.porEstado[estado.ordinal()]++;
+                p.histograma[uso == 0 ? 0 : 32 - Integer.numberOfLeadingZeros(uso)]++;
+                p.usoTotal += uso;
+                if (estado != EstadoCasillero.FUERA_DE_SERVICIO && ranking > 0) {
+                    p.ofrecer(uso, i, ranking);
+                }
+                if (estados != null) {
+                    estados[i] = (byte) estado.ordinal();
+                    contadores[i] = uso;
+                }
+            }
+            return p;
+        }
+    }
+
+    private static long[] ordenar(PriorityQueue<Long> cola, int ranking, boolean descendente) {
+        List<Long> claves = new ArrayList<>(cola);
+        Collections.sort(claves);
+        if (descendente) {
+            Collections.reverse(claves);
+        }
+        long[] ordenadas = new long[Math.min(ranking, claves.size())];
+        for (int i = 0; i < ordenadas.length; i++) {
+            long clave = claves.get(i);
+            // Vuelve los calientes al formato (Contador << 32) | nro.
+            ordenadas[i] = descendente ? (clave & ~0xFFFFFFFFL) | (Integer.MAX_VALUE - (int) clave) : clave;
+        }
+        return ordenadas;
+    }
+
+    private static int[] numeros(long[] claves) {
+        int[] nros = new int[claves.length];
+        for (int i = 0; i < claves.length; i++) {
+            nros[i] = (int) claves[i];
+        }
+        return nros;
+    }
+
+    private static String listar(long[] claves) {
+        StringBuilder sb = new StringBuilder();
+        for (long clave : claves) {
+            sb.append(sb.length() == 0 ? "" : ", ").append('#').append((int) clave).append(" (").append(clave >>> 32).append(')');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return cantidad de casilleros de la grilla.
+     */
+    public int getTotal() {
+        return total;
+    }
+
+    /**
+     * @return casilleros vacíos.
+     */
+    public int getVacios() {
+        return porEstado[EstadoCasillero.VACIO.ordinal()];
+    }
+
+    /**
+     * @return casilleros ocupados.
+     */
+    public int getOcupados() {
+        return porEstado[EstadoCasillero.OCUPADO.ordinal()];
+    }
+
+    /**
+     * @return casilleros fuera de servicio.
+     */
+    public int getFueraServicio() {
+        return porEstado[EstadoCasillero.FUERA_DE_SERVICIO.ordinal()];
+    }
+
+    /**
+     * @return casilleros funcionales (vacíos u ocupados).
+     */
+    public int getFuncionales() {
+        return total - getFueraServicio();
+    }
+
+    /**
+     * @return fracción de los casilleros funcionales que está ocupada.
+     */
+    public double getOcupacion() {
+        int funcionales = getFuncionales();
+        return funcionales == 0 ? 0 : (double) getOcupados() / funcionales;
+    }
+
+    /**
+     * @return histograma de uso en potencias de dos (ver descripción de la clase).
+     */
+    public long[] getHistogramaUso() {
+        return histogramaUso.clone();
+    }
+
+    /**
+     * @return suma del {@code Contador} de todos los casilleros.
+     */
+    public long getUsoTotal() {
+        return usoTotal;
+    }
+
+    /**
+     * @return números de los casilleros funcionales más usados, de mayor a menor uso.
+     */
+    public int[] getMasUsados() {
+        return numeros(masUsados);
+    }
+
+    /**
+     * @return números de los casilleros funcionales menos usados, de menor a mayor uso.
+     */
+    public int[] getMenosUsados() {
+        return numeros(menosUsados);
+    }
+
+    /**
+     * @param nro número de casillero.
+     * @return true si el casillero estaba fuera de servicio (requiere foto con grilla).
+     */
+    public boolean estaFueraServicio(int nro) {
+        return estados[nro] == EstadoCasillero.FUERA_DE_SERVICIO.ordinal();
+    }
+
+    /**
+     * @param nro número de casillero.
+     * @return veces que el casillero había sido ocupado (requiere foto con grilla).
+     */
+    public int getContador(int nro) {
+        return contadores[nro];
+    }
+
+    /**
+     * @return true si la foto guarda el estado de cada casillero.
+     */
+    public boolean tieneGrilla() {
+        return estados != null;
+    }
+
+    /**
+     * @return nanosegundos que tardó la pasada.
+     */
+    public long getNanos() {
+        return nanos;
+    }
+
+    /**
+     * @return resumen de la foto en pocas líneas.
+     */
+    public String resumen() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("Casilleros: %d | vacíos %d | ocupados %d | fuera de servicio %d | ocupación %.1f%% (%.3f ms)%n",
+                total, getVacios(), getOcupados(), getFueraServicio(), getOcupacion() * 100, nanos / 1e6));
+        sb.append("Uso por casillero:");
+        for (int k = 0; k < CUBETAS; k++) {
+            if (histogramaUso[k] > 0) {
+                String rango = k == 0 ? "0" : k == 1 ? "1" : (1L << (k - 1)) + "-" + ((1L << k) - 1);
+                sb.append(String.format(" [%s] %d", rango, histogramaUso[k]));
+            }
+        }
+        sb.append(String.format("%nMás usados: %s%nMenos usados: %s%n", listar(masUsados), listar(menosUsados)));
+        return sb.toString();
+    }
+}
@@ -0,0 +1,119 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Lee un {@link DiarioEstado} y lo muestra con el formato de texto de registro.txt.
+ *
+ * Uso: java LectorDiario archivo.bin [cadaMs] [--casilleros]
+ * Con {@code cadaMs} se muestra como mucho una línea por intervalo; con
+ * {@code --casilleros} se agrega la ocupación de la grilla a cada línea.
+ */
+public class LectorDiario {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Uso: java LectorDiario archivo.bin [cadaMs] [--casilleros]");
+            return;
+        }
+        long cadaMs = 0;
+        boolean casilleros = false;
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("--casilleros")) {
+                casilleros = true;
+            } else {
+                cadaMs = Long.parseLong(args[i]);
+            }
+        }
+        BufferedWriter salida = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+        renderizar(Paths.get(args[0]), salida, cadaMs, casilleros);
+        salida.flush();
+    }
+
+    /**
+     * Escribe el diario en formato texto.
+     * @param ruta archivo del diario.
+     * @param salida destino del texto.
+     * @param cadaMs intervalo mínimo entre líneas en milisegundos (0 = todas las muestras).
+     * @param casilleros si es true agrega ocupados/libres/fuera de servicio a cada línea.
+     * @throws IOException si el archivo no se puede leer o no es un diario.
+     */
+    public static void renderizar(Path ruta, BufferedWriter salida, long cadaMs, boolean casilleros) throws IOException {
+        try (FileChannel canal = FileChannel.open(ruta, StandardOpenOption.READ)) {
+            ByteBuffer cabecera = ByteBuffer.allocate(DiarioEstado.CABECERA).order(ByteOrder.LITTLE_ENDIAN);
+            while (cabecera.hasRemaining() && canal.read(cabecera, cabecera.position()) > 0) {
+                // lee la cabecera completa
+            }
+            cabecera.flip();
+            if (cabecera.remaining() < DiarioEstado.POS_REGISTROS || cabecera.getInt() != DiarioEstado.MAGIA) {
+                throw new IOException(ruta + " no es un diario de estado");
+            }
+            int version = cabecera.getInt();
+            int tamRegistro = cabecera.getInt();
+            cabecera.getInt();
+            if (version != DiarioEstado.VERSION || tamRegistro != DiarioEstado.TAM_REGISTRO
+                    || cabecera.remaining() < 8) {
+                throw new IOException("Versión de diario no soportada: " + version);
+            }
+            // Solo se leen los registros confirmados; lo que sigue es relleno del segmento.
+            long registros = Math.min(cabecera.getLong(),
+                    (canal.size() - DiarioEstado.CABECERA) / tamRegistro);
+
+            // Se mapea de a segmentos de registros enteros, como los escribe el diario,
+            // así que el tamaño del archivo no está limitado por el de un buffer.
+            long porSegmento = DiarioEstado.SEGMENTO / tamRegistro;
+            long proximo = 0;
+            int[] etapas = new int[5];
+            for (long desde = 0; desde < registros; desde += porSegmento) {
+                long cantidad = Math.min(porSegmento, registros - desde);
+                MappedByteBuffer mapa = canal.map(FileChannel.MapMode.READ_ONLY,
+                        DiarioEstado.CABECERA + desde * tamRegistro, cantidad * tamRegistro);
+                mapa.order(ByteOrder.LITTLE_ENDIAN);
+                for (long r = desde; r < desde + cantidad; r++) {
+                    long ms = mapa.getLong() / 1_000_000L;
+                    for (int i = 0; i < 5; i++) {
+                        etapas[i] = mapa.getInt();
+                    }
+                    int ocupados = mapa.getInt();
+                    int libres = mapa.getInt();
+                    int fuera = mapa.getInt();
+                    boolean ultimo = r == registros - 1;
+                    if (ms < proximo && !ultimo) {
+                        continue;
+                    }
+                    proximo = ms + cadaMs;
+                    String linea = lineaEstado(ms, etapas[0], etapas[1], etapas[2], etapas[3], etapas[4]);
+                    if (casilleros) {
+                        linea += " | Casilleros ocupados: " + ocupados + " libres: " + libres + " fuera de servicio: " + fuera;
+                    }
+                    salida.write(linea);
+                    salida.newLine();
+                }
+            }
+        }
+    }
+
+    /**
+     * Da formato a una línea de estado como las de registro.txt.
+     * @return línea de estado.
+     */
+    public static String lineaEstado(long ms, int preparacion, int transito, int entregados,
+                                     int fallidos, int verificados) {
+        // Equivale a String.format("[%03d ms] ", ms), sin analizar el formato en cada línea.
+        String instante = ms >= 0 && ms < 100 ? (ms < 10 ? "00" : "0") + ms : Long.toString(ms);
+        return "[" + instante + " ms] " +
+        "Preparación: " + preparacion + " | " +
+        "Tránsito: " + transito + " | " +
+        "Entregados: " + entregados + " | " +
+        "Fallidos: " + fallidos + " | " +
+        "Verificados: " + verificados;
+    }
+}
@@ -0,0 +1,262 @@
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * {@link ReentrantLock} que cuenta cuántas veces hubo que esperarlo y cuánto tiempo
+ * en total. Primero intenta tomarlo sin esperar: si lo consigue, no mide nada, así
+ * que sin contención cuesta lo mismo que un lock común. Solo mide {@link #lock()};
+ * las esperas en una {@code Condition} no cuentan, porque no son contención.
+ * Los contadores se leen sin tomar el lock.
+ *
+ * Con {@link #setPerfilado(boolean)} activo antes de crearlos, los locks además
+ * perfilan la contención: distribución del tiempo de espera y de tenencia, hilos
+ * encolados al encontrarlo tomado, y cuántas veces un hilo despertado en una de sus
+ * {@code Condition} volvió a esperar sin soltar el lock (un despertar en vano, típico
+ * de {@code signalAll}). La tenencia se corta mientras el hilo espera en una
+ * condición, porque en ese tiempo el lock está libre. Sin perfilado, el costo
+ * adicional es leer un campo final al tomar y al soltar el lock.
+ */
+public class LockMedido extends ReentrantLock {
+    private static final long serialVersionUID = 1L;
+
+    private static volatile boolean perfiladoPorDefecto = false;
+
+    private final String nombre;
+    private final boolean perfilado;
+    private final LongAdder esperas = new LongAdder();
+    private final LongAdder esperaNanos = new LongAdder();
+
+    // Solo con perfilado. tomadoEn y tomas los escribe y los lee el hilo que tiene el lock.
+    private final LongAdder adquisiciones;
+    private final Histograma espera;
+    private final Histograma tenencia;
+    private final Histograma encolados;
+    private final LongAdder despertares;
+    private final LongAdder despertaresEnVano;
+    private long tomadoEn;
+    private long tomas;
+
+    /**
+     * Constructor de un lock no equitativo.
+     * @param nombre nombre con el que se publican sus métricas.
+     */
+    public LockMedido(String nombre) {
+        super(false);
+        this.nombre = nombre;
+        this.perfilado = perfiladoPorDefecto;
+        if (perfilado) {
+            adquisiciones = new LongAdder();
+            espera = new Histograma();
+            tenencia = new Histograma();
+            encolados = new Histograma();
+            despertares = new LongAdder();
+            despertaresEnVano = new LongAdder();
+        } else {
+            adquisiciones = null;
+            espera = null;
+            tenencia = null;
+            encolados = null;
+            despertares = null;
+            despertaresEnVano = null;
+        }
+    }
+
+    /**
+     * Activa o desactiva el perfilado de los locks que se creen desde entonces.
+     * @param activo true para perfilar.
+     */
+    public static void setPerfilado(boolean activo) {
+        perfiladoPorDefecto = activo;
+    }
+
+    @Override
+    public void lock() {
+        if (super.tryLock()) {
+            if (perfilado) {
+                tomado();
+            }
+            return;
+        }
+        long inicio = System.nanoTime();
+        int enCola = perfilado ? getQueueLength() : 0;
+        super.lock();
+        long esperado = System.nanoTime() - inicio;
+        esperaNanos.add(esperado);
+        esperas.increment();
+        if (perfilado) {
+            espera.registrar(esperado);
+            encolados.registrar(enCola);
+            tomado();
+        }
+    }
+
+    @Override
+    public boolean tryLock() {
+        if (super.tryLock()) {
+            if (perfilado) {
+                tomado();
+            }
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void unlock() {
+        if (perfilado && getHoldCount() == 1) {
+            tenencia.registrar(System.nanoTime() - tomadoEn);
+        }
+        super.unlock();
+    }
+
+    @Override
+    public Condition newCondition() {
+        Condition condicion = super.newCondition();
+        return perfilado ? new CondicionMedida(condicion) : condicion;
+    }
+
+    /**
+     * Marca el comienzo de una tenencia; las reentradas no cuentan como toma nueva.
+     */
+    private void tomado() {
+        if (getHoldCount() == 1) {
+            tomadoEn = System.nanoTime();
+            tomas++;
+            adquisiciones.increment();
+        }
+    }
+
+    /** @return nombre del lock. */
+    public String getNombre() {
+        return nombre;
+    }
+
+    /** @return veces que un hilo encontró el lock tomado y tuvo que esperar. */
+    public long getEsperas() {
+        return esperas.sum();
+    }
+
+    /** @return tiempo total de espera por el lock, en nanosegundos. */
+    public long getEsperaNanos() {
+        return esperaNanos.sum();
+    }
+
+    /** @return true si el lock perfila su contención. */
+    public boolean isPerfilado() {
+        return perfilado;
+    }
+
+    /**
+     * Resume la contención de un conjunto de locks perfilados; los que no lo están se omiten.
+     * @param locks locks a resumir.
+     * @return tabla con tomas, esperas, tenencia, hilos encolados y despertares por lock.
+     */
+    public static String reporte(LockMedido[] locks) {
+        StringBuilder sb = new StringBuilder(String.format("%-18s %9s %8s %10s %9s %9s %9s %9s %6s %5s %9s %8s%n",
+                "Lock", "tomas", "esperas", "espera ms", "p99 µs", "ten. p50", "ten. p99", "ten. máx",
+                "cola", "máx", "despert.", "en vano"));
+        for (LockMedido l : locks) {
+            if (!l.perfilado) {
+                continue;
+            }
+            sb.append(String.format("%-18s %9d %8d %10.3f %9.1f %9.1f %9.1f %9.1f %6.2f %5d %9d %8d%n",
+                    l.nombre, l.adquisiciones.sum(), l.getEsperas(), l.getEsperaNanos() / 1e6,
+                    l.espera.percentil(99) / 1e3, l.tenencia.percentil(50) / 1e3, l.tenencia.percentil(99) / 1e3,
+                    l.tenencia.getMaximo() / 1e3, l.encolados.getPromedio(), l.encolados.getMaximo(),
+                    l.despertares.sum(), l.despertaresEnVano.sum()));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Condición que corta la tenencia del lock mientras el hilo espera y cuenta los
+     * despertares. Si un hilo vuelve a esperar sin haber soltado el lock desde que
+     * despertó, no encontró lo que esperaba: su despertar anterior fue en vano.
+     */
+    private final class CondicionMedida implements Condition {
+        private final Condition condicion;
+        private final ThreadLocal<long[]> despertadoEn = ThreadLocal.withInitial(() -> new long[] {-1});
+
+        CondicionMedida(Condition condicion) {
+            this.condicion = condicion;
+        }
+
+        private void antes() {
+            long[] despertado = despertadoEn.get();
+            if (despertado[0] == tomas) {
+                despertaresEnVano.increment();
+            }
+            tenencia.registrar(System.nanoTime() - tomadoEn);
+        }
+
+        private void despues() {
+            tomadoEn = System.nanoTime();
+            tomas++;
+            despertadoEn.get()[0] = tomas;
+            despertares.increment();
+        }
+
+        @Override
+        public void await() throws InterruptedException {
+            antes();
+            try {
+                condicion.await();
+            } finally {
+                despues();
+            }
+        }
+
+        @Override
+        public void awaitUninterruptibly() {
+            antes();
+            try {
+                condicion.awaitUninterruptibly();
+            } finally {
+                despues();
+            }
+        }
+
+        @Override
+        public long awaitNanos(long nanos) throws InterruptedException {
+            antes();
+            try {
+                return condicion.awaitNanos(nanos);
+            } finally {
+                despues();
+            }
+        }
+
+        @Override
+        public boolean await(long tiempo, TimeUnit unidad) throws InterruptedException {
+            antes();
+            try {
+                return condicion.await(tiempo, unidad);
+            } finally {
+                despues();
+            }
+        }
+
+        @Override
+        public boolean awaitUntil(Date limite) throws InterruptedException {
+            antes();
+            try {
+                return condicion.awaitUntil(limite);
+            } finally {
+                despues();
+            }
+        }
+
+        @Override
+        public void signal() {
+            condicion.signal();
+        }
+
+        @Override
+        public void signalAll() {
+            condicion.signalAll();
+        }
+    }
+}
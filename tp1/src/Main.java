@@ -1,78 +1,453 @@
 import java.io.BufferedWriter;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * Clase principal que inicia el sistema de almacenamiento y gestión de pedidos.
  * 
  * Se crean hilos concurrentes para preparar y despachar pedidos, los cuales
  * interactúan mediante estructuras sincronizadas (casilleros y registros de pedidos).
- * El estado del sistema se registra periódicamente en un archivo de salida.
+ * El estado del sistema se muestrea en un diario binario ({@link DiarioEstado}) y al
+ * terminar se vuelca en formato texto al archivo de registro.
  *
  * @author 
  */
 public class Main {
   /**
    * Punto de entrada del programa. Inicializa el sistema, lanza hilos productores
-   * y consumidores, y registra el estado del sistema hasta que todos los hilos finalicen.
+   * y consumidores, y registra el estado del sistema hasta que termina el último pedido.
    *
-   * @param args Argumentos de línea de comandos (no utilizados).
+   * @param args Parámetros del escenario como {@code --clave=valor}, o {@code --config=archivo}
+   *             con un archivo de propiedades (ver {@link ConfiguracionEscenario}).
    */
   public static void main(String[] args) {
       long startTime = System.currentTimeMillis();
+      ConfiguracionEscenario cfg = ConfiguracionEscenario.desdeArgumentos(args);
+      System.out.println("Escenario: " + cfg);
+      FuenteAleatoria.instalar(new FuenteAleatoria(cfg.getSemilla()));
+      RegistroEventos eventos = new RegistroEventos(cfg.getLogCapacidad(), cfg.getLogPolitica(),
+              cfg.getLogLote(), System.out);
+      RegistroEventos.instalar(eventos);
+      LockMedido.setPerfilado(cfg.isPerfilLocks());
+      FabricaHilos fabrica = new FabricaHilos(cfg.getModoHilos());
 
-      SistemaAlmacenamiento sistemaAlmacenamiento = new SistemaAlmacenamiento(500);
-      RegistrodePedidos registrodePedidos = new RegistrodePedidos();
-      Preparacion preparacion = new Preparacion(sistemaAlmacenamiento, registrodePedidos);
-      Despacho despacho = new Despacho(sistemaAlmacenamiento, registrodePedidos);
-      Entrega entrega = new Entrega(registrodePedidos);
-      VerificacionFinal verificacion = new VerificacionFinal(registrodePedidos);
-
-      Thread[] hilos = {
-          new Thread(preparacion),
-          new Thread(despacho),
-          new Thread(verificacion),
-          new Thread(preparacion),
-          new Thread(despacho),
-          new Thread(entrega),
-          new Thread(entrega),
-          new Thread(verificacion),
-          new Thread(preparacion),
-          new Thread(entrega),
-      };
+      if (cfg.getAlmacenes() > 1) {
+          ejecutarRed(cfg, fabrica, startTime);
+          cerrarLog(eventos);
+          return;
+      }
+
+      SistemaAlmacenamiento sistemaAlmacenamiento = new SistemaAlmacenamiento(cfg.getPedidos(),
+              cfg.getCasilleros(), cfg.getPolitica(), cfg.getFranjas(), cfg.crearSalud());
+      sistemaAlmacenamiento.setLogActivo(cfg.isLog());
+      RegistrodePedidos registrodePedidos = new RegistrodePedidos(cfg.getCapacidadEtapa(), cfg.getOrdenSeleccion(),
+              cfg.isRetenerTerminales(), abrirSumidero(cfg));
+
+      if (cfg.getModoSimulacion() == ModoSimulacion.DISCRETO) {
+          simularEventos(cfg, sistemaAlmacenamiento, registrodePedidos);
+          cerrarTerminales(registrodePedidos);
+          cerrarLog(eventos);
+          return;
+      }
+
+      TrazaEjecucion traza = abrirTraza(cfg);
+      sistemaAlmacenamiento.setTraza(traza);
+      registrodePedidos.setTraza(traza);
+      ServidorMetricas metricas = abrirMetricas(cfg, new SistemaAlmacenamiento[] {sistemaAlmacenamiento},
+              new RegistrodePedidos[] {registrodePedidos});
+
+      Preparacion preparacion = new Preparacion(sistemaAlmacenamiento, registrodePedidos, cfg);
+      Despacho despacho = new Despacho(sistemaAlmacenamiento, registrodePedidos, cfg);
+      Entrega entrega = new Entrega(registrodePedidos, cfg);
+      VerificacionFinal verificacion = new VerificacionFinal(registrodePedidos, cfg, fabrica);
+      Reparacion reparacion = new Reparacion(sistemaAlmacenamiento, cfg);
+      Reintentos reintentos = new Reintentos(registrodePedidos, sistemaAlmacenamiento, cfg);
+      if (cfg.getMaxReintentos() > 0) {
+          registrodePedidos.setReintentos(reintentos);
+      }
+
+      List<Thread> hilos = new ArrayList<>();
+      crearHilos(fabrica, hilos, preparacion, "Preparacion", cfg.getHilosPreparacion());
+      GrupoEtapa[] grupos = null;
+      EscaladorEtapas escalador = null;
+      if (cfg.isEscalado()) {
+          // La preparación es la que genera la carga, así que conserva sus hilos; las
+          // otras tres etapas se reparten el presupuesto según su demanda.
+          grupos = new GrupoEtapa[] {
+                  new GrupoEtapa("Despacho", registrodePedidos.getColaPreparacion(), despacho::despachar,
+                          cfg.getEsperaDespacho(), fabrica),
+                  new GrupoEtapa("Entrega", registrodePedidos.getColaTransito(), entrega::entregar,
+                          cfg.getEsperaEntrega(), fabrica),
+                  new GrupoEtapa("Verificacion", registrodePedidos.getColaEntregados(), verificacion::verificar,
+                          cfg.getEsperaVerificacion(), fabrica)};
+          escalador = new EscaladorEtapas(grupos, cfg.getPresupuestoEscalado(), cfg.getMinEscalado(),
+                  cfg.getMaxEscalado(), cfg.getPeriodoEscaladoMs(), cfg.getHorizonteEscaladoMs());
+      } else {
+          crearHilos(fabrica, hilos, despacho, "Despacho", cfg.getHilosDespacho());
+          crearHilos(fabrica, hilos, entrega, "Entrega", cfg.getHilosEntrega());
+          crearHilos(fabrica, hilos, verificacion, "Verificacion", cfg.getHilosVerificacion());
+      }
+      crearHilos(fabrica, hilos, reparacion, "Reparacion", cfg.getHilosReparacion());
+      crearHilos(fabrica, hilos, reintentos, "Reintentos", cfg.getMaxReintentos() > 0 ? 1 : 0);
+
+      Path rutaDiario = Paths.get(cfg.getArchivoDiario());
+      MuestreadorEstado muestreador;
+      try {
+          DiarioEstado diario = new DiarioEstado(rutaDiario, cfg.getDiarioCommitRegistros(), cfg.getDiarioCommitMs());
+          muestreador = new MuestreadorEstado(diario, sistemaAlmacenamiento, registrodePedidos,
+                  cfg.getDiarioPeriodoMicros(), System.nanoTime());
+      } catch (IOException e) {
+          throw new UncheckedIOException("No se pudo crear el diario " + rutaDiario, e);
+      }
+      muestreador.start();
 
+      CompletableFuture<Void> completado = registrodePedidos.completarCon(cfg.getPedidos())
+              .thenRun(sistemaAlmacenamiento.getSalud()::cerrar)
+              .thenRun(reintentos::cerrar);
       for (Thread t : hilos) {
           t.start();
       }
+      if (escalador != null) {
+          escalador.arrancar(new int[] {cfg.getHilosDespacho(), cfg.getHilosEntrega(), cfg.getHilosVerificacion()});
+          new Thread(escalador, "Escalador").start();
+      }
+      // El registro completa el futuro al terminar el último pedido y cierra las
+      // etapas, y con ellas la cola de reparación y los reintentos, así que los hilos
+      // salen enseguida.
+      completado.join();
+      for (Thread t : hilos) {
+          try {
+              t.join();
+          } catch (InterruptedException e) {
+              e.printStackTrace();
+          }
+      }
+      if (escalador != null) {
+          try {
+              escalador.detener();
+              for (GrupoEtapa g : grupos) {
+                  g.esperarTerminacion();
+              }
+          } catch (InterruptedException e) {
+              e.printStackTrace();
+          }
+          System.out.print(escalador.resumen());
+      }
+      cerrarVerificacion(cfg, verificacion, -1);
+      muestreador.detener();
 
-      BufferedWriter writer = null;
-      try {
-          writer = new BufferedWriter(new FileWriter("registro.txt"));
+      try (BufferedWriter writer = new BufferedWriter(new FileWriter(cfg.getArchivoRegistro()))) {
+          LectorDiario.renderizar(rutaDiario, writer, cfg.getPeriodoRegistroMs(), false);
+          Registro(startTime, sistemaAlmacenamiento, registrodePedidos, writer, true, cfg);
       } catch (IOException e) {
           e.printStackTrace();
       }
+      cerrarTerminales(registrodePedidos);
+      cerrarTraza(traza, cfg);
+      cerrarMetricas(metricas);
+      informarContencion(cfg, sistemaAlmacenamiento, registrodePedidos, -1);
+      cerrarLog(eventos);
+      despacho.print();
+  }
 
-      boolean algunoVivo = true;
-
-      while (algunoVivo) {
-          algunoVivo = false;
-          for (Thread thread : hilos) {
-              if (thread.isAlive()) {
-                  algunoVivo = true;
+  /**
+   * Ejecuta el escenario en una red de varios almacenes. El registro muestra la
+   * suma de todos los almacenes y al final un resumen por almacén.
+   *
+   * @param cfg Escenario de cada almacén.
+   * @param fabrica Fábrica de hilos.
+   * @param startTime Tiempo de inicio del programa en milisegundos.
+   */
+  private static void ejecutarRed(ConfiguracionEscenario cfg, FabricaHilos fabrica, long startTime) {
+      RedAlmacenes red = new RedAlmacenes(cfg, cfg.getAlmacenes(), abrirSumideros(cfg, cfg.getAlmacenes()),
+              fabrica);
+      SistemaAlmacenamiento[] sistemas = new SistemaAlmacenamiento[red.getCantidad()];
+      RegistrodePedidos[] registros = new RegistrodePedidos[red.getCantidad()];
+      for (int a = 0; a < red.getCantidad(); a++) {
+          sistemas[a] = red.getSistema(a);
+          registros[a] = red.getRegistro(a);
+      }
+      ServidorMetricas metricas = abrirMetricas(cfg, sistemas, registros);
+      List<Thread> hilos = red.crearHilos(fabrica);
+      for (Thread t : hilos) {
+          t.start();
+      }
+      try (BufferedWriter writer = new BufferedWriter(new FileWriter(cfg.getArchivoRegistro()))) {
+          while (true) {
+              writer.write(red.lineaEstado(System.currentTimeMillis() - startTime));
+              writer.newLine();
+              try {
+                  red.getCompletado().get(cfg.getPeriodoRegistroMs(), TimeUnit.MILLISECONDS);
+                  break;
+              } catch (TimeoutException e) {
+                  // sigue registrando hasta que termine la red
               }
           }
+          for (Thread t : hilos) {
+              t.join();
+          }
+          writer.write(red.lineaEstado(System.currentTimeMillis() - startTime));
+          writer.newLine();
+          writer.newLine();
+          writer.write(red.resumen());
+      } catch (IOException e) {
+          e.printStackTrace();
+      } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+      } catch (ExecutionException e) {
+          throw new IllegalStateException("La red de almacenes terminó con error", e.getCause());
+      }
+      for (RegistrodePedidos registro : registros) {
+          cerrarTerminales(registro);
+      }
+      cerrarMetricas(metricas);
+      System.out.printf("\n%s", red.resumen());
+      for (int a = 0; a < red.getCantidad(); a++) {
+          System.out.printf("\nAlmacén %d\n%s", a, red.getRegistro(a).getLatencias().reporte());
+      }
+      for (int a = 0; a < red.getCantidad(); a++) {
+          cerrarVerificacion(cfg, red.getVerificacion(a), a);
+          informarContencion(cfg, sistemas[a], registros[a], a);
+      }
+  }
+
+  /**
+   * Libera los hilos de los controles de verificación e informa sus resultados si
+   * la verificación usa controles propios o lotes.
+   *
+   * @param cfg Escenario.
+   * @param verificacion Etapa de verificación del almacén.
+   * @param almacen Número de almacén en la red, o -1 si hay uno solo.
+   */
+  private static void cerrarVerificacion(ConfiguracionEscenario cfg, VerificacionFinal verificacion, int almacen) {
+      verificacion.getCadena().cerrar();
+      if (cfg.isVerificacionPorControles() || cfg.getLoteVerificacion() > 1) {
+          System.out.print((almacen < 0 ? "" : "Almacén " + almacen + " - ") + verificacion.getCadena().resumen());
+      }
+  }
+
+  /**
+   * Informa la contención de los locks de un almacén, si el escenario la perfila.
+   *
+   * @param cfg Escenario.
+   * @param sistema Grilla del almacén.
+   * @param registro Registro de pedidos del almacén.
+   * @param almacen Número de almacén en la red, o -1 si hay uno solo.
+   */
+  private static void informarContencion(ConfiguracionEscenario cfg, SistemaAlmacenamiento sistema,
+                                         RegistrodePedidos registro, int almacen) {
+      if (!cfg.isPerfilLocks()) {
+          return;
+      }
+      LockMedido[] franjas = sistema.getLocks();
+      LockMedido[] etapas = registro.getLocks();
+      LockMedido[] locks = new LockMedido[franjas.length + etapas.length];
+      System.arraycopy(franjas, 0, locks, 0, franjas.length);
+      System.arraycopy(etapas, 0, locks, franjas.length, etapas.length);
+      System.out.printf("\nContención de locks%s\n%s", almacen < 0 ? "" : " (almacén " + almacen + ")",
+              LockMedido.reporte(locks));
+  }
 
-          Registro(startTime, sistemaAlmacenamiento, registrodePedidos, writer, false);
+  /**
+   * Publica las métricas de la corrida por HTTP, si el escenario lo pide.
+   *
+   * @param cfg Escenario.
+   * @param sistemas Grilla de cada almacén.
+   * @param registros Registro de pedidos de cada almacén.
+   * @return Servidor iniciado, o null si no se publican.
+   */
+  private static ServidorMetricas abrirMetricas(ConfiguracionEscenario cfg, SistemaAlmacenamiento[] sistemas,
+                                                RegistrodePedidos[] registros) {
+      if (cfg.getPuertoMetricas() == 0) {
+          return null;
+      }
+      try {
+          ServidorMetricas servidor = new ServidorMetricas(cfg.getPuertoMetricas(), sistemas, registros);
+          System.out.printf("Métricas en http://localhost:%d/metrics\n", servidor.getPuerto());
+          return servidor;
+      } catch (IOException e) {
+          throw new UncheckedIOException("No se pudo abrir el puerto de métricas " + cfg.getPuertoMetricas(), e);
+      }
+  }
+
+  /**
+   * Deja de publicar las métricas.
+   *
+   * @param servidor Servidor de métricas, o null si no se publican.
+   */
+  private static void cerrarMetricas(ServidorMetricas servidor) {
+      if (servidor != null) {
+          servidor.close();
+      }
+  }
+
+  /**
+   * Abre el archivo de pedidos terminados, si el escenario lo pide.
+   *
+   * @param cfg Escenario.
+   * @return Sumidero abierto, o null si no se vuelcan los terminados.
+   */
+  private static SumideroTerminales abrirSumidero(ConfiguracionEscenario cfg) {
+      if (cfg.getArchivoTerminales().isEmpty()) {
+          return null;
+      }
+      Path ruta = Paths.get(cfg.getArchivoTerminales());
+      try {
+          return new SumideroTerminales(ruta);
+      } catch (IOException e) {
+          throw new UncheckedIOException("No se pudo crear el archivo de terminados " + ruta, e);
+      }
+  }
+
+  /**
+   * Abre un archivo de pedidos terminados por almacén, si el escenario lo pide. El
+   * del almacén {@code a} lleva {@code -a} antes de la extensión.
+   *
+   * @param cfg Escenario.
+   * @param almacenes Cantidad de almacenes.
+   * @return Sumidero de cada almacén, o null si no se vuelcan los terminados.
+   */
+  private static SumideroTerminales[] abrirSumideros(ConfiguracionEscenario cfg, int almacenes) {
+      String archivo = cfg.getArchivoTerminales();
+      if (archivo.isEmpty()) {
+          return null;
+      }
+      int punto = archivo.lastIndexOf('.');
+      if (punto <= Math.max(archivo.lastIndexOf('/'), archivo.lastIndexOf('\\'))) {
+          punto = archivo.length();
+      }
+      SumideroTerminales[] sumideros = new SumideroTerminales[almacenes];
+      for (int a = 0; a < almacenes; a++) {
+          Path ruta = Paths.get(archivo.substring(0, punto) + "-" + a + archivo.substring(punto));
           try {
-              Thread.sleep(200);
-          } catch (InterruptedException e) {
-              e.printStackTrace();
+              sumideros[a] = new SumideroTerminales(ruta);
+          } catch (IOException e) {
+              throw new UncheckedIOException("No se pudo crear el archivo de terminados " + ruta, e);
           }
       }
+      return sumideros;
+  }
 
-      Registro(startTime, sistemaAlmacenamiento, registrodePedidos, writer, true);
-      despacho.print();
+  /**
+   * Cierra el archivo de pedidos terminados, volcando lo pendiente.
+   *
+   * @param registro Registro de pedidos.
+   */
+  private static void cerrarTerminales(RegistrodePedidos registro) {
+      try {
+          registro.cerrarTerminales();
+      } catch (IOException e) {
+          e.printStackTrace();
+      }
+  }
+
+  /**
+   * Abre la traza de la corrida, si el escenario la pide.
+   *
+   * @param cfg Escenario.
+   * @return Traza abierta, o null si no se graba.
+   */
+  private static TrazaEjecucion abrirTraza(ConfiguracionEscenario cfg) {
+      if (cfg.getArchivoTraza().isEmpty()) {
+          return null;
+      }
+      Path ruta = Paths.get(cfg.getArchivoTraza());
+      try {
+          return new TrazaEjecucion(ruta, cfg);
+      } catch (IOException e) {
+          throw new UncheckedIOException("No se pudo crear la traza " + ruta, e);
+      }
+  }
+
+  /**
+   * Cierra la traza de la corrida e informa cuántos eventos se grabaron.
+   *
+   * @param traza Traza abierta, o null si no se graba.
+   * @param cfg Escenario.
+   */
+  private static void cerrarTraza(TrazaEjecucion traza, ConfiguracionEscenario cfg) {
+      if (traza == null) {
+          return;
+      }
+      try {
+          traza.close();
+          System.out.printf("Traza: %d eventos en %s (reproducir con java ReproductorTraza %s)\n",
+                  traza.getRegistros(), cfg.getArchivoTraza(), cfg.getArchivoTraza());
+      } catch (IOException e) {
+          e.printStackTrace();
+      }
+  }
+
+  /**
+   * Vuelca los eventos pendientes del log e informa si se descartó alguno.
+   *
+   * @param eventos Log de eventos del programa.
+   */
+  private static void cerrarLog(RegistroEventos eventos) {
+      eventos.cerrar();
+      if (eventos.getDescartados() > 0) {
+          System.out.printf("Eventos de log descartados por buffer lleno: %d\n", eventos.getDescartados());
+      }
+  }
+
+  /**
+   * Ejecuta el escenario con el motor de eventos discretos. El registro usa el
+   * tiempo virtual de la simulación en lugar del tiempo real.
+   *
+   * @param cfg Escenario a simular.
+   * @param sistema Sistema de almacenamiento.
+   * @param registro Registro de pedidos.
+   */
+  private static void simularEventos(ConfiguracionEscenario cfg, SistemaAlmacenamiento sistema,
+                                     RegistrodePedidos registro) {
+      long inicioReal = System.nanoTime();
+      SimulacionEventos simulacion = new SimulacionEventos(cfg, sistema, registro);
+      try (BufferedWriter writer = new BufferedWriter(new FileWriter(cfg.getArchivoRegistro()))) {
+          long reloj = simulacion.ejecutar(t -> escribirRegistro(t, sistema, registro, writer, false, false, cfg));
+          escribirRegistro(reloj, sistema, registro, writer, true, false, cfg);
+      } catch (IOException e) {
+          e.printStackTrace();
+      }
+      double segundosReales = (System.nanoTime() - inicioReal) / 1e9;
+      System.out.printf("\nSimulación discreta: %d pedidos, %d eventos, %.3f s virtuales en %.3f s reales"
+                      + " (%.0f pedidos/s, %.0f eventos/s)\n",
+              sistema.getTotalPedidos(), simulacion.getEventosProcesados(), simulacion.getReloj() / 1000.0,
+              segundosReales, sistema.getTotalPedidos() / segundosReales,
+              simulacion.getEventosProcesados() / segundosReales);
+      AlmacenPedidos almacen = simulacion.getAlmacen();
+      System.out.printf("Almacén de pedidos: máximo %d en curso, %d KB reservados\n",
+              almacen.getMaximoEnCurso(), almacen.getBytesReservados() / 1024);
+      long terminados = registro.sizeListaFallidos() + registro.sizeListaVerificados() + registro.getDescartados();
+      if (terminados < sistema.getTotalPedidos()) {
+          System.out.printf("La simulación se detuvo con %d pedidos sin terminar (casilleros funcionales: %d)\n",
+                  sistema.getTotalPedidos() - terminados, sistema.getCasillerosFuncionales());
+      }
+      registro.print();
+  }
+
+  /**
+   * Crea los hilos de una etapa, todos ejecutando la misma tarea compartida.
+   *
+   * @param fabrica Fábrica que decide el tipo de hilo.
+   * @param hilos Lista donde se agregan los hilos creados.
+   * @param tarea Tarea de la etapa.
+   * @param etapa Nombre de la etapa, usado como prefijo del nombre de cada hilo.
+   * @param cantidad Cantidad de hilos a crear.
+   */
+  private static void crearHilos(FabricaHilos fabrica, List<Thread> hilos, Runnable tarea,
+                                 String etapa, int cantidad) {
+      for (int i = 0; i < cantidad; i++) {
+          hilos.add(fabrica.crear(tarea, etapa + "-" + i));
+      }
   }
 
   /**
@@ -83,44 +458,62 @@ public class Main {
    * @param registro Registro de pedidos en transcurso y completados.
    * @param writer Objeto de escritura a archivo.
    * @param lineaFinal Si es true, imprime la línea de cierre con casilleros fallidos.
+   * @param cfg Escenario, que define el ancho de la grilla y si se vuelca.
    */
   public static void Registro(long startTime, SistemaAlmacenamiento sistema,
                                RegistrodePedidos registro, BufferedWriter writer,
-                               boolean lineaFinal) {
-      long programTime = System.currentTimeMillis() - startTime;
-      String prefix = String.format("[%03d ms] ", programTime);
+                               boolean lineaFinal, ConfiguracionEscenario cfg) {
+      escribirRegistro(System.currentTimeMillis() - startTime, sistema, registro, writer, lineaFinal, true, cfg);
+  }
 
+  /**
+   * Escribe una línea de registro para un instante dado del programa.
+   *
+   * @param programTime Milisegundos transcurridos (reales o virtuales).
+   * @param sistema Referencia al sistema de almacenamiento.
+   * @param registro Registro de pedidos en transcurso y completados.
+   * @param writer Objeto de escritura a archivo.
+   * @param lineaFinal Si es true, imprime la línea de cierre con casilleros fallidos.
+   * @param vaciar Si es true, vacía el buffer en cada línea para seguir el archivo en
+   *               vivo; la simulación discreta no lo hace y lo vacía al cerrar.
+   * @param cfg Escenario, que define el ancho de la grilla y si se vuelca.
+   */
+  private static void escribirRegistro(long programTime, SistemaAlmacenamiento sistema,
+                                       RegistrodePedidos registro, BufferedWriter writer,
+                                       boolean lineaFinal, boolean vaciar, ConfiguracionEscenario cfg) {
       try {
-        String linea = prefix +
-        "Preparación: " + registro.sizeListaPreparacion() + " | " +
-        "Tránsito: " + registro.sizeListaTransito() + " | " +
-        "Entregados: " + registro.sizeListaEntregados() + " | " +
-        "Fallidos: " + registro.sizeListaFallidos() + " | " +
-        "Verificados: " + registro.sizeListaVerificados();
-    
+        String linea = LectorDiario.lineaEstado(programTime,
+                registro.sizeListaPreparacion(), registro.sizeListaTransito(), registro.sizeListaEntregados(),
+                registro.sizeListaFallidos(), registro.sizeListaVerificados());
+
           writer.write(linea);
           writer.newLine();
-          writer.flush();
+          if (vaciar) {
+              writer.flush();
+          }
       } catch (IOException e) {
           e.printStackTrace();
       }
 
       if (lineaFinal) {
+          String prefix = String.format("[%03d ms] ", programTime);
+          InstantaneaCasilleros foto = sistema.tomarInstantanea(10, cfg.isVolcarGrilla());
           try {
               writer.newLine();
-              String linea = prefix + " Casilleros fallidos: " + sistema.getCasillerosFallidos() + " | " +
-              " Casilleros funcionales " + sistema.getCasillerosFuncionales() ;
+              String linea = prefix + " Casilleros fallidos: " + foto.getFueraServicio() + " | " +
+              " Casilleros funcionales " + foto.getFuncionales() ;
               writer.write(linea);
               writer.newLine();
-              ArrayList<Casillero> lista = sistema.getMatrizCasilleros();
-              for (int i = 0; i < 10; i++) {
+              int columnas = cfg.getColumnasGrilla();
+              int filas = foto.tieneGrilla() ? (foto.getTotal() + columnas - 1) / columnas : 0;
+              for (int i = 0; i < filas; i++) {
                 StringBuilder row = new StringBuilder();
-                for (int j = 0; j < 20; j++) { 
-                    int index = i * 20 + j;
-                    if (lista.get(index).estaFueraServicio()) {
+                for (int j = 0; j < columnas && i * columnas + j < foto.getTotal(); j++) {
+                    int index = i * columnas + j;
+                    if (foto.estaFueraServicio(index)) {
                         row.append(String.format("%4s", "#"));
                     } else{
-                        row.append(String.format("%4d", lista.get(index).Contador));
+                        row.append(String.format("%4d", foto.getContador(index)));
                     }  
                 }
                 writer.write(row.toString());
@@ -130,6 +523,11 @@ public class Main {
           } catch (IOException e) {
               e.printStackTrace();
           }
+          System.out.printf("\n%s%s", foto.resumen(), sistema.getSalud().resumen());
+          if (registro.getReintentos() != null) {
+              System.out.print(registro.getReintentos().resumen(programTime, registro.sizeListaVerificados(),
+                      foto.getUsoTotal()));
+          }
       }
   }
 }
@@ -0,0 +1,70 @@
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Contadores de una etapa del circuito de pedidos.
+ * Usa contadores repartidos ({@link LongAdder}) que se actualizan sin contención
+ * y se leen sin tomar el lock de la etapa, por lo que consultar el estado cuesta
+ * lo mismo sin importar cuántos pedidos contenga.
+ */
+public class MetricasEtapa {
+    private final String nombre;
+    private final LongAdder encolados = new LongAdder();
+    private final LongAdder desencolados = new LongAdder();
+
+    /**
+     * Constructor.
+     * @param nombre nombre de la etapa.
+     */
+    public MetricasEtapa(String nombre) {
+        this.nombre = nombre;
+    }
+
+    /**
+     * Registra la entrada de un pedido a la etapa.
+     */
+    public void registrarEntrada() {
+        encolados.increment();
+    }
+
+    /**
+     * Registra la salida de un pedido de la etapa.
+     */
+    public void registrarSalida() {
+        desencolados.increment();
+    }
+
+    /**
+     * @return nombre de la etapa.
+     */
+    public String getNombre() {
+        return nombre;
+    }
+
+    /**
+     * @return cantidad de pedidos que entraron a la etapa.
+     */
+    public long getEncolados() {
+        return encolados.sum();
+    }
+
+    /**
+     * @return cantidad de pedidos que salieron de la etapa.
+     */
+    public long getDesencolados() {
+        return desencolados.sum();
+    }
+
+    /**
+     * @return cantidad de pedidos actualmente en la etapa.
+     */
+    public long getProfundidad() {
+        long desencoladosActual = desencolados.sum();
+        return Math.max(0, encolados.sum() - desencoladosActual);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s[entradas=%d salidas=%d profundidad=%d]",
+                nombre, getEncolados(), getDesencolados(), getProfundidad());
+    }
+}
@@ -0,0 +1,198 @@
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Latencias de los pedidos por etapa, medidas a partir de las marcas de tiempo que
+ * cada {@link Pedido} guarda al cambiar de estado.
+ *
+ * <ul>
+ *   <li>preparación: desde que se ocupa el casillero hasta que el pedido pasa a
+ *       tránsito;</li>
+ *   <li>tránsito: desde el despacho hasta que se entrega;</li>
+ *   <li>entregado: desde la entrega hasta que se verifica;</li>
+ *   <li>total: desde que se ocupa el casillero hasta que el pedido queda verificado.</li>
+ * </ul>
+ *
+ * Los fallidos no suman a ninguna etapa. Un pedido que se reintenta pasa por
+ * REINTENTO y vuelve a entrar a una etapa, que se mide desde esa nueva entrada. El
+ * total se mide desde el inicio del pedido ({@link Pedido#getInicio()}), que no cambia
+ * al reintentar, así que incluye los intentos fallidos.
+ *
+ * Además, la latencia total se separa por {@link ClasePedido}, y se cuentan los
+ * pedidos verificados después de su plazo (vencidos) y los que terminaron fallidos.
+ * El reloj es {@code System.nanoTime} salvo en la simulación discreta, que instala su
+ * reloj virtual.
+ */
+public class MetricasLatencia {
+    private static final String[] NOMBRES = {"preparación", "tránsito", "entregado", "total"};
+
+    private final Histograma[] histogramas = {
+        new Histograma(), new Histograma(), new Histograma(), new Histograma()
+    };
+    private final Histograma[] porClase = new Histograma[ClasePedido.values().length];
+    private final LongAdder[] vencidos = new LongAdder[porClase.length];
+    private final LongAdder[] fallidos = new LongAdder[porClase.length];
+    private volatile LongSupplier reloj = System::nanoTime;
+
+    /**
+     * Constructor.
+     */
+    public MetricasLatencia() {
+        for (int c = 0; c < porClase.length; c++) {
+            porClase[c] = new Histograma();
+            vencidos[c] = new LongAdder();
+            fallidos[c] = new LongAdder();
+        }
+    }
+
+    /**
+     * Reemplaza el reloj con el que se marcan las transiciones.
+     * @param reloj fuente de instantes en nanosegundos.
+     */
+    public void setReloj(LongSupplier reloj) {
+        this.reloj = reloj;
+    }
+
+    /**
+     * @return instante actual según el reloj instalado, en nanosegundos.
+     */
+    public long ahora() {
+        return reloj.getAsLong();
+    }
+
+    /**
+     * Marca el paso de un pedido a un nuevo estado y, si completó una etapa, registra
+     * cuánto tardó en ella.
+     * @param pedido pedido que cambia de estado.
+     * @param nuevo estado al que entra.
+     */
+    public void transicion(Pedido pedido, EstadoPedido nuevo) {
+        long instante = ahora();
+        EstadoPedido anterior = pedido.getEstado();
+        int etapa = etapaCompletada(anterior, nuevo);
+        if (etapa >= 0) {
+            registrar(etapa, instante, pedido.getMarca(anterior), pedido.getInicio());
+        }
+        registrarClase(nuevo, pedido.getClase(), instante, pedido.getInicio(), pedido.getVence());
+        pedido.marcar(nuevo, instante);
+    }
+
+    /**
+     * Variante de {@link #transicion(Pedido, EstadoPedido)} para pedidos guardados en
+     * un {@link AlmacenPedidos}.
+     * @param almacen almacén del pedido.
+     * @param h handle del pedido.
+     * @param nuevo estado al que entra.
+     */
+    public void transicion(AlmacenPedidos almacen, int h, EstadoPedido nuevo) {
+        long instante = ahora();
+        EstadoPedido anterior = almacen.getEstado(h);
+        int etapa = etapaCompletada(anterior, nuevo);
+        if (etapa >= 0) {
+            registrar(etapa, instante, almacen.getMarca(h, anterior), almacen.getInicio(h));
+        }
+        registrarClase(nuevo, almacen.getClase(h), instante, almacen.getInicio(h), almacen.getVence(h));
+        almacen.marcar(h, nuevo, instante);
+    }
+
+    /**
+     * @return índice del histograma de la etapa que se completa, o -1 si la transición no completa ninguna.
+     */
+    private static int etapaCompletada(EstadoPedido anterior, EstadoPedido nuevo) {
+        if (anterior == EstadoPedido.PREPARACION && nuevo == EstadoPedido.TRANSITO) {
+            return 0;
+        }
+        if (anterior == EstadoPedido.TRANSITO && nuevo == EstadoPedido.ENTREGADO) {
+            return 1;
+        }
+        if (anterior == EstadoPedido.ENTREGADO && nuevo == EstadoPedido.VERIFICADO) {
+            return 2;
+        }
+        return -1;
+    }
+
+    private void registrar(int etapa, long instante, long marcaEtapa, long marcaInicio) {
+        histogramas[etapa].registrar(instante - marcaEtapa);
+        if (etapa == 2) {
+            histogramas[3].registrar(instante - marcaInicio);
+        }
+    }
+
+    /**
+     * Al terminar un pedido, registra su latencia total en la clase y si cumplió el plazo.
+     */
+    private void registrarClase(EstadoPedido nuevo, ClasePedido clase, long instante, long inicio, long vence) {
+        if (nuevo == EstadoPedido.VERIFICADO) {
+            porClase[clase.ordinal()].registrar(instante - inicio);
+            if (instante > vence) {
+                vencidos[clase.ordinal()].increment();
+            }
+        } else if (nuevo == EstadoPedido.FALLIDO) {
+            fallidos[clase.ordinal()].increment();
+        }
+    }
+
+    /**
+     * @param clase clase de servicio.
+     * @return latencia total de los pedidos verificados de la clase, en nanosegundos.
+     */
+    public Histograma getHistograma(ClasePedido clase) {
+        return porClase[clase.ordinal()];
+    }
+
+    /**
+     * @param clase clase de servicio.
+     * @return pedidos de la clase verificados después de su plazo.
+     */
+    public long getVencidos(ClasePedido clase) {
+        return vencidos[clase.ordinal()].sum();
+    }
+
+    /**
+     * @param clase clase de servicio.
+     * @return pedidos de la clase que terminaron fallidos.
+     */
+    public long getFallidos(ClasePedido clase) {
+        return fallidos[clase.ordinal()].sum();
+    }
+
+    /**
+     * @param etapa PREPARACION, TRANSITO o ENTREGADO para la etapa; VERIFICADO para el total.
+     * @return histograma de latencias en nanosegundos.
+     */
+    public Histograma getHistograma(EstadoPedido etapa) {
+        switch (etapa) {
+            case PREPARACION: return histogramas[0];
+            case TRANSITO:    return histogramas[1];
+            case ENTREGADO:   return histogramas[2];
+            case VERIFICADO:  return histogramas[3];
+            default: throw new IllegalArgumentException("Sin histograma para " + etapa);
+        }
+    }
+
+    /**
+     * Resume las latencias de cada etapa. Se puede pedir en cualquier momento de la
+     * ejecución; los histogramas se leen sin detener a los trabajadores.
+     * @return tabla con cantidad, p50, p99, p999 y máximo en milisegundos.
+     */
+    public String reporte() {
+        StringBuilder sb = new StringBuilder(String.format("%-12s %10s %10s %10s %10s %10s%n",
+                "Latencia ms", "pedidos", "p50", "p99", "p999", "max"));
+        for (int i = 0; i < histogramas.length; i++) {
+            Histograma h = histogramas[i];
+            sb.append(String.format("%-12s %10d %10.3f %10.3f %10.3f %10.3f%n", NOMBRES[i], h.getCantidad(),
+                    h.percentil(50) / 1e6, h.percentil(99) / 1e6, h.percentil(99.9) / 1e6, h.getMaximo() / 1e6));
+        }
+        for (ClasePedido clase : ClasePedido.values()) {
+            Histograma h = porClase[clase.ordinal()];
+            if (h.getCantidad() == 0 && getFallidos(clase) == 0) {
+                continue;
+            }
+            sb.append(String.format("%-12s %10d %10.3f %10.3f %10.3f %10.3f  vencidos %d (%.1f%%), fallidos %d%n",
+                    clase.name().toLowerCase(), h.getCantidad(), h.percentil(50) / 1e6, h.percentil(99) / 1e6,
+                    h.percentil(99.9) / 1e6, h.getMaximo() / 1e6, getVencidos(clase),
+                    h.getCantidad() == 0 ? 0 : 100.0 * getVencidos(clase) / h.getCantidad(), getFallidos(clase)));
+        }
+        return sb.toString();
+    }
+}
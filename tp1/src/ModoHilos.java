@@ -0,0 +1,9 @@
+/**
+ * Tipo de hilo con el que se ejecutan los trabajadores de cada etapa.
+ */
+public enum ModoHilos {
+    /** Hilos de plataforma, uno por hilo del sistema operativo. */
+    PLATAFORMA,
+    /** Hilos virtuales: permiten miles de trabajadores bloqueados con poco consumo de memoria. */
+    VIRTUAL
+}
@@ -0,0 +1,9 @@
+/**
+ * Forma en que se ejecuta un escenario.
+ */
+public enum ModoSimulacion {
+    /** Un hilo por trabajador con esperas reales ({@code Thread.sleep}). */
+    TIEMPO_REAL,
+    /** Simulación por eventos discretos con reloj virtual, sin hilos ni esperas reales. */
+    DISCRETO
+}
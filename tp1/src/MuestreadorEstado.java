@@ -0,0 +1,85 @@
+import java.io.IOException;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hilo que toma muestras periódicas del estado del sistema y las guarda en un
+ * {@link DiarioEstado}. Solo lee contadores sin lock ({@link MetricasEtapa} y los
+ * contadores de casilleros), por lo que puede muestrear por debajo del milisegundo
+ * sin frenar a los trabajadores.
+ */
+public class MuestreadorEstado extends Thread {
+    private final DiarioEstado diario;
+    private final SistemaAlmacenamiento sistema;
+    private final RegistrodePedidos registro;
+    private final long periodoNanos;
+    private final long inicioNanos;
+    private final int[] etapas = new int[5];
+    private volatile boolean activo = true;
+
+    /**
+     * Constructor.
+     * @param diario diario donde se escriben las muestras.
+     * @param sistema sistema de almacenamiento a observar.
+     * @param registro registro de pedidos a observar.
+     * @param periodoMicros período entre muestras, en microsegundos.
+     * @param inicioNanos instante de inicio del programa ({@code System.nanoTime()}).
+     */
+    public MuestreadorEstado(DiarioEstado diario, SistemaAlmacenamiento sistema, RegistrodePedidos registro,
+                             long periodoMicros, long inicioNanos) {
+        super("MuestreadorEstado");
+        setDaemon(true);
+        this.diario = diario;
+        this.sistema = sistema;
+        this.registro = registro;
+        this.periodoNanos = Math.max(1, periodoMicros) * 1000;
+        this.inicioNanos = inicioNanos;
+    }
+
+    @Override
+    public void run() {
+        long proxima = System.nanoTime();
+        try {
+            while (activo) {
+                muestrear();
+                proxima += periodoNanos;
+                long espera = proxima - System.nanoTime();
+                if (espera > 0) {
+                    LockSupport.parkNanos(espera);
+                } else {
+                    proxima = System.nanoTime();
+                }
+            }
+            muestrear();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Detiene el muestreo tras una última muestra y cierra el diario.
+     */
+    public void detener() {
+        activo = false;
+        LockSupport.unpark(this);
+        try {
+            join();
+            diario.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void muestrear() throws IOException {
+        etapas[0] = registro.sizeListaPreparacion();
+        etapas[1] = registro.sizeListaTransito();
+        etapas[2] = registro.sizeListaEntregados();
+        etapas[3] = registro.sizeListaFallidos();
+        etapas[4] = registro.sizeListaVerificados();
+        int ocupados = sistema.getCantidadOcupados();
+        int fuera = sistema.getCantidadFueraServicio();
+        int libres = sistema.getCantidadCasilleros() - ocupados - fuera;
+        diario.escribir(System.nanoTime() - inicioNanos, etapas, ocupados, libres, fuera);
+    }
+}
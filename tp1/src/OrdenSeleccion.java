@@ -0,0 +1,22 @@
+/**
+ * Orden en el que una etapa entrega sus pedidos a los consumidores.
+ */
+public enum OrdenSeleccion {
+    /** El pedido más antiguo primero. */
+    FIFO,
+    /** El pedido más reciente primero. */
+    LIFO,
+    /** Un pedido cualquiera con la misma probabilidad, como en la simulación original. */
+    ALEATORIO,
+    /** El pedido cuyo plazo vence primero (earliest deadline first); a igual plazo, el más antiguo. */
+    PLAZO,
+    /** Los pedidos EXPRESS antes que los ESTANDAR; dentro de cada clase, el más antiguo. */
+    PRIORIDAD;
+
+    /**
+     * @return true si la cola ordena los pedidos por una clave (plazo o clase) en un heap.
+     */
+    public boolean porClave() {
+        return this == PLAZO || this == PRIORIDAD;
+    }
+}
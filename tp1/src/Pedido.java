@@ -1,7 +1,23 @@
+/**
+ * Pedido que circula por las etapas del sistema.
+ * Guarda su estado ({@link EstadoPedido}) y el instante en que entró a cada etapa,
+ * en campos primitivos para no agregar objetos por pedido. Los instantes los pone
+ * {@link MetricasLatencia}, que los usa para medir cuánto tiempo pasó el pedido en
+ * cada etapa.
+ */
 public class Pedido {
     private Integer casillero;
-    private int Estado;
+    private EstadoPedido estado;
     public int id;
+    private int intentos;
+    private ClasePedido clase = ClasePedido.ESTANDAR;
+    private long vence = Long.MAX_VALUE;
+
+    private long marcaInicio;
+    private long marcaPreparacion;
+    private long marcaTransito;
+    private long marcaEntregado;
+    private long marcaFinal;
 
     Pedido(Integer casillero, int id){
         this.casillero = casillero;
@@ -12,20 +28,107 @@ public class Pedido {
         return casillero;
     }
 
+    /**
+     * Asigna otro casillero al pedido, cuando se reintenta tras fallar en el despacho.
+     * @param casillero número del nuevo casillero.
+     */
+    public void setCasillero(int casillero){
+        this.casillero = casillero;
+    }
+
+    /**
+     * @return clase de servicio del pedido.
+     */
+    public ClasePedido getClase(){
+        return clase;
+    }
+
+    /**
+     * @return instante en que vence el plazo del pedido, en el reloj de las marcas;
+     *         {@code Long.MAX_VALUE} si no tiene plazo.
+     */
+    public long getVence(){
+        return vence;
+    }
+
+    /**
+     * Asigna la clase de servicio y el plazo del pedido.
+     * @param clase clase de servicio.
+     * @param vence instante en que vence el plazo, en el reloj de las marcas.
+     */
+    public void setClase(ClasePedido clase, long vence){
+        this.clase = clase;
+        this.vence = vence;
+    }
+
+    /**
+     * @return reintentos que lleva el pedido.
+     */
+    public int getIntentos(){
+        return intentos;
+    }
+
+    /**
+     * Cuenta un reintento más.
+     * @return reintentos que lleva el pedido, contando este.
+     */
+    public int sumarIntento(){
+        return ++intentos;
+    }
+
     public void setFallido(){
-        Estado = -1;
+        estado = EstadoPedido.FALLIDO;
     }
 
-    public String toString() {
-        return "Pedido #" + id;
+    /**
+     * @return estado actual del pedido, o null si todavía no entró al circuito.
+     */
+    public EstadoPedido getEstado() {
+        return estado;
     }
 
-    public void setPoisonPill(){
-        Estado = 2;
+    /**
+     * Pasa el pedido a un nuevo estado y anota el instante de la transición. La
+     * primera transición marca además el inicio del pedido, que no cambia si después
+     * se reintenta.
+     * @param nuevo estado al que entra el pedido.
+     * @param instante instante de la transición, en nanosegundos.
+     */
+    public void marcar(EstadoPedido nuevo, long instante) {
+        if (estado == null) {
+            marcaInicio = instante;
+        }
+        estado = nuevo;
+        switch (nuevo) {
+            case PREPARACION: marcaPreparacion = instante; break;
+            case TRANSITO:    marcaTransito = instante;    break;
+            case ENTREGADO:   marcaEntregado = instante;   break;
+            default:          marcaFinal = instante;       break;
+        }
     }
 
-    public boolean pedidoPoison(){
-        return Estado == 2;
+    /**
+     * @param etapa estado consultado; FALLIDO y VERIFICADO comparten la marca final.
+     * @return instante en que el pedido entró al estado, o 0 si no pasó por él.
+     */
+    public long getMarca(EstadoPedido etapa) {
+        switch (etapa) {
+            case PREPARACION: return marcaPreparacion;
+            case TRANSITO:    return marcaTransito;
+            case ENTREGADO:   return marcaEntregado;
+            default:          return marcaFinal;
+        }
+    }
+
+    /**
+     * @return instante en que el pedido entró al sistema, antes de cualquier reintento.
+     */
+    public long getInicio() {
+        return marcaInicio;
+    }
+
+    public String toString() {
+        return "Pedido #" + id;
     }
 
 }
@@ -0,0 +1,12 @@
+/**
+ * Criterio con el que el sistema de almacenamiento elige un casillero vacío
+ * para un pedido nuevo.
+ */
+public enum PoliticaAsignacion {
+    /** Cualquier casillero vacío con la misma probabilidad. */
+    ALEATORIA,
+    /** El casillero vacío de menor índice. */
+    PRIMER_LIBRE,
+    /** El casillero vacío que menos veces fue ocupado (según {@code Contador}). */
+    MENOS_USADO
+}
@@ -0,0 +1,9 @@
+/**
+ * Qué hace el log de eventos cuando su buffer está lleno.
+ */
+public enum PoliticaDesborde {
+    /** El evento se descarta y se cuenta como perdido; el hilo nunca espera. */
+    DESCARTAR,
+    /** El hilo espera a que el escritor libere lugar; no se pierden eventos. */
+    BLOQUEAR
+}
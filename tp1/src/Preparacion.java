@@ -1,4 +1,4 @@
-import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Clase Preparacion que simula el rol de productor.
@@ -7,45 +7,77 @@ import java.util.Random;
 public class Preparacion implements Runnable {
     private SistemaAlmacenamiento sistema;
     private RegistrodePedidos Registropedidos;
-    private int pedidosCompletados;
+    private AtomicInteger pedidosCompletados;
+    private ConfiguracionEscenario configuracion;
 
     /**
-     * Constructor.
+     * Constructor con los parámetros del escenario original.
      * @param sistema instancia del sistema de almacenamiento.
      * @param pedidos referencia al registro compartido de pedidos.
      */
     public Preparacion(SistemaAlmacenamiento sistema, RegistrodePedidos pedidos) {
+        this(sistema, pedidos, new ConfiguracionEscenario());
+    }
+
+    /**
+     * Constructor.
+     * @param sistema instancia del sistema de almacenamiento.
+     * @param pedidos referencia al registro compartido de pedidos.
+     * @param configuracion escenario con los tiempos de preparación.
+     */
+    public Preparacion(SistemaAlmacenamiento sistema, RegistrodePedidos pedidos, ConfiguracionEscenario configuracion) {
         this.sistema = sistema;
         this.Registropedidos = pedidos;
-        this.pedidosCompletados = 0;
+        this.pedidosCompletados = new AtomicInteger(0);
+        this.configuracion = configuracion;
     }
 
     /**
-     * Solicita un casillero disponible y registra el pedido en preparación.
+     * Solicita un casillero disponible y registra el pedido en preparación, con su
+     * clase de servicio sorteada y el plazo de esa clase.
+     * @return false si no se consiguió casillero (sistema agotado o hilo interrumpido).
      */
-    public void prepararPedido() {
+    public boolean prepararPedido() {
         Pedido pedido = sistema.ocuparCasillero();
+        if (pedido == null) {
+            return false;
+        }
+        ClasePedido clase = configuracion.sortearClase(FuenteAleatoria.actual());
+        Registropedidos.iniciarPedido(pedido, clase, configuracion.getPlazoMs(clase));
         Registropedidos.addListaPreparacion(pedido); 
+        return true;
     }
 
     /**
-     * Método sincronizado para incrementar y devolver el número de pedido procesado.
+     * Incrementa atómicamente y devuelve el número de pedido procesado.
+     * No usa {@code synchronized} para no fijar hilos virtuales a su portador.
      * @return número del siguiente pedido a procesar.
      */
-    public synchronized int siguientePedido() {
-        return pedidosCompletados++;
+    public int siguientePedido() {
+        return pedidosCompletados.getAndIncrement();
     }
 
     /**
      * Ejecuta el hilo de preparación hasta completar la cantidad total de pedidos.
+     * Si no consigue casillero, descarta en el registro los pedidos que ya no se
+     * van a generar, para que el circuito pueda terminar.
      */
     @Override
     public void run() {
         while (siguientePedido() < sistema.getTotalPedidos()) {
-            prepararPedido();
+            if (!prepararPedido()) {
+                long descartados = 1;
+                while (siguientePedido() < sistema.getTotalPedidos()) {
+                    descartados++;
+                }
+                Registropedidos.descartarPedidos(descartados);
+                return;
+            }
             try {
-                Random rnd = new Random();
-                Thread.sleep(rnd.nextInt(90, 180));
+                int espera = configuracion.getEsperaPreparacion().sortear(FuenteAleatoria.actual());
+                if (espera > 0) {
+                    Thread.sleep(espera);
+                }
             } catch (InterruptedException e) {
                 e.printStackTrace();
             }
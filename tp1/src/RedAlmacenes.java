@@ -0,0 +1,311 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.random.RandomGenerator;
+
+/**
+ * Red de varios almacenes, cada uno con su propio {@link SistemaAlmacenamiento} y
+ * {@link RegistrodePedidos}, y con su propio grupo de hilos por etapa.
+ *
+ * Los almacenes no comparten casilleros ni colas, así que su rendimiento suma. Para
+ * que uno cargado no frene al conjunto, los despachantes y repartidores que se
+ * quedan sin trabajo en su almacén toman pedidos de los demás: el pedido robado se
+ * procesa con el {@link Despacho} o la {@link Entrega} de su almacén de origen, de
+ * modo que libera sus casilleros y sigue por sus colas. Con {@code despacho.lote}
+ * mayor que uno, los despachantes retiran y despachan lotes, también al robar.
+ *
+ * Cada registro cierra sus colas cuando terminó su último pedido, contando los que
+ * vuelven por reintentos. Despachantes y repartidores terminan cuando se cerraron
+ * las colas de su etapa en toda la red, y los verificadores cuando se cerró la de
+ * su almacén; la red completa su futuro cuando terminaron todos los almacenes.
+ */
+public class RedAlmacenes {
+    private static final long ESPERA_LOCAL_MS = 5;
+    private static final int PREPARACION = 0;
+    private static final int TRANSITO = 1;
+
+    private final ConfiguracionEscenario cfg;
+    private final SistemaAlmacenamiento[] sistemas;
+    private final RegistrodePedidos[] registros;
+    private final Preparacion[] preparaciones;
+    private final Despacho[] despachos;
+    private final Entrega[] entregas;
+    private final VerificacionFinal[] verificaciones;
+    private final Reintentos[] reintentos;
+
+    private final LongAdder[] robados;
+    private final CompletableFuture<Void> completado;
+
+    /**
+     * Constructor. Reparte los pedidos del escenario en partes iguales entre los
+     * almacenes; cada uno tiene la grilla y los hilos que indica el escenario.
+     * @param cfg escenario de cada almacén.
+     * @param cantidad cantidad de almacenes.
+     * @param sumideros archivo de pedidos terminados de cada almacén; null, o con
+     *                  posiciones null, si no se vuelcan.
+     * @param fabrica fábrica de los hilos de los controles de verificación.
+     */
+    public RedAlmacenes(ConfiguracionEscenario cfg, int cantidad, SumideroTerminales[] sumideros,
+                        FabricaHilos fabrica) {
+        this.cfg = cfg;
+        sistemas = new SistemaAlmacenamiento[cantidad];
+        registros = new RegistrodePedidos[cantidad];
+        preparaciones = new Preparacion[cantidad];
+        despachos = new Despacho[cantidad];
+        entregas = new Entrega[cantidad];
+        verificaciones = new VerificacionFinal[cantidad];
+        reintentos = new Reintentos[cantidad];
+        robados = new LongAdder[cantidad];
+        for (int a = 0; a < cantidad; a++) {
+            int pedidos = cfg.getPedidos() / cantidad + (a < cfg.getPedidos() % cantidad ? 1 : 0);
+            sistemas[a] = new SistemaAlmacenamiento(pedidos, cfg.getCasilleros(), cfg.getPolitica(), cfg.getFranjas(),
+                    cfg.crearSalud());
+            sistemas[a].setLogActivo(cfg.isLog());
+            registros[a] = new RegistrodePedidos(cfg.getCapacidadEtapa(), cfg.getOrdenSeleccion(),
+                    cfg.isRetenerTerminales(), sumideros == null ? null : sumideros[a]);
+            preparaciones[a] = new Preparacion(sistemas[a], registros[a], cfg);
+            despachos[a] = new Despacho(sistemas[a], registros[a], cfg);
+            entregas[a] = new Entrega(registros[a], cfg);
+            verificaciones[a] = new VerificacionFinal(registros[a], cfg, fabrica);
+            reintentos[a] = new Reintentos(registros[a], sistemas[a], cfg);
+            if (cfg.getMaxReintentos() > 0) {
+                registros[a].setReintentos(reintentos[a]);
+            }
+            robados[a] = new LongAdder();
+        }
+        CompletableFuture<?>[] almacenes = new CompletableFuture<?>[cantidad];
+        for (int a = 0; a < cantidad; a++) {
+            almacenes[a] = registros[a].completarCon(sistemas[a].getTotalPedidos())
+                    .thenRun(sistemas[a].getSalud()::cerrar)
+                    .thenRun(reintentos[a]::cerrar);
+        }
+        completado = CompletableFuture.allOf(almacenes);
+    }
+
+    /**
+     * @return futuro que se completa cuando terminaron los pedidos de todos los almacenes.
+     */
+    public CompletableFuture<Void> getCompletado() {
+        return completado;
+    }
+
+    /**
+     * Crea los hilos de todos los almacenes, sin iniciarlos. Cada hilo lleva en su
+     * nombre el almacén y la etapa a la que pertenece.
+     * @param fabrica fábrica que decide el tipo de hilo.
+     * @return hilos creados.
+     */
+    public List<Thread> crearHilos(FabricaHilos fabrica) {
+        List<Thread> hilos = new ArrayList<>();
+        for (int a = 0; a < sistemas.length; a++) {
+            final int almacen = a;
+            String prefijo = "Almacen-" + a + "-";
+            for (int i = 0; i < cfg.getHilosPreparacion(); i++) {
+                hilos.add(fabrica.crear(preparaciones[a], prefijo + "Preparacion-" + i));
+            }
+            for (int i = 0; i < cfg.getHilosDespacho(); i++) {
+                hilos.add(fabrica.crear(() -> despachar(almacen), prefijo + "Despacho-" + i));
+            }
+            for (int i = 0; i < cfg.getHilosEntrega(); i++) {
+                hilos.add(fabrica.crear(() -> entregar(almacen), prefijo + "Entrega-" + i));
+            }
+            for (int i = 0; i < cfg.getHilosVerificacion(); i++) {
+                hilos.add(fabrica.crear(verificaciones[a], prefijo + "Verificacion-" + i));
+            }
+            Reparacion reparacion = new Reparacion(sistemas[a], cfg);
+            for (int i = 0; i < cfg.getHilosReparacion(); i++) {
+                hilos.add(fabrica.crear(reparacion, prefijo + "Reparacion-" + i));
+            }
+            if (cfg.getMaxReintentos() > 0) {
+                hilos.add(fabrica.crear(reintentos[a], prefijo + "Reintentos"));
+            }
+        }
+        return hilos;
+    }
+
+    /**
+     * Bucle de un despachante: espera un rato en su almacén (o, si su almacén ya
+     * terminó, en otro que siga abierto) y, si no llegó nada, roba de la cola de
+     * preparación de otro. Con lotes, retira hasta {@code despacho.lote} pedidos de
+     * una misma cola y espera una vez por carga, como {@link Despacho#run()}. Termina
+     * cuando se cerraron las colas de preparación de toda la red.
+     */
+    private void despachar(int propio) {
+        RandomGenerator rnd = FuenteAleatoria.actual();
+        int tamLote = cfg.getLoteDespacho();
+        Pedido[] lote = new Pedido[tamLote];
+        while (true) {
+            int almacen = abiertaDesde(propio, PREPARACION);
+            if (almacen < 0) {
+                return;
+            }
+            int n = cola(almacen, PREPARACION).drenar(lote, tamLote, ESPERA_LOCAL_MS, TimeUnit.MILLISECONDS);
+            for (int i = 1; n == 0 && i < sistemas.length; i++) {
+                almacen = (propio + i) % sistemas.length;
+                n = cola(almacen, PREPARACION).drenar(lote, tamLote, 0, TimeUnit.MILLISECONDS);
+            }
+            if (n == 0) {
+                continue;
+            }
+            if (tamLote > 1) {
+                despachos[almacen].despachar(lote, n);
+            } else {
+                despachos[almacen].despachar(lote[0]);
+            }
+            if (almacen != propio) {
+                robados[propio].add(n);
+            }
+            dormir(cfg.getEsperaDespacho().sortear(rnd));
+        }
+    }
+
+    /**
+     * Bucle de un repartidor: igual que el de un despachante, sobre las colas de
+     * tránsito. Termina cuando se cerraron las colas de tránsito de toda la red.
+     */
+    private void entregar(int propio) {
+        RandomGenerator rnd = FuenteAleatoria.actual();
+        while (true) {
+            int almacen = abiertaDesde(propio, TRANSITO);
+            if (almacen < 0) {
+                return;
+            }
+            Pedido pedido = cola(almacen, TRANSITO).tomar(ESPERA_LOCAL_MS, TimeUnit.MILLISECONDS);
+            for (int i = 1; pedido == null && i < sistemas.length; i++) {
+                almacen = (propio + i) % sistemas.length;
+                pedido = cola(almacen, TRANSITO).intentarTomar();
+            }
+            if (pedido == null) {
+                continue;
+            }
+            entregas[almacen].entregar(pedido);
+            if (almacen != propio) {
+                robados[propio].increment();
+            }
+            dormir(cfg.getEsperaEntrega().sortear(rnd));
+        }
+    }
+
+    private ColaEtapa cola(int almacen, int etapa) {
+        return etapa == PREPARACION ? registros[almacen].getColaPreparacion() : registros[almacen].getColaTransito();
+    }
+
+    /**
+     * @return el primer almacén, empezando por el propio, cuya cola de la etapa sigue abierta; -1 si no hay.
+     */
+    private int abiertaDesde(int propio, int etapa) {
+        for (int i = 0; i < sistemas.length; i++) {
+            int almacen = (propio + i) % sistemas.length;
+            if (!cola(almacen, etapa).estaCerrada()) {
+                return almacen;
+            }
+        }
+        return -1;
+    }
+
+    private static void dormir(int espera) {
+        if (espera <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(espera);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return cantidad de almacenes.
+     */
+    public int getCantidad() {
+        return sistemas.length;
+    }
+
+    /**
+     * @param almacen índice del almacén.
+     * @return sistema de casilleros del almacén.
+     */
+    public SistemaAlmacenamiento getSistema(int almacen) {
+        return sistemas[almacen];
+    }
+
+    /**
+     * @param almacen índice del almacén.
+     * @return registro de pedidos del almacén.
+     */
+    public RegistrodePedidos getRegistro(int almacen) {
+        return registros[almacen];
+    }
+
+    /**
+     * @param almacen índice del almacén.
+     * @return etapa de verificación del almacén.
+     */
+    public VerificacionFinal getVerificacion(int almacen) {
+        return verificaciones[almacen];
+    }
+
+    /**
+     * @param almacen índice del almacén.
+     * @return pedidos que los hilos del almacén tomaron de otros almacenes.
+     */
+    public long getRobados(int almacen) {
+        return robados[almacen].sum();
+    }
+
+    /**
+     * Vista agregada de la red: suma de cada etapa en todos los almacenes, leída
+     * sin locks.
+     * @return tamaños de preparación, tránsito, entregados, fallidos y verificados.
+     */
+    public int[] getEtapas() {
+        int[] etapas = new int[5];
+        for (RegistrodePedidos r : registros) {
+            etapas[0] += r.sizeListaPreparacion();
+            etapas[1] += r.sizeListaTransito();
+            etapas[2] += r.sizeListaEntregados();
+            etapas[3] += r.sizeListaFallidos();
+            etapas[4] += r.sizeListaVerificados();
+        }
+        return etapas;
+    }
+
+    /**
+     * Línea de estado de toda la red, con el mismo formato que el registro de un almacén.
+     * @param ms milisegundos transcurridos.
+     * @return línea de estado agregada.
+     */
+    public String lineaEstado(long ms) {
+        int[] e = getEtapas();
+        return LectorDiario.lineaEstado(ms, e[0], e[1], e[2], e[3], e[4]);
+    }
+
+    /**
+     * Resumen por almacén y total de la red.
+     * @return una línea por almacén más el total.
+     */
+    public String resumen() {
+        StringBuilder sb = new StringBuilder();
+        int ocupados = 0;
+        int fuera = 0;
+        long robadosTotal = 0;
+        for (int a = 0; a < sistemas.length; a++) {
+            RegistrodePedidos r = registros[a];
+            SaludCasilleros salud = sistemas[a].getSalud();
+            sb.append(String.format("Almacén %d: fallidos %d | verificados %d | casilleros fuera de servicio %d"
+                            + " (averías %d, reparadas %d) | reintentos %d (recuperados %d) | robados %d%n",
+                    a, r.sizeListaFallidos(), r.sizeListaVerificados(), sistemas[a].getCantidadFueraServicio(),
+                    salud.getAverias(), salud.getReparaciones(), reintentos[a].getProgramados(),
+                    reintentos[a].getRecuperados(), getRobados(a)));
+            ocupados += sistemas[a].getCantidadOcupados();
+            fuera += sistemas[a].getCantidadFueraServicio();
+            robadosTotal += getRobados(a);
+        }
+        int[] e = getEtapas();
+        sb.append(String.format("Red: fallidos %d | verificados %d | casilleros ocupados %d | fuera de servicio %d | robados %d%n",
+                e[3], e[4], ocupados, fuera, robadosTotal));
+        return sb.toString();
+    }
+}
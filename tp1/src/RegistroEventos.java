@@ -0,0 +1,219 @@
+import java.io.PrintStream;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Log de eventos asíncrono basado en un buffer circular de registros de tamaño fijo.
+ *
+ * Los hilos del circuito solo copian cinco campos primitivos (instante, hilo, acción,
+ * pedido y casillero) en columnas preasignadas y publican el lugar; no arman
+ * cadenas ni escriben en consola. Un hilo escritor en segundo plano recorre los
+ * registros publicados en orden, les da formato y los imprime en lotes.
+ *
+ * Cuando el buffer se llena se aplica la {@link PoliticaDesborde} configurada.
+ */
+public class RegistroEventos {
+    private static final DateTimeFormatter FORMATO =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS").withZone(ZoneId.systemDefault());
+    private static final AccionEvento[] ACCIONES = AccionEvento.values();
+
+    private static volatile RegistroEventos instancia;
+
+    private final int mascara;
+    private final int capacidad;
+    private final PoliticaDesborde politica;
+    private final int lote;
+    private final PrintStream salida;
+
+    private final long[] instantes;
+    private final long[] hilos;
+    private final int[] acciones;
+    private final int[] pedidos;
+    private final int[] casilleros;
+    private final AtomicLongArray publicados;
+
+    private final AtomicLong cursor = new AtomicLong(0);
+    private volatile long consumido = 0;
+    private final LongAdder descartados = new LongAdder();
+
+    private final ConcurrentHashMap<Long, String> nombresHilos = new ConcurrentHashMap<>();
+    private final ThreadLocal<Boolean> hiloRegistrado = ThreadLocal.withInitial(() -> Boolean.FALSE);
+
+    private final Thread escritor;
+    private volatile boolean cerrado = false;
+
+    /**
+     * Constructor. Inicia el hilo escritor.
+     * @param capacidad cantidad de registros del buffer (se redondea a potencia de dos).
+     * @param politica qué hacer cuando el buffer está lleno.
+     * @param lote cantidad máxima de registros por escritura.
+     * @param salida destino de los mensajes formateados.
+     */
+    public RegistroEventos(int capacidad, PoliticaDesborde politica, int lote, PrintStream salida) {
+        int potencia = Integer.highestOneBit(Math.max(2, capacidad - 1)) << 1;
+        this.capacidad = potencia;
+        this.mascara = potencia - 1;
+        this.politica = politica;
+        this.lote = Math.max(1, lote);
+        this.salida = salida;
+
+        instantes = new long[potencia];
+        hilos = new long[potencia];
+        acciones = new int[potencia];
+        pedidos = new int[potencia];
+        casilleros = new int[potencia];
+        publicados = new AtomicLongArray(potencia);
+        for (int i = 0; i < potencia; i++) {
+            publicados.set(i, -1);
+        }
+
+        escritor = new Thread(this::escribir, "RegistroEventos");
+        escritor.setDaemon(true);
+        escritor.start();
+    }
+
+    /**
+     * @return log compartido por todo el programa; se crea con valores por defecto si no se instaló otro.
+     */
+    public static RegistroEventos getInstancia() {
+        RegistroEventos actual = instancia;
+        if (actual == null) {
+            synchronized (RegistroEventos.class) {
+                if (instancia == null) {
+                    instancia = new RegistroEventos(1 << 16, PoliticaDesborde.BLOQUEAR, 1024, System.out);
+                }
+                actual = instancia;
+            }
+        }
+        return actual;
+    }
+
+    /**
+     * Reemplaza el log compartido. El anterior, si existía, se cierra.
+     * @param nuevo log a instalar.
+     */
+    public static synchronized void instalar(RegistroEventos nuevo) {
+        RegistroEventos anterior = instancia;
+        instancia = nuevo;
+        if (anterior != null) {
+            anterior.cerrar();
+        }
+    }
+
+    /**
+     * Registra un evento en el log compartido.
+     * @param accion acción realizada.
+     * @param pedido pedido involucrado (puede ser null).
+     */
+    public static void log(AccionEvento accion, Pedido pedido) {
+        getInstancia().registrar(accion, pedido);
+    }
+
+    /**
+     * Copia el evento al buffer. No reserva memoria salvo la primera vez que lo usa cada hilo.
+     * @param accion acción realizada.
+     * @param pedido pedido involucrado (puede ser null).
+     */
+    public void registrar(AccionEvento accion, Pedido pedido) {
+        Thread hilo = Thread.currentThread();
+        if (!hiloRegistrado.get()) {
+            nombresHilos.put(hilo.getId(), hilo.getName());
+            hiloRegistrado.set(Boolean.TRUE);
+        }
+
+        long secuencia;
+        if (politica == PoliticaDesborde.DESCARTAR) {
+            do {
+                secuencia = cursor.get();
+                if (secuencia - consumido >= capacidad) {
+                    descartados.increment();
+                    return;
+                }
+            } while (!cursor.compareAndSet(secuencia, secuencia + 1));
+        } else {
+            secuencia = cursor.getAndIncrement();
+            while (secuencia - consumido >= capacidad) {
+                LockSupport.parkNanos(10_000);
+            }
+        }
+
+        int i = (int) (secuencia & mascara);
+        instantes[i] = System.currentTimeMillis();
+        hilos[i] = hilo.getId();
+        acciones[i] = accion.ordinal();
+        pedidos[i] = pedido != null ? pedido.id : -1;
+        Integer casillero = pedido != null ? pedido.getCasillero() : null;
+        casilleros[i] = casillero != null ? casillero : -1;
+        publicados.set(i, secuencia);
+    }
+
+    /**
+     * @return cantidad de eventos descartados por buffer lleno.
+     */
+    public long getDescartados() {
+        return descartados.sum();
+    }
+
+    /**
+     * Espera a que el escritor vuelque todo lo publicado y lo detiene.
+     */
+    public void cerrar() {
+        cerrado = true;
+        try {
+            escritor.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        salida.flush();
+    }
+
+    private void escribir() {
+        StringBuilder texto = new StringBuilder(lote * 64);
+        long siguiente = 0;
+        while (true) {
+            int escritos = 0;
+            while (escritos < lote) {
+                int i = (int) (siguiente & mascara);
+                if (publicados.get(i) != siguiente) {
+                    break;
+                }
+                formatear(texto, i);
+                siguiente++;
+                escritos++;
+            }
+            if (escritos > 0) {
+                consumido = siguiente;
+                salida.print(texto);
+                texto.setLength(0);
+            } else if (cerrado && cursor.get() == siguiente) {
+                return;
+            } else {
+                LockSupport.parkNanos(1_000_000);
+            }
+        }
+    }
+
+    private void formatear(StringBuilder texto, int i) {
+        String nombre = nombresHilos.getOrDefault(hilos[i], "hilo-" + hilos[i]);
+        FORMATO.formatTo(Instant.ofEpochMilli(instantes[i]), texto);
+        texto.append(" [").append(nombre).append("] ");
+        String accion = ACCIONES[acciones[i]].name();
+        texto.append(accion);
+        for (int k = accion.length(); k < 18; k++) {
+            texto.append(' ');
+        }
+        if (pedidos[i] >= 0) {
+            texto.append(" Pedido #").append(pedidos[i]);
+        }
+        if (casilleros[i] >= 0) {
+            texto.append(" Casillero #").append(casilleros[i]);
+        }
+        texto.append(System.lineSeparator());
+    }
+}
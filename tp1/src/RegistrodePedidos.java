@@ -1,125 +1,269 @@
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Clase RegistrodePedidos que gestiona listas compartidas de pedidos en preparación y en tránsito.
- * Utiliza sincronización con objetos independientes para proteger el acceso concurrente a cada lista.
+ * Las etapas de preparación, tránsito y entregados son colas acotadas
+ * ({@link ColaEtapa}) con orden de selección configurable; fallidos y verificados son
+ * listas protegidas con locks independientes ({@link LockMedido}, que miden cuánto se
+ * los espera). Cada etapa expone sus {@link MetricasEtapa}, que se leen sin tomar
+ * ningún lock. Al pasar un pedido de una etapa a otra se anota la transición en
+ * {@link MetricasLatencia}.
+ *
+ * El registro lleva la cuenta de pedidos terminados (fallidos más verificados). Con
+ * {@link #completarCon(long)} se le indica cuántos pedidos esperar: cuando el último
+ * termina, cierra las colas de etapa, lo que hace salir a los trabajadores que
+ * esperan en ellas, y completa el futuro devuelto.
  */
 public class RegistrodePedidos {
-    private ArrayList<Pedido> listaPreparacion;
-    private ArrayList<Pedido> listaTransito;
-    private ArrayList<Pedido> listaEntregados;
+    /** Capacidad de cada cola de etapa cuando no se indica otra. */
+    public static final int CAPACIDAD_POR_DEFECTO = 100_000;
+
+    private ColaEtapa listaPreparacion;
+    private ColaEtapa listaTransito;
+    private ColaEtapa listaEntregados;
     private ArrayList<Pedido> listaFallidos;
     private ArrayList<Pedido> listaVerificados;
 
-    private final Object lockPreparacion = new Object();
-    private final Object lockTransito    = new Object();
-    private final Object lockEntregados  = new Object();
-    private final Object lockFallidos    = new Object();
-    private final Object lockVerificados = new Object();
+    private final MetricasEtapa metricasFallidos    = new MetricasEtapa("fallidos");
+    private final MetricasEtapa metricasVerificados = new MetricasEtapa("verificados");
+
+    private final MetricasLatencia latencias = new MetricasLatencia();
+    private final boolean retenerTerminales;
+    private final SumideroTerminales sumidero;
+
+    private final AtomicLong terminados = new AtomicLong();
+    private final AtomicLong descartados = new AtomicLong();
+    private volatile long esperados = -1;
+    private final CompletableFuture<Void> completado = new CompletableFuture<>();
+
+    private Reintentos reintentos;
+    private volatile TrazaEjecucion traza;
+
+    private final LockMedido lockFallidos    = new LockMedido("fallidos");
+    private final LockMedido lockVerificados = new LockMedido("verificados");
+    private final LongAdder[] fallas = new LongAdder[EtapaFalla.values().length];
 
     /**
-     * Constructor que inicializa las listas y los objetos de sincronización.
+     * Constructor con capacidad por defecto y selección aleatoria, como en la simulación original.
      */
     public RegistrodePedidos() {
-        listaPreparacion = new ArrayList<>();
-        listaTransito    = new ArrayList<>();
-        listaEntregados  = new ArrayList<>();
+        this(CAPACIDAD_POR_DEFECTO, OrdenSeleccion.ALEATORIO);
+    }
+
+    /**
+     * Constructor que inicializa las colas de etapa y las listas finales.
+     * @param capacidad cantidad máxima de pedidos en cada cola de etapa.
+     * @param orden orden en el que las etapas entregan sus pedidos.
+     */
+    public RegistrodePedidos(int capacidad, OrdenSeleccion orden) {
+        this(capacidad, orden, true, null);
+    }
+
+    /**
+     * Constructor que además indica qué hacer con los pedidos terminados.
+     * Sin retenerlos, fallidos y verificados quedan solo como contadores (y, si hay
+     * sumidero, como registros en su archivo), así que no ocupan memoria.
+     * @param capacidad cantidad máxima de pedidos en cada cola de etapa.
+     * @param orden orden en el que las etapas entregan sus pedidos.
+     * @param retenerTerminales si es true, fallidos y verificados se guardan en listas.
+     * @param sumidero archivo donde se vuelcan los pedidos terminados; puede ser null.
+     */
+    public RegistrodePedidos(int capacidad, OrdenSeleccion orden, boolean retenerTerminales,
+                             SumideroTerminales sumidero) {
+        this.retenerTerminales = retenerTerminales;
+        this.sumidero = sumidero;
+        listaPreparacion = new ColaEtapa("preparación", capacidad, orden);
+        listaTransito    = new ColaEtapa("tránsito", capacidad, orden);
+        listaEntregados  = new ColaEtapa("entregados", capacidad, orden);
         listaFallidos    = new ArrayList<>();
         listaVerificados = new ArrayList<>();
+        for (int i = 0; i < fallas.length; i++) {
+            fallas[i] = new LongAdder();
+        }
     }
 
     /**
      * Agrega un pedido a la lista de preparación.
+     * Espera si la etapa está llena.
      * @param pedido el pedido que será agregado.
      */
     public void addListaPreparacion(Pedido pedido) {
-        synchronized (lockPreparacion) {
-            listaPreparacion.add(pedido);
-            lockPreparacion.notifyAll();
-        }
+        anotar(EventoTraza.PREPARACION, pedido, pedido.getClase().ordinal());
+        listaPreparacion.poner(pedido);
     }
 
     /**
-     * Obtiene y remueve el último pedido de la lista de preparación.
+     * Obtiene y remueve un pedido de la lista de preparación.
      * Espera si la lista está vacía.
-     * @return el pedido listo para ser despachado.
+     * @return el pedido listo para ser despachado, o null si las etapas se cerraron.
      */
     public Pedido getListaPreparacion() {
-        synchronized (lockPreparacion) {
-            while (listaPreparacion.isEmpty()) {
-                try {
-                    lockPreparacion.wait();
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    throw new RuntimeException("Interrupted while waiting for pedidos en preparación", e);
-                }
-            }
-            int indice = new Random().nextInt(listaPreparacion.size());
-            return listaPreparacion.remove(indice);
-        }
+        return listaPreparacion.tomar();
+    }
+
+    /**
+     * Retira de una vez hasta {@code maxN} pedidos de la lista de preparación.
+     * Espera si la lista está vacía, pero no a completar el lote.
+     * @param destino arreglo donde se dejan los pedidos, de al menos {@code maxN} posiciones.
+     * @param maxN cantidad máxima de pedidos a retirar.
+     * @return cantidad de pedidos retirados; 0 si las etapas se cerraron.
+     */
+    public int drainPreparacion(Pedido[] destino, int maxN) {
+        return listaPreparacion.drenar(destino, maxN);
     }
 
     /**
      * Agrega un pedido a la lista de tránsito.
+     * Espera si la etapa está llena.
      * @param pedido el pedido que ha sido despachado.
      */
     public void addListaTransito(Pedido pedido) {
-        synchronized (lockTransito) {
-            listaTransito.add(pedido);
-            lockTransito.notifyAll();
+        anotar(EventoTraza.TRANSITO, pedido, 0);
+        latencias.transicion(pedido, EstadoPedido.TRANSITO);
+        listaTransito.poner(pedido);
+    }
+
+    /**
+     * Agrega un lote de pedidos a la lista de tránsito con una sola toma del lock
+     * mientras haya lugar.
+     * @param lote arreglo con los pedidos despachados.
+     * @param n cantidad de pedidos del arreglo, desde el principio.
+     */
+    public void addListaTransito(Pedido[] lote, int n) {
+        for (int i = 0; i < n; i++) {
+            anotar(EventoTraza.TRANSITO, lote[i], 0);
+            latencias.transicion(lote[i], EstadoPedido.TRANSITO);
         }
+        listaTransito.ponerTodos(lote, n);
     }
 
     /**
-     * Obtiene y remueve el último pedido de la lista de tránsito.
+     * Obtiene y remueve un pedido de la lista de tránsito.
      * Espera si la lista está vacía.
-     * @return el pedido listo para ser entregado.
+     * @return el pedido listo para ser entregado, o null si las etapas se cerraron.
      */
     public Pedido getListaTransito() {
-        synchronized (lockTransito) {
-            while (listaTransito.isEmpty()) {
-                try {
-                    lockTransito.wait();
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    throw new RuntimeException("Interrupted while waiting for pedidos en tránsito", e);
-                }
-            }
-            int indice = new Random().nextInt(listaTransito.size());
-            return listaTransito.remove(indice);
-        }
+        return listaTransito.tomar();
     }
 
     /**
      * Agrega un pedido a la lista de entregados.
+     * Espera si la etapa está llena.
      * @param pedido el pedido que ha sido entregado.
      */
     public void addListaEntregados(Pedido pedido) {
-        synchronized (lockEntregados) {
-            listaEntregados.add(pedido);
-            lockEntregados.notifyAll();
-        }
+        anotar(EventoTraza.ENTREGADO, pedido, 0);
+        latencias.transicion(pedido, EstadoPedido.ENTREGADO);
+        listaEntregados.poner(pedido);
     }
 
     /**
-     * Obtiene y remueve el último pedido de la lista de entregados.
+     * Obtiene y remueve un pedido de la lista de entregados.
      * Espera si la lista está vacía.
-     * @return el pedido entregado más reciente.
+     * @return el pedido listo para ser verificado, o null si las etapas se cerraron.
      */
     public Pedido getListaEntregados() {
-        synchronized (lockEntregados) {
-            while (listaEntregados.isEmpty()) {
-                try {
-                    lockEntregados.wait();
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    throw new RuntimeException("Interrupted while waiting for pedidos entregados", e);
-                }
+        return listaEntregados.tomar();
+    }
+
+    /**
+     * Retira de una vez hasta {@code maxN} pedidos de la lista de entregados.
+     * Espera si la lista está vacía, pero no a completar el lote.
+     * @param destino arreglo donde se dejan los pedidos, de al menos {@code maxN} posiciones.
+     * @param maxN cantidad máxima de pedidos a retirar.
+     * @return cantidad de pedidos retirados; 0 si las etapas se cerraron.
+     */
+    public int drainEntregados(Pedido[] destino, int maxN) {
+        return listaEntregados.drenar(destino, maxN);
+    }
+
+    /**
+     * Registra la falla de un pedido en una etapa. Si hay reintentos y al pedido le
+     * queda alguno, queda en espera de reintento y no cuenta como terminado; si no,
+     * pasa a la lista de fallidos.
+     * @param pedido el pedido que falló.
+     * @param etapa etapa en la que falló.
+     */
+    public void fallar(Pedido pedido, EtapaFalla etapa) {
+        anotar(EventoTraza.FALLA, pedido, etapa.ordinal());
+        fallas[etapa.ordinal()].increment();
+        if (reintentos != null) {
+            latencias.transicion(pedido, EstadoPedido.REINTENTO);
+            if (reintentos.programar(pedido, etapa)) {
+                return;
             }
-            int indice = new Random().nextInt(listaEntregados.size());
-            return listaEntregados.remove(indice);
         }
+        fallarDefinitivo(pedido);
+    }
+
+    /**
+     * Pasa un pedido a fallidos sin reintentarlo.
+     * @param pedido el pedido que falló.
+     */
+    public void fallarDefinitivo(Pedido pedido) {
+        anotar(EventoTraza.FALLIDO, pedido, 0);
+        pedido.setFallido();
+        addListaFallidos(pedido);
+    }
+
+    /**
+     * Vuelve a poner en circuito un pedido cuyo reintento venció.
+     * Espera si la etapa está llena.
+     * @param pedido pedido reintentado; si vuelve a preparación, ya tiene su nuevo casillero.
+     * @param destino PREPARACION o TRANSITO.
+     */
+    public void reingresar(Pedido pedido, EstadoPedido destino) {
+        anotar(EventoTraza.REINGRESO, pedido, destino.ordinal());
+        if (destino == EstadoPedido.PREPARACION) {
+            latencias.transicion(pedido, EstadoPedido.PREPARACION);
+            listaPreparacion.poner(pedido);
+        } else {
+            latencias.transicion(pedido, EstadoPedido.TRANSITO);
+            listaTransito.poner(pedido);
+        }
+    }
+
+    /**
+     * Activa los reintentos: desde entonces {@link #fallar} los programa en lugar de
+     * mandar los pedidos directamente a fallidos.
+     * @param reintentos etapa de reintentos de este registro.
+     */
+    public void setReintentos(Reintentos reintentos) {
+        this.reintentos = reintentos;
+    }
+
+    /**
+     * Empieza a anotar en una traza cada paso de los pedidos entre etapas.
+     * @param traza traza de la corrida, o null para dejar de anotar.
+     */
+    public void setTraza(TrazaEjecucion traza) {
+        this.traza = traza;
+    }
+
+    /**
+     * @return traza en la que se anotan los pasos de los pedidos, o null si no se anotan.
+     */
+    public TrazaEjecucion getTraza() {
+        return traza;
+    }
+
+    private void anotar(EventoTraza evento, Pedido pedido, int dato) {
+        TrazaEjecucion t = traza;
+        if (t != null) {
+            t.anotar(evento, pedido.id, dato);
+        }
+    }
+
+    /**
+     * @return etapa de reintentos, o null si los pedidos que fallan no se reintentan.
+     */
+    public Reintentos getReintentos() {
+        return reintentos;
     }
 
     /**
@@ -127,9 +271,18 @@ public class RegistrodePedidos {
      * @param pedido el pedido que ha fallado.
      */
     public void addListaFallidos(Pedido pedido) {
-        synchronized (lockFallidos) {
-            listaFallidos.add(pedido);
+        latencias.transicion(pedido, EstadoPedido.FALLIDO);
+        if (retenerTerminales) {
+            lockFallidos.lock();
+            try {
+                listaFallidos.add(pedido);
+            } finally {
+                lockFallidos.unlock();
+            }
         }
+        metricasFallidos.registrarEntrada();
+        volcar(pedido, 0);
+        contarTerminado();
     }
 
     /**
@@ -137,54 +290,246 @@ public class RegistrodePedidos {
      * @param pedido el pedido que ha sido verificado.
      */
     public void addListaVerificados(Pedido pedido) {
-        synchronized (lockVerificados) {
-            listaVerificados.add(pedido);
+        anotar(EventoTraza.VERIFICADO, pedido, 0);
+        latencias.transicion(pedido, EstadoPedido.VERIFICADO);
+        if (reintentos != null && pedido.getIntentos() > 0) {
+            reintentos.contarRecuperado();
+        }
+        if (retenerTerminales) {
+            lockVerificados.lock();
+            try {
+                listaVerificados.add(pedido);
+            } finally {
+                lockVerificados.unlock();
+            }
+        }
+        metricasVerificados.registrarEntrada();
+        volcar(pedido, pedido.getMarca(EstadoPedido.VERIFICADO) - pedido.getInicio());
+        contarTerminado();
+    }
+
+    private void volcar(Pedido pedido, long latenciaTotal) {
+        if (sumidero != null) {
+            Integer casillero = pedido.getCasillero();
+            sumidero.volcar(pedido.id, casillero == null ? -1 : casillero, pedido.getEstado(), latenciaTotal);
         }
     }
 
     /**
-     * Imprime la cantidad de pedidos en cada estado.
+     * Cuenta un pedido terminado que no existe como objeto (por ejemplo, un handle de
+     * {@link AlmacenPedidos}); nunca se retiene, solo se cuenta y se vuelca.
+     * @param id número de pedido.
+     * @param casillero casillero que ocupó el pedido.
+     * @param estado FALLIDO o VERIFICADO.
+     * @param latenciaTotal nanosegundos desde que se ocupó el casillero, o 0 si falló.
      */
-    public void print() {
-        synchronized (lockTransito) {
-            System.out.printf("\nCantidad pedidos en tránsito: %d\n", sizeListaTransito());
+    public void contarTerminal(int id, int casillero, EstadoPedido estado, long latenciaTotal) {
+        if (estado == EstadoPedido.VERIFICADO) {
+            metricasVerificados.registrarEntrada();
+        } else {
+            metricasFallidos.registrarEntrada();
         }
-        synchronized (lockFallidos) {
-            System.out.printf("Cantidad pedidos fallidos: %d\n", sizeListaFallidos());
+        if (sumidero != null) {
+            sumidero.volcar(id, casillero, estado, latenciaTotal);
         }
-        synchronized (lockEntregados) {
-            System.out.printf("Cantidad pedidos entregados: %d\n", sizeListaEntregados());
+        contarTerminado();
+    }
+
+    /**
+     * Indica cuántos pedidos van a circular por el registro. Se llama antes de
+     * arrancar los trabajadores.
+     * @param total cantidad de pedidos que tienen que terminar.
+     * @return futuro que se completa cuando terminó el último pedido y las etapas quedaron cerradas.
+     */
+    public CompletableFuture<Void> completarCon(long total) {
+        esperados = total;
+        if (terminados.get() >= total) {
+            cerrarEtapas();
         }
-        synchronized (lockVerificados) {
-            System.out.printf("Cantidad pedidos verificados: %d\n", sizeListaVerificados());
+        return completado;
+    }
+
+    /**
+     * @return futuro que se completa cuando terminaron todos los pedidos esperados.
+     */
+    public CompletableFuture<Void> getCompletado() {
+        return completado;
+    }
+
+    /**
+     * @return pedidos esperados que todavía no terminaron, o -1 si no se indicó el total.
+     */
+    public long getPendientes() {
+        long total = esperados;
+        return total < 0 ? -1 : Math.max(0, total - terminados.get());
+    }
+
+    /**
+     * Descuenta pedidos que no se van a generar (por ejemplo, porque la grilla quedó
+     * toda fuera de servicio); cuentan como terminados para completar el registro.
+     * @param n cantidad de pedidos descartados.
+     */
+    public void descartarPedidos(long n) {
+        TrazaEjecucion t = traza;
+        if (t != null) {
+            t.anotar(EventoTraza.DESCARTE, -1, (int) n);
         }
+        descartados.addAndGet(n);
+        contarTerminados(n);
     }
 
-      /**
-     * Retorna el tamaño de la lista de pedidos en tránsito, descontando los pedidos de tipo "poison".
-     * @return cantidad de pedidos despachados (excluyendo poisons).
+    /**
+     * @return pedidos descartados sin llegar a generarse.
      */
-    public int sizeListaTransito() {
-        synchronized (lockTransito) {
-            int total = listaTransito.size();
-            int poisonCount = 0;
-            for (Pedido p : listaTransito) {
-                if (p.pedidoPoison()) {           
-                    poisonCount++;
-                }
-            }
-            return total - poisonCount;
+    public long getDescartados() {
+        return descartados.get();
+    }
+
+    private void contarTerminado() {
+        contarTerminados(1);
+    }
+
+    private void contarTerminados(long cantidad) {
+        long n = terminados.addAndGet(cantidad);
+        long total = esperados;
+        if (total >= 0 && n >= total) {
+            cerrarEtapas();
         }
     }
 
+    private void cerrarEtapas() {
+        listaPreparacion.cerrar();
+        listaTransito.cerrar();
+        listaEntregados.cerrar();
+        completado.complete(null);
+    }
+
+    /**
+     * Cierra el archivo de pedidos terminados, si lo hay.
+     * @throws IOException si falla la escritura pendiente.
+     */
+    public void cerrarTerminales() throws IOException {
+        if (sumidero != null) {
+            sumidero.close();
+        }
+    }
+
+    /**
+     * Anota que un pedido recién creado entra al circuito; desde este instante se
+     * mide su latencia total.
+     * @param pedido pedido con su casillero ya ocupado.
+     */
+    public void iniciarPedido(Pedido pedido) {
+        latencias.transicion(pedido, EstadoPedido.PREPARACION);
+    }
+
+    /**
+     * Como {@link #iniciarPedido(Pedido)}, y además asigna la clase de servicio del
+     * pedido con su plazo contado desde la entrada a preparación.
+     * @param pedido pedido con su casillero ya ocupado.
+     * @param clase clase de servicio.
+     * @param plazoMs plazo de entrega de la clase, en milisegundos.
+     */
+    public void iniciarPedido(Pedido pedido, ClasePedido clase, long plazoMs) {
+        iniciarPedido(pedido);
+        pedido.setClase(clase, pedido.getMarca(EstadoPedido.PREPARACION) + TimeUnit.MILLISECONDS.toNanos(plazoMs));
+    }
+
+    /**
+     * @return latencias por etapa de los pedidos que pasaron por este registro.
+     */
+    public MetricasLatencia getLatencias() {
+        return latencias;
+    }
+
+    /**
+     * Imprime la cantidad de pedidos en cada estado y las latencias por etapa.
+     */
+    public void print() {
+        System.out.printf("\nCantidad pedidos en tránsito: %d\n", sizeListaTransito());
+        System.out.printf("Cantidad pedidos fallidos: %d\n", sizeListaFallidos());
+        System.out.printf("Cantidad pedidos entregados: %d\n", sizeListaEntregados());
+        System.out.printf("Cantidad pedidos verificados: %d\n", sizeListaVerificados());
+        if (getDescartados() > 0) {
+            System.out.printf("Cantidad pedidos descartados: %d\n", getDescartados());
+        }
+        System.out.printf("\n%s", latencias.reporte());
+    }
+
+    /**
+     * @return cola de la etapa de preparación.
+     */
+    public ColaEtapa getColaPreparacion() {
+        return listaPreparacion;
+    }
+
+    /**
+     * @return cola de la etapa de tránsito.
+     */
+    public ColaEtapa getColaTransito() {
+        return listaTransito;
+    }
+
+    /**
+     * @return cola de la etapa de entregados.
+     */
+    public ColaEtapa getColaEntregados() {
+        return listaEntregados;
+    }
+
+    /**
+     * Retorna las métricas de todas las etapas, en el orden del circuito:
+     * preparación, tránsito, entregados, fallidos y verificados.
+     * @return arreglo de métricas por etapa.
+     */
+    public MetricasEtapa[] getMetricas() {
+        return new MetricasEtapa[] {
+            listaPreparacion.getMetricas(),
+            listaTransito.getMetricas(),
+            listaEntregados.getMetricas(),
+            metricasFallidos,
+            metricasVerificados
+        };
+    }
+
+    /**
+     * Lectura sin locks, pensada para muestreo frecuente.
+     * @param etapa etapa en la que fallaron.
+     * @return fallas registradas en la etapa, se hayan reintentado o no.
+     */
+    public long getFallas(EtapaFalla etapa) {
+        return fallas[etapa.ordinal()].sum();
+    }
+
+    /**
+     * Retorna los locks del registro en el orden del circuito: las colas de
+     * preparación, tránsito y entregados, y las listas de fallidos y verificados.
+     * @return arreglo de locks con sus tiempos de espera.
+     */
+    public LockMedido[] getLocks() {
+        return new LockMedido[] {
+            listaPreparacion.getLock(),
+            listaTransito.getLock(),
+            listaEntregados.getLock(),
+            lockFallidos,
+            lockVerificados
+        };
+    }
+
+    /**
+     * Retorna el tamaño de la lista de pedidos en tránsito.
+     * @return cantidad de pedidos despachados que esperan ser entregados.
+     */
+    public int sizeListaTransito() {
+        return (int) listaTransito.getMetricas().getProfundidad();
+    }
+
     /**
      * Retorna el tamaño de la lista de pedidos en preparación.
      * @return cantidad de pedidos en preparación.
      */
     public int sizeListaPreparacion() {
-        synchronized (lockPreparacion) {
-            return listaPreparacion.size();
-        }
+        return (int) listaPreparacion.getMetricas().getProfundidad();
     }
 
     /**
@@ -192,9 +537,7 @@ public class RegistrodePedidos {
      * @return cantidad de pedidos fallidos.
      */
     public int sizeListaFallidos() {
-        synchronized (lockFallidos) {
-            return listaFallidos.size();
-        }
+        return (int) metricasFallidos.getProfundidad();
     }
 
     /**
@@ -202,26 +545,15 @@ public class RegistrodePedidos {
      * @return cantidad de pedidos entregados.
      */
     public int sizeListaEntregados() {
-        synchronized (lockEntregados) {
-            int total = listaEntregados.size();
-            int poisonCount = 0;
-            for (Pedido p : listaEntregados) {
-                if (p.pedidoPoison()) {           
-                    poisonCount++;
-                }
-            }
-            return total - poisonCount;
-        }
+        return (int) listaEntregados.getMetricas().getProfundidad();
     }
 
     /**
-     * Retorna el tamaño de la lista de pedidos entregados.
-     * @return cantidad de pedidos entregados.
+     * Retorna el tamaño de la lista de pedidos verificados.
+     * @return cantidad de pedidos verificados.
      */
     public int sizeListaVerificados() {
-        synchronized (lockEntregados) {
-            return listaVerificados.size();
-        }
+        return (int) metricasVerificados.getProfundidad();
     }
     
 }
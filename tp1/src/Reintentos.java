@@ -0,0 +1,277 @@
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Etapa de reintentos: los pedidos que fallan vuelven a entrar al circuito tras una
+ * espera que crece exponencialmente con cada intento, hasta un máximo de intentos.
+ *
+ * Los reintentos pendientes esperan en una {@link DelayQueue} que atiende un único
+ * hilo, así que miles de pedidos en espera no ocupan hilos. Al vencer su espera, el
+ * pedido vuelve por el estado que indica su {@link EtapaFalla}:
+ * <ul>
+ *   <li>falla de despacho: el casillero quedó fuera de servicio, así que se le busca
+ *       otro sin bloquear y vuelve a preparación; si no hay casilleros libres, se
+ *       vuelve a probar tras la espera base, sin gastar un intento;</li>
+ *   <li>falla de entrega o de verificación: vuelve a tránsito.</li>
+ * </ul>
+ *
+ * Un pedido en espera de reintento no cuenta como terminado, así que el registro no
+ * se completa hasta que se reintenta o agota sus intentos. La espera de cada intento
+ * es la mitad fija y la mitad al azar de {@code base * 2^(intento-1)}, acotada por el
+ * máximo, para que los pedidos que fallaron juntos no vuelvan todos a la vez.
+ */
+public class Reintentos implements Runnable {
+    private static final EtapaFalla[] ETAPAS = EtapaFalla.values();
+
+    private final RegistrodePedidos registro;
+    private final SistemaAlmacenamiento sistema;
+    private final int maxIntentos;
+    private final long esperaBaseMs;
+    private final long esperaMaxMs;
+
+    private final DelayQueue<Reintento> pendientes = new DelayQueue<>();
+    private volatile boolean cerrado;
+    private volatile Thread hilo;
+
+    private final LongAdder[] programados = new LongAdder[ETAPAS.length];
+    private final LongAdder recuperados = new LongAdder();
+    private final LongAdder agotados = new LongAdder();
+    private final LongAdder reasignados = new LongAdder();
+    private final LongAdder esperasCasillero = new LongAdder();
+
+    /** Pedido en espera de reintento; vence en un instante de {@code System.nanoTime}. */
+    private static class Reintento implements Delayed {
+        final Pedido pedido;
+        final EtapaFalla etapa;
+        final long vence;
+
+        Reintento(Pedido pedido, EtapaFalla etapa, long esperaMs) {
+            this.pedido = pedido;
+            this.etapa = etapa;
+            this.vence = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(esperaMs);
+        }
+
+        @Override
+        public long getDelay(TimeUnit unidad) {
+            return unidad.convert(vence - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed otro) {
+            return Long.compare(vence, ((Reintento) otro).vence);
+        }
+    }
+
+    /**
+     * Constructor.
+     * @param registro registro al que vuelven los pedidos reintentados.
+     * @param sistema sistema donde los pedidos que fallaron en el despacho buscan otro casillero.
+     * @param maxIntentos reintentos permitidos por pedido; 0 para no reintentar.
+     * @param esperaBaseMs espera antes del primer reintento, en milisegundos.
+     * @param esperaMaxMs espera máxima entre reintentos, en milisegundos.
+     */
+    public Reintentos(RegistrodePedidos registro, SistemaAlmacenamiento sistema, int maxIntentos,
+                      long esperaBaseMs, long esperaMaxMs) {
+        this.registro = registro;
+        this.sistema = sistema;
+        this.maxIntentos = maxIntentos;
+        this.esperaBaseMs = esperaBaseMs;
+        this.esperaMaxMs = esperaMaxMs;
+        for (int i = 0; i < programados.length; i++) {
+            programados[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Constructor con los parámetros de reintento del escenario.
+     * @param registro registro al que vuelven los pedidos reintentados.
+     * @param sistema sistema donde los pedidos que fallaron en el despacho buscan otro casillero.
+     * @param cfg escenario.
+     */
+    public Reintentos(RegistrodePedidos registro, SistemaAlmacenamiento sistema, ConfiguracionEscenario cfg) {
+        this(registro, sistema, cfg.getMaxReintentos(), cfg.getEsperaBaseReintentoMs(), cfg.getEsperaMaxReintentoMs());
+    }
+
+    /**
+     * @param intentos reintentos que ya hizo el pedido.
+     * @return true si al pedido le queda algún reintento.
+     */
+    public boolean puedeReintentar(int intentos) {
+        return intentos < maxIntentos && !sistema.isAgotado();
+    }
+
+    /**
+     * Sortea la espera de un reintento.
+     * @param intento número de reintento, desde 1.
+     * @return espera en milisegundos.
+     */
+    public long demora(int intento) {
+        long espera = esperaBaseMs << Math.min(intento - 1, 30);
+        if (espera <= 0 || espera > esperaMaxMs) {
+            espera = esperaMaxMs;
+        }
+        long mitad = espera / 2;
+        return mitad + FuenteAleatoria.actual().nextLong(espera - mitad + 1);
+    }
+
+    /**
+     * Programa el reintento de un pedido que falló, si le quedan intentos.
+     * @param pedido pedido que falló.
+     * @param etapa etapa en la que falló.
+     * @return true si se programó; false si agotó sus intentos.
+     */
+    public boolean programar(Pedido pedido, EtapaFalla etapa) {
+        if (cerrado || !puedeReintentar(pedido.getIntentos())) {
+            contarAgotado();
+            return false;
+        }
+        int intento = pedido.sumarIntento();
+        contarProgramado(etapa);
+        pendientes.add(new Reintento(pedido, etapa, demora(intento)));
+        return true;
+    }
+
+    /**
+     * Atiende los reintentos a medida que vencen, hasta que se cierra.
+     */
+    @Override
+    public void run() {
+        hilo = Thread.currentThread();
+        while (!cerrado) {
+            Reintento r;
+            try {
+                r = pendientes.take();
+            } catch (InterruptedException e) {
+                // cerrar() interrumpe al hilo para que deje de esperar
+                continue;
+            }
+            reingresar(r);
+        }
+    }
+
+    private void reingresar(Reintento r) {
+        Pedido pedido = r.pedido;
+        if (r.etapa.getDestino() == EstadoPedido.PREPARACION) {
+            int nro = sistema.intentarOcuparNumero();
+            if (nro < 0) {
+                if (sistema.isAgotado()) {
+                    contarAgotado();
+                    registro.fallarDefinitivo(pedido);
+                } else {
+                    esperasCasillero.increment();
+                    pendientes.add(new Reintento(pedido, r.etapa, esperaBaseMs));
+                }
+                return;
+            }
+            pedido.setCasillero(nro);
+            TrazaEjecucion traza = registro.getTraza();
+            if (traza != null) {
+                traza.anotar(EventoTraza.OCUPAR, pedido.id, nro);
+            }
+            reasignados.increment();
+        }
+        registro.reingresar(pedido, r.etapa.getDestino());
+    }
+
+    /**
+     * Deja de atender reintentos; el hilo sale enseguida. Se llama cuando terminaron
+     * todos los pedidos, así que no queda ninguno en espera.
+     */
+    public void cerrar() {
+        cerrado = true;
+        Thread h = hilo;
+        if (h != null) {
+            h.interrupt();
+        }
+    }
+
+    /** @param etapa etapa en la que falló el pedido que se reintenta. */
+    public void contarProgramado(EtapaFalla etapa) {
+        programados[etapa.ordinal()].increment();
+    }
+
+    /** Anota un pedido verificado después de al menos un reintento. */
+    public void contarRecuperado() {
+        recuperados.increment();
+    }
+
+    /** Anota un pedido que falló sin reintentos disponibles. */
+    public void contarAgotado() {
+        agotados.increment();
+    }
+
+    /** Anota un casillero nuevo para un pedido que falló en el despacho. */
+    public void contarReasignado() {
+        reasignados.increment();
+    }
+
+    /** Anota un reintento que no encontró casillero libre y se pospuso. */
+    public void contarEsperaCasillero() {
+        esperasCasillero.increment();
+    }
+
+    /**
+     * @param etapa etapa de la falla.
+     * @return reintentos programados por fallas en esa etapa.
+     */
+    public long getProgramados(EtapaFalla etapa) {
+        return programados[etapa.ordinal()].sum();
+    }
+
+    /** @return reintentos programados en total. */
+    public long getProgramados() {
+        long total = 0;
+        for (LongAdder p : programados) {
+            total += p.sum();
+        }
+        return total;
+    }
+
+    /** @return pedidos verificados después de al menos un reintento. */
+    public long getRecuperados() {
+        return recuperados.sum();
+    }
+
+    /** @return pedidos que fallaron sin reintentos disponibles. */
+    public long getAgotados() {
+        return agotados.sum();
+    }
+
+    /** @return casilleros nuevos ocupados por pedidos que fallaron en el despacho. */
+    public long getReasignados() {
+        return reasignados.sum();
+    }
+
+    /** @return pedidos en espera de reintento en este momento. */
+    public int getEnEspera() {
+        return pendientes.size();
+    }
+
+    /** @return espera base antes del primer reintento, en milisegundos. */
+    public long getEsperaBaseMs() {
+        return esperaBaseMs;
+    }
+
+    /**
+     * Resume los reintentos y su efecto en el rendimiento y en la ocupación de casilleros.
+     * @param ms milisegundos transcurridos (reales o virtuales).
+     * @param verificados pedidos verificados.
+     * @param ocupaciones ocupaciones de casilleros en total (suma de {@code Contador}).
+     * @return dos líneas de resumen.
+     */
+    public String resumen(long ms, long verificados, long ocupaciones) {
+        double segundos = Math.max(ms, 1) / 1000.0;
+        long recuperadosTotal = getRecuperados();
+        return String.format("Reintentos: %d programados (despacho %d, entrega %d, verificación %d) | en espera %d"
+                        + " | recuperados %d (%.1f%% de los verificados) | agotados %d%n"
+                        + "Efecto: %.1f verificados/s, %.1f/s gracias a reintentos | casilleros reasignados %d"
+                        + " (%.1f%% de las ocupaciones) | esperas por casillero %d%n",
+                getProgramados(), getProgramados(EtapaFalla.DESPACHO), getProgramados(EtapaFalla.ENTREGA),
+                getProgramados(EtapaFalla.VERIFICACION), getEnEspera(),
+                recuperadosTotal, verificados == 0 ? 0 : 100.0 * recuperadosTotal / verificados, getAgotados(),
+                verificados / segundos, recuperadosTotal / segundos, getReasignados(),
+                ocupaciones == 0 ? 0 : 100.0 * getReasignados() / ocupaciones, esperasCasillero.sum());
+    }
+}
@@ -0,0 +1,38 @@
+import java.util.random.RandomGenerator;
+
+/**
+ * Clase Reparacion que simula el rol de técnico.
+ * Toma casilleros fuera de servicio de la cola de averiados, tarda el tiempo de
+ * reparación sorteado (el MTTR del escenario) y los devuelve a la grilla.
+ */
+public class Reparacion implements Runnable {
+    private SistemaAlmacenamiento sistema;
+    private ConfiguracionEscenario configuracion;
+
+    /**
+     * Constructor.
+     * @param sistema instancia del sistema de almacenamiento.
+     * @param configuracion escenario con los tiempos de reparación.
+     */
+    public Reparacion(SistemaAlmacenamiento sistema, ConfiguracionEscenario configuracion) {
+        this.sistema = sistema;
+        this.configuracion = configuracion;
+    }
+
+    /**
+     * Ejecuta el hilo de reparación hasta que se cierra la salud de los casilleros,
+     * es decir, hasta que terminaron todos los pedidos.
+     */
+    @Override
+    public void run() {
+        SaludCasilleros salud = sistema.getSalud();
+        RandomGenerator rnd = FuenteAleatoria.actual();
+        int nro;
+        while ((nro = salud.tomarAveriado()) >= 0) {
+            if (!salud.esperarReparacion(configuracion.getEsperaReparacion().sortear(rnd))) {
+                return;
+            }
+            sistema.repararCasillero(nro);
+        }
+    }
+}
@@ -0,0 +1,245 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reproduce una {@link TrazaEjecucion}: repite sobre un {@link SistemaAlmacenamiento}
+ * y un {@link RegistrodePedidos} nuevos, en un solo hilo y sin esperas, las mismas
+ * decisiones de la corrida original y en el mismo orden. Cada pedido ocupa el mismo
+ * casillero, falla en la misma etapa y pasa por las colas en el mismo orden, así que
+ * una corrida lenta o trabada se puede repetir todas las veces que haga falta, por
+ * ejemplo bajo un profiler.
+ *
+ * Como las colas de la reproducción no eligen, cada paso retira de su cola el pedido
+ * exacto que indica la traza. Los pasos que no se pueden repetir (ocupar un casillero
+ * que no está libre, retirar un pedido que no está en su cola) se cuentan como
+ * inconsistencias.
+ *
+ * Uso: java ReproductorTraza traza.bin [repeticiones]
+ */
+public class ReproductorTraza {
+    private static final EstadoPedido[] ESTADOS = EstadoPedido.values();
+    private static final ClasePedido[] CLASES = ClasePedido.values();
+    private static final EtapaFalla[] FALLAS = EtapaFalla.values();
+
+    private final ByteBuffer datos;
+    private final int casilleros;
+    private final int franjas;
+    private final PoliticaAsignacion politica;
+    private final int pedidos;
+    private final int capacidadEtapa;
+    private final long registros;
+
+    private SistemaAlmacenamiento sistema;
+    private RegistrodePedidos registro;
+    private long inconsistencias;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Uso: java ReproductorTraza traza.bin [repeticiones]");
+            return;
+        }
+        int repeticiones = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+        RegistroEventos.instalar(new RegistroEventos(1 << 10, PoliticaDesborde.DESCARTAR, 1024, System.out));
+        ReproductorTraza reproductor = new ReproductorTraza(Paths.get(args[0]));
+        System.out.printf("Traza: %d eventos | %d casilleros en %d franjas (%s) | %d pedidos%n",
+                reproductor.registros, reproductor.casilleros, reproductor.franjas, reproductor.politica,
+                reproductor.pedidos);
+        for (int i = 1; i <= repeticiones; i++) {
+            long inicio = System.nanoTime();
+            reproductor.reproducir();
+            double segundos = (System.nanoTime() - inicio) / 1e9;
+            System.out.printf("Repetición %d: %.3f ms (%.0f eventos/s)%n", i, segundos * 1e3,
+                    reproductor.registros / segundos);
+        }
+        System.out.print(reproductor.resumen());
+        RegistroEventos.getInstancia().cerrar();
+    }
+
+    /**
+     * Abre una traza y lee su cabecera.
+     * @param ruta archivo de la traza.
+     * @throws IOException si el archivo no se puede leer o no es una traza.
+     */
+    public ReproductorTraza(Path ruta) throws IOException {
+        try (FileChannel canal = FileChannel.open(ruta, StandardOpenOption.READ)) {
+            MappedByteBuffer mapa = canal.map(FileChannel.MapMode.READ_ONLY, 0, canal.size());
+            mapa.order(ByteOrder.LITTLE_ENDIAN);
+            if (mapa.remaining() < TrazaEjecucion.CABECERA || mapa.getInt() != TrazaEjecucion.MAGIA) {
+                throw new IOException(ruta + " no es una traza");
+            }
+            int version = mapa.getInt();
+            int tamRegistro = mapa.getInt();
+            if (version != TrazaEjecucion.VERSION || tamRegistro != TrazaEjecucion.TAM_REGISTRO) {
+                throw new IOException("Versión de traza no soportada: " + version);
+            }
+            casilleros = mapa.getInt();
+            franjas = mapa.getInt();
+            politica = PoliticaAsignacion.values()[mapa.getInt()];
+            pedidos = mapa.getInt();
+            capacidadEtapa = mapa.getInt();
+            long anotados = mapa.getLong();
+            long enArchivo = (canal.size() - TrazaEjecucion.CABECERA) / TrazaEjecucion.TAM_REGISTRO;
+            // Una traza que no se cerró no tiene la cantidad en la cabecera: se usa lo que llegó al archivo.
+            registros = anotados > 0 ? Math.min(anotados, enArchivo) : enArchivo;
+            datos = mapa;
+        }
+    }
+
+    /**
+     * Repite la traza completa sobre un sistema y un registro nuevos.
+     */
+    public void reproducir() {
+        sistema = new SistemaAlmacenamiento(pedidos, casilleros, politica, franjas,
+                new SaludCasilleros(casilleros, SaludCasilleros.UMBRAL_POR_DEFECTO,
+                        SaludCasilleros.MIN_FALLAS_POR_DEFECTO, true));
+        sistema.setLogActivo(false);
+        registro = new RegistrodePedidos(capacidadEtapa, OrdenSeleccion.FIFO, false, null);
+        registro.completarCon(pedidos);
+        inconsistencias = 0;
+        Pedido[] porId = new Pedido[pedidos + 1];
+
+        ByteBuffer b = datos.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        b.position(TrazaEjecucion.CABECERA);
+        for (long r = 0; r < registros; r++) {
+            EventoTraza evento = TrazaEjecucion.evento(b.get());
+            int id = b.getInt();
+            int dato = b.getInt();
+            Pedido pedido = id >= 0 && id < porId.length ? porId[id] : null;
+            switch (evento) {
+                case OCUPAR:
+                    if (!sistema.ocuparNumero(dato)) {
+                        inconsistencias++;
+                    }
+                    if (pedido == null && id >= 0 && id < porId.length) {
+                        porId[id] = new Pedido(dato, id);
+                    } else if (pedido != null) {
+                        pedido.setCasillero(dato);
+                    }
+                    break;
+                case LIBERAR:
+                    sistema.desocuparCasillero(dato);
+                    break;
+                case AVERIAR:
+                    sistema.setCasilleroFueraServicio(dato);
+                    break;
+                case REPARAR:
+                    sistema.repararCasillero(dato);
+                    break;
+                case DESCARTE:
+                    registro.descartarPedidos(dato);
+                    break;
+                default:
+                    if (pedido == null) {
+                        inconsistencias++;
+                    } else {
+                        paso(evento, pedido, dato);
+                    }
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Repite un paso de un pedido entre etapas, retirándolo de la cola en la que estaba.
+     */
+    private void paso(EventoTraza evento, Pedido pedido, int dato) {
+        switch (evento) {
+            case PREPARACION:
+                pedido.setClase(CLASES[dato], Long.MAX_VALUE);
+                registro.iniciarPedido(pedido);
+                registro.addListaPreparacion(pedido);
+                break;
+            case TRANSITO:
+                quitar(registro.getColaPreparacion(), pedido);
+                registro.addListaTransito(pedido);
+                break;
+            case ENTREGADO:
+                quitar(registro.getColaTransito(), pedido);
+                registro.addListaEntregados(pedido);
+                break;
+            case VERIFICADO:
+                quitar(registro.getColaEntregados(), pedido);
+                registro.addListaVerificados(pedido);
+                break;
+            case FALLA:
+                quitar(origen(FALLAS[dato]), pedido);
+                break;
+            case FALLIDO:
+                registro.fallarDefinitivo(pedido);
+                break;
+            case REINGRESO:
+                registro.reingresar(pedido, ESTADOS[dato]);
+                break;
+            default:
+                inconsistencias++;
+                break;
+        }
+    }
+
+    /**
+     * @return cola de la que toma sus pedidos la etapa que falló.
+     */
+    private ColaEtapa origen(EtapaFalla etapa) {
+        switch (etapa) {
+            case DESPACHO:
+                return registro.getColaPreparacion();
+            case ENTREGA:
+                return registro.getColaTransito();
+            default:
+                return registro.getColaEntregados();
+        }
+    }
+
+    private void quitar(ColaEtapa cola, Pedido pedido) {
+        if (!cola.quitar(pedido)) {
+            inconsistencias++;
+        }
+    }
+
+    /**
+     * @return eventos de la traza.
+     */
+    public long getRegistros() {
+        return registros;
+    }
+
+    /**
+     * @return pasos de la última reproducción que no se pudieron repetir.
+     */
+    public long getInconsistencias() {
+        return inconsistencias;
+    }
+
+    /**
+     * @return sistema de la última reproducción.
+     */
+    public SistemaAlmacenamiento getSistema() {
+        return sistema;
+    }
+
+    /**
+     * @return registro de la última reproducción.
+     */
+    public RegistrodePedidos getRegistro() {
+        return registro;
+    }
+
+    /**
+     * @return estado final de la última reproducción.
+     */
+    public String resumen() {
+        return String.format("Resultado: verificados %d | fallidos %d | descartados %d | en circuito %d/%d/%d"
+                        + " | casilleros ocupados %d, fuera de servicio %d | %s | inconsistencias %d%n",
+                registro.sizeListaVerificados(), registro.sizeListaFallidos(), registro.getDescartados(),
+                registro.sizeListaPreparacion(), registro.sizeListaTransito(), registro.sizeListaEntregados(),
+                sistema.getCantidadOcupados(), sistema.getCantidadFueraServicio(),
+                registro.getCompletado().isDone() ? "completo" : "incompleto (" + registro.getPendientes() + " pendientes)",
+                inconsistencias);
+    }
+}
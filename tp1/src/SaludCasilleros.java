@@ -0,0 +1,254 @@
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Salud de los casilleros: historial de fallas de cada uno y cola de casilleros
+ * averiados que atienden los hilos de {@link Reparacion}.
+ *
+ * Un casillero cuyo historial supera el umbral de fallas se considera degradado:
+ * al liberarse vuelve al índice de degradados de su franja, que solo se usa cuando
+ * la franja no tiene casilleros sanos (ver {@link FranjaCasilleros}). El historial
+ * se conserva tras la reparación, así que el casillero sigue funcionando pero recibe
+ * pedidos solo si hace falta.
+ *
+ * Sin reparación, los casilleros averiados no se encolan y quedan fuera de servicio
+ * para siempre, como en la simulación original. El tiempo fuera de servicio de cada
+ * reparación se mide con el reloj instalado (real, o el virtual de la simulación discreta).
+ */
+public class SaludCasilleros {
+    /** Porcentaje de fallas sobre usos a partir del cual un casillero está degradado. */
+    public static final double UMBRAL_POR_DEFECTO = 50;
+    /** Fallas mínimas para considerar degradado a un casillero. */
+    public static final int MIN_FALLAS_POR_DEFECTO = 2;
+
+    private final double umbralDegradado;
+    private final int minFallas;
+    private final boolean conReparacion;
+
+    // Lo escribe el hilo que averió el casillero y lo lee el que lo repara; la cola
+    // de averiados (con su lock) ordena ambos accesos.
+    private final long[] averiadoDesde;
+    private final ArrayDeque<Integer> averiados = new ArrayDeque<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition hayAveriados = lock.newCondition();
+    private boolean cerrada;
+
+    private final LongAdder averias = new LongAdder();
+    private final LongAdder reparaciones = new LongAdder();
+    private final LongAdder asignacionesDegradadas = new LongAdder();
+    private final Histograma tiempoFuera = new Histograma();
+    private volatile LongSupplier reloj = System::nanoTime;
+
+    /**
+     * Constructor sin reparación y con los umbrales por defecto.
+     * @param nCasilleros cantidad de casilleros de la grilla.
+     */
+    public SaludCasilleros(int nCasilleros) {
+        this(nCasilleros, UMBRAL_POR_DEFECTO, MIN_FALLAS_POR_DEFECTO, false);
+    }
+
+    /**
+     * Constructor.
+     * @param nCasilleros cantidad de casilleros de la grilla.
+     * @param umbralDegradado porcentaje de fallas sobre usos que degrada a un casillero.
+     * @param minFallas fallas mínimas para degradar a un casillero.
+     * @param conReparacion si es true, los casilleros averiados se encolan para repararse.
+     */
+    public SaludCasilleros(int nCasilleros, double umbralDegradado, int minFallas, boolean conReparacion) {
+        this.umbralDegradado = umbralDegradado;
+        this.minFallas = minFallas;
+        this.conReparacion = conReparacion;
+        this.averiadoDesde = new long[nCasilleros];
+    }
+
+    /**
+     * Reemplaza el reloj con el que se mide el tiempo fuera de servicio.
+     * @param reloj fuente de instantes en nanosegundos.
+     */
+    public void setReloj(LongSupplier reloj) {
+        this.reloj = reloj;
+    }
+
+    /**
+     * @return true si los casilleros averiados se reparan.
+     */
+    public boolean conReparacion() {
+        return conReparacion;
+    }
+
+    /**
+     * @param c casillero a evaluar.
+     * @return true si el historial de fallas del casillero supera el umbral.
+     */
+    public boolean esDegradado(Casillero c) {
+        int fallas = c.Fallas;
+        return fallas >= minFallas && fallas * 100.0 >= umbralDegradado * c.Contador;
+    }
+
+    /**
+     * Anota que un casillero quedó fuera de servicio y, si hay reparación, lo encola.
+     * @param nro número de casillero.
+     */
+    public void averiar(int nro) {
+        averias.increment();
+        if (!conReparacion) {
+            return;
+        }
+        lock.lock();
+        try {
+            averiadoDesde[nro] = reloj.getAsLong();
+            averiados.add(nro);
+            hayAveriados.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Retira el próximo casillero a reparar. Espera si no hay ninguno.
+     * @return número de casillero, o -1 si la salud se cerró.
+     */
+    public int tomarAveriado() {
+        lock.lock();
+        try {
+            while (averiados.isEmpty()) {
+                if (cerrada) {
+                    return -1;
+                }
+                try {
+                    hayAveriados.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return -1;
+                }
+            }
+            return averiados.poll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Variante no bloqueante de {@link #tomarAveriado()}.
+     * @return número de casillero, o -1 si no hay averiados en espera.
+     */
+    public int intentarTomarAveriado() {
+        lock.lock();
+        try {
+            Integer nro = averiados.poll();
+            return nro == null ? -1 : nro;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Espera el tiempo de una reparación, o menos si la salud se cierra antes.
+     * @param ms milisegundos de reparación.
+     * @return true si se cumplió la espera; false si la salud se cerró.
+     */
+    public boolean esperarReparacion(long ms) {
+        long restante = TimeUnit.MILLISECONDS.toNanos(ms);
+        lock.lock();
+        try {
+            while (!cerrada && restante > 0) {
+                try {
+                    restante = hayAveriados.awaitNanos(restante);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            return !cerrada;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Anota que un casillero volvió a funcionar y registra cuánto estuvo fuera de servicio.
+     * @param nro número de casillero.
+     */
+    public void reparado(int nro) {
+        reparaciones.increment();
+        tiempoFuera.registrar(reloj.getAsLong() - averiadoDesde[nro]);
+    }
+
+    /**
+     * Anota que un pedido recibió un casillero degradado por falta de casilleros sanos.
+     */
+    public void contarAsignacionDegradada() {
+        asignacionesDegradadas.increment();
+    }
+
+    /**
+     * Cierra la cola de averiados: los reparadores en espera salen enseguida.
+     */
+    public void cerrar() {
+        lock.lock();
+        try {
+            cerrada = true;
+            hayAveriados.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return casilleros que quedaron fuera de servicio desde el comienzo.
+     */
+    public long getAverias() {
+        return averias.sum();
+    }
+
+    /**
+     * @return reparaciones terminadas.
+     */
+    public long getReparaciones() {
+        return reparaciones.sum();
+    }
+
+    /**
+     * @return pedidos que recibieron un casillero degradado.
+     */
+    public long getAsignacionesDegradadas() {
+        return asignacionesDegradadas.sum();
+    }
+
+    /**
+     * @return casilleros averiados que esperan un reparador.
+     */
+    public int getEnEspera() {
+        lock.lock();
+        try {
+            return averiados.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return tiempo fuera de servicio de cada reparación, en nanosegundos.
+     */
+    public Histograma getTiempoFuera() {
+        return tiempoFuera;
+    }
+
+    /**
+     * @return resumen de averías, reparaciones y tiempo fuera de servicio.
+     */
+    public String resumen() {
+        if (!conReparacion) {
+            return String.format("Salud: %d averías sin reparación | %d asignaciones a degradados%n",
+                    getAverias(), getAsignacionesDegradadas());
+        }
+        return String.format("Salud: %d averías | %d reparadas | %d en espera | %d asignaciones a degradados"
+                        + " | fuera de servicio p50 %.1f ms, p99 %.1f ms, máx %.1f ms%n",
+                getAverias(), getReparaciones(), getEnEspera(), getAsignacionesDegradadas(),
+                tiempoFuera.percentil(50) / 1e6, tiempoFuera.percentil(99) / 1e6, tiempoFuera.getMaximo() / 1e6);
+    }
+}
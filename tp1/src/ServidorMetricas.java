@@ -0,0 +1,216 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Publica el estado de la corrida en {@code /metrics}, en el formato de texto de
+ * Prometheus, con el servidor HTTP que trae el JDK.
+ *
+ * Por almacén se publican la profundidad, las entradas y las salidas de cada etapa,
+ * las fallas por etapa, los casilleros ocupados, libres y fuera de servicio, las
+ * esperas por los locks de las franjas de casilleros, de las colas y de las listas de
+ * terminados, y la latencia total. Las tasas de entrada y salida las calcula
+ * Prometheus con {@code rate()} sobre los contadores.
+ *
+ * Todo se lee de contadores y de histogramas sin lock, así que una consulta no
+ * frena a los trabajadores. Las respuestas las atiende un único hilo del servidor,
+ * aparte de los del circuito.
+ */
+public class ServidorMetricas implements Closeable {
+    private static final String TIPO_CONTENIDO = "text/plain; version=0.0.4; charset=utf-8";
+    private static final double[] CUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private final HttpServer servidor;
+    private final SistemaAlmacenamiento[] sistemas;
+    private final RegistrodePedidos[] registros;
+
+    /**
+     * Abre el puerto y empieza a atender consultas.
+     * @param puerto puerto HTTP.
+     * @param sistemas grilla de cada almacén.
+     * @param registros registro de pedidos de cada almacén, en el mismo orden.
+     * @throws IOException si no se puede abrir el puerto.
+     */
+    public ServidorMetricas(int puerto, SistemaAlmacenamiento[] sistemas, RegistrodePedidos[] registros)
+            throws IOException {
+        this.sistemas = sistemas;
+        this.registros = registros;
+        servidor = HttpServer.create(new InetSocketAddress(puerto), 0);
+        servidor.createContext("/metrics", this::responder);
+        servidor.start();
+    }
+
+    private void responder(HttpExchange intercambio) throws IOException {
+        try (intercambio) {
+            if (!"GET".equals(intercambio.getRequestMethod())) {
+                intercambio.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] cuerpo = exponer().getBytes(StandardCharsets.UTF_8);
+            intercambio.getResponseHeaders().set("Content-Type", TIPO_CONTENIDO);
+            intercambio.sendResponseHeaders(200, cuerpo.length);
+            try (OutputStream salida = intercambio.getResponseBody()) {
+                salida.write(cuerpo);
+            }
+        }
+    }
+
+    /**
+     * @return todas las métricas, en el formato de texto de Prometheus.
+     */
+    public String exponer() {
+        StringBuilder sb = new StringBuilder(4096);
+
+        familia(sb, "almacen_etapa_pedidos", "gauge", "Pedidos en cada etapa en este momento.");
+        for (int a = 0; a < registros.length; a++) {
+            for (MetricasEtapa m : registros[a].getMetricas()) {
+                muestra(sb, "almacen_etapa_pedidos", a, "etapa", m.getNombre(), m.getProfundidad());
+            }
+        }
+        familia(sb, "almacen_etapa_entradas_total", "counter", "Pedidos que entraron a cada etapa.");
+        for (int a = 0; a < registros.length; a++) {
+            for (MetricasEtapa m : registros[a].getMetricas()) {
+                muestra(sb, "almacen_etapa_entradas_total", a, "etapa", m.getNombre(), m.getEncolados());
+            }
+        }
+        familia(sb, "almacen_etapa_salidas_total", "counter", "Pedidos que salieron de cada etapa.");
+        for (int a = 0; a < registros.length; a++) {
+            for (MetricasEtapa m : registros[a].getMetricas()) {
+                muestra(sb, "almacen_etapa_salidas_total", a, "etapa", m.getNombre(), m.getDesencolados());
+            }
+        }
+        familia(sb, "almacen_fallas_total", "counter", "Fallas de pedidos en cada etapa, reintentadas o no.");
+        for (int a = 0; a < registros.length; a++) {
+            for (EtapaFalla etapa : EtapaFalla.values()) {
+                muestra(sb, "almacen_fallas_total", a, "etapa", etapa.name().toLowerCase(),
+                        registros[a].getFallas(etapa));
+            }
+        }
+        familia(sb, "almacen_pedidos_descartados_total", "counter", "Pedidos descartados sin casillero.");
+        for (int a = 0; a < registros.length; a++) {
+            muestra(sb, "almacen_pedidos_descartados_total", a, null, null, registros[a].getDescartados());
+        }
+
+        familia(sb, "almacen_casilleros", "gauge", "Casilleros por estado.");
+        for (int a = 0; a < sistemas.length; a++) {
+            SistemaAlmacenamiento s = sistemas[a];
+            int ocupados = s.getCantidadOcupados();
+            int fuera = s.getCantidadFueraServicio();
+            muestra(sb, "almacen_casilleros", a, "estado", "ocupado", ocupados);
+            muestra(sb, "almacen_casilleros", a, "estado", "libre", s.getCantidadCasilleros() - ocupados - fuera);
+            muestra(sb, "almacen_casilleros", a, "estado", "fuera_servicio", fuera);
+        }
+        familia(sb, "almacen_casilleros_averias_total", "counter", "Casilleros que quedaron fuera de servicio.");
+        for (int a = 0; a < sistemas.length; a++) {
+            muestra(sb, "almacen_casilleros_averias_total", a, null, null, sistemas[a].getSalud().getAverias());
+        }
+        familia(sb, "almacen_casilleros_reparaciones_total", "counter", "Reparaciones de casilleros terminadas.");
+        for (int a = 0; a < sistemas.length; a++) {
+            muestra(sb, "almacen_casilleros_reparaciones_total", a, null, null,
+                    sistemas[a].getSalud().getReparaciones());
+        }
+
+        familia(sb, "almacen_lock_esperas_total", "counter", "Veces que un hilo encontró el lock tomado.");
+        for (int a = 0; a < sistemas.length; a++) {
+            muestra(sb, "almacen_lock_esperas_total", a, "lock", "casilleros", esperas(sistemas[a].getLocks()));
+            for (LockMedido l : registros[a].getLocks()) {
+                muestra(sb, "almacen_lock_esperas_total", a, "lock", l.getNombre(), l.getEsperas());
+            }
+        }
+        familia(sb, "almacen_lock_espera_segundos_total", "counter", "Tiempo total de espera por el lock.");
+        for (int a = 0; a < sistemas.length; a++) {
+            muestra(sb, "almacen_lock_espera_segundos_total", a, "lock", "casilleros",
+                    esperaNanos(sistemas[a].getLocks()) / 1e9);
+            for (LockMedido l : registros[a].getLocks()) {
+                muestra(sb, "almacen_lock_espera_segundos_total", a, "lock", l.getNombre(),
+                        l.getEsperaNanos() / 1e9);
+            }
+        }
+
+        familia(sb, "almacen_latencia_segundos", "summary", "Latencia total de los pedidos verificados.");
+        for (int a = 0; a < registros.length; a++) {
+            Histograma h = registros[a].getLatencias().getHistograma(EstadoPedido.VERIFICADO);
+            for (double q : CUANTILES) {
+                muestra(sb, "almacen_latencia_segundos", a, "quantile", Double.toString(q),
+                        h.percentil(q * 100) / 1e9);
+            }
+            muestra(sb, "almacen_latencia_segundos_sum", a, null, null, h.getSuma() / 1e9);
+            muestra(sb, "almacen_latencia_segundos_count", a, null, null, h.getCantidad());
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Las franjas de casilleros se publican juntas, como un único lock.
+     */
+    private static long esperas(LockMedido[] locks) {
+        long total = 0;
+        for (LockMedido l : locks) {
+            total += l.getEsperas();
+        }
+        return total;
+    }
+
+    private static long esperaNanos(LockMedido[] locks) {
+        long total = 0;
+        for (LockMedido l : locks) {
+            total += l.getEsperaNanos();
+        }
+        return total;
+    }
+
+    private static void familia(StringBuilder sb, String nombre, String tipo, String ayuda) {
+        sb.append("# HELP ").append(nombre).append(' ').append(ayuda).append('\n');
+        sb.append("# TYPE ").append(nombre).append(' ').append(tipo).append('\n');
+    }
+
+    private static void muestra(StringBuilder sb, String nombre, int almacen, String etiqueta, String valor,
+                                long medida) {
+        etiquetas(sb, nombre, almacen, etiqueta, valor);
+        sb.append(medida).append('\n');
+    }
+
+    private static void muestra(StringBuilder sb, String nombre, int almacen, String etiqueta, String valor,
+                                double medida) {
+        etiquetas(sb, nombre, almacen, etiqueta, valor);
+        sb.append(medida).append('\n');
+    }
+
+    private static void etiquetas(StringBuilder sb, String nombre, int almacen, String etiqueta, String valor) {
+        sb.append(nombre).append("{almacen=\"").append(almacen).append('"');
+        if (etiqueta != null) {
+            sb.append(',').append(etiqueta).append("=\"");
+            for (int i = 0; i < valor.length(); i++) {
+                char c = valor.charAt(i);
+                if (c == '\\' || c == '"') {
+                    sb.append('\\').append(c);
+                } else if (c == '\n') {
+                    sb.append("\\n");
+                } else {
+                    sb.append(c);
+                }
+            }
+            sb.append('"');
+        }
+        sb.append("} ");
+    }
+
+    /**
+     * @return puerto en el que atiende el servidor.
+     */
+    public int getPuerto() {
+        return servidor.getAddress().getPort();
+    }
+
+    /**
+     * Deja de atender consultas y libera el puerto.
+     */
+    @Override
+    public void close() {
+        servidor.stop(0);
+    }
+}
@@ -0,0 +1,421 @@
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+import java.util.random.RandomGenerator;
+
+/**
+ * Motor de simulación por eventos discretos.
+ *
+ * Reproduce el circuito Preparacion → Despacho → Entrega → VerificacionFinal con
+ * los mismos trabajadores, tasas de falla y tiempos de espera del escenario, pero
+ * sin hilos ni {@code Thread.sleep}: un reloj virtual avanza de evento en evento
+ * tomados de una cola de prioridad ({@link ColaEventos}). La ocupación de casilleros se resuelve con el
+ * mismo {@link SistemaAlmacenamiento}, usando sus variantes no bloqueantes.
+ *
+ * Los pedidos no son objetos: viven en un {@link AlmacenPedidos} y las etapas se
+ * pasan handles por {@link ColaHandles}, que informan en las métricas de las colas
+ * de {@link RegistrodePedidos}. Los pedidos terminados solo se cuentan (y se vuelcan
+ * si el registro tiene sumidero), y su handle se reutiliza, así que la memoria no
+ * crece con la cantidad de pedidos simulados.
+ *
+ * Cada trabajador sigue el ciclo de su hilo equivalente: toma un pedido (o un
+ * casillero), lo procesa, lo entrega a la etapa siguiente y "duerme" el tiempo
+ * sorteado. Si tiene que esperar un casillero, un pedido o lugar en la cola
+ * siguiente, queda anotado y se lo despierta cuando el recurso aparece.
+ *
+ * Los reparadores son una etapa más: toman un casillero averiado de la
+ * {@link SaludCasilleros} del sistema, lo tienen el tiempo de reparación sorteado
+ * y lo devuelven a la grilla, despertando a un preparador que esperaba casillero.
+ * Sin reparadores, si la grilla queda entera fuera de servicio, los pedidos que
+ * faltaba generar se descartan, como en el modo en tiempo real.
+ *
+ * Con reintentos, un pedido que falla queda como un evento propio que vence tras la
+ * espera sorteada por {@link Reintentos}; al vencer vuelve a la cola de preparación
+ * (con otro casillero) o a la de tránsito, según dónde falló.
+ */
+public class SimulacionEventos {
+    private static final int PREPARACION  = 0;
+    private static final int DESPACHO     = 1;
+    private static final int ENTREGA      = 2;
+    private static final int VERIFICACION = 3;
+    private static final int REPARACION   = 4;
+    private static final int ETAPAS       = 5;
+    // Eventos de reintento: en lugar de un trabajador llevan el handle del pedido.
+    private static final int REINTENTO_PREPARACION = 5;
+    private static final int REINTENTO_TRANSITO    = 6;
+
+    private final ConfiguracionEscenario cfg;
+    private final double fallaVerificacion;
+    private final SistemaAlmacenamiento sistema;
+    private final RegistrodePedidos registro;
+    private final RandomGenerator rnd = FuenteAleatoria.getInstancia().flujo("SimulacionEventos");
+
+    private final AlmacenPedidos almacen;
+    private final MetricasLatencia latencias;
+    private final SaludCasilleros salud;
+    private final Reintentos reintentos;
+    private final ColaHandles[] colas;
+    private final ConfiguracionEscenario.RangoEspera[] esperas;
+    private final int[][] pendientes;
+    private final ArrayDeque<Integer>[] esperandoEntrada;
+    private final ArrayDeque<Integer>[] esperandoEspacio;
+    private final ArrayDeque<Integer> esperandoCasillero = new ArrayDeque<>();
+
+    private final ColaEventos eventos;
+    private long reloj;
+    private long eventosProcesados;
+    private int pedidosGenerados;
+
+    /**
+     * Constructor.
+     * @param cfg escenario a simular.
+     * @param sistema sistema de casilleros (se desactiva su registro en consola).
+     * @param registro registro de pedidos donde circulan los pedidos.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public SimulacionEventos(ConfiguracionEscenario cfg, SistemaAlmacenamiento sistema, RegistrodePedidos registro) {
+        this.cfg = cfg;
+        // Con controles de verificación, falla si falla alguno; sus esperas no se modelan.
+        this.fallaVerificacion = cfg.getFallaVerificacionEfectiva();
+        this.sistema = sistema;
+        this.registro = registro;
+        sistema.setLogActivo(false);
+        latencias = registro.getLatencias();
+        latencias.setReloj(() -> reloj * 1_000_000L);
+        salud = sistema.getSalud();
+        salud.setReloj(() -> reloj * 1_000_000L);
+        if (cfg.getMaxReintentos() > 0) {
+            reintentos = new Reintentos(registro, sistema, cfg);
+            registro.setReintentos(reintentos);
+        } else {
+            reintentos = null;
+        }
+
+        almacen = new AlmacenPedidos(Math.min(sistema.getCantidadCasilleros(), 1024));
+        ColaEtapa[] colasRegistro = {
+            registro.getColaPreparacion(), registro.getColaTransito(), registro.getColaEntregados()
+        };
+        colas = new ColaHandles[colasRegistro.length];
+        for (int e = 0; e < colas.length; e++) {
+            colas[e] = new ColaHandles(cfg.getCapacidadEtapa(), cfg.getOrdenSeleccion(),
+                    colasRegistro[e].getMetricas(), rnd);
+        }
+        esperas = new ConfiguracionEscenario.RangoEspera[] {
+            cfg.getEsperaPreparacion(), cfg.getEsperaDespacho(), cfg.getEsperaEntrega(), cfg.getEsperaVerificacion(),
+            cfg.getEsperaReparacion()
+        };
+        int[] hilos = {
+            cfg.getHilosPreparacion(), cfg.getHilosDespacho(), cfg.getHilosEntrega(), cfg.getHilosVerificacion(),
+            cfg.getHilosReparacion()
+        };
+        int trabajadores = 0;
+        for (int h : hilos) {
+            trabajadores += h;
+        }
+        eventos = new ColaEventos(2 * trabajadores);
+        pendientes = new int[ETAPAS][];
+        esperandoEntrada = new ArrayDeque[ETAPAS];
+        esperandoEspacio = new ArrayDeque[ETAPAS];
+        for (int e = 0; e < ETAPAS; e++) {
+            pendientes[e] = new int[hilos[e]];
+            Arrays.fill(pendientes[e], -1);
+            esperandoEntrada[e] = new ArrayDeque<>();
+            esperandoEspacio[e] = new ArrayDeque<>();
+            for (int t = 0; t < hilos[e]; t++) {
+                programar(e, t, 0);
+            }
+        }
+    }
+
+    /**
+     * Ejecuta la simulación hasta que terminaron todos los pedidos, o hasta que no
+     * quedan eventos porque todos los trabajadores esperan un recurso que no va a
+     * aparecer (por ejemplo, la grilla entera fuera de servicio sin reparadores).
+     *
+     * Con {@code simulacion.factorTiempo} mayor que cero el reloj virtual se acompasa
+     * con el real (1 = tiempo real, 10 = diez veces más rápido); con cero corre lo
+     * más rápido posible.
+     *
+     * @param muestreo se invoca con el tiempo virtual (ms) en cada período de registro; puede ser null.
+     * @return tiempo virtual total en milisegundos.
+     */
+    public long ejecutar(LongConsumer muestreo) {
+        long periodo = cfg.getPeriodoRegistroMs();
+        long proximaMuestra = 0;
+        double factor = cfg.getFactorTiempo();
+        long inicioReal = System.nanoTime();
+
+        while (!eventos.estaVacia()) {
+            reloj = eventos.getTiempo();
+            int etapa = eventos.getEtapa();
+            int trabajador = eventos.getTrabajador();
+            eventos.quitar();
+            if (muestreo != null) {
+                while (proximaMuestra <= reloj) {
+                    muestreo.accept(proximaMuestra);
+                    proximaMuestra += periodo;
+                }
+            }
+            if (factor > 0) {
+                acompasar(inicioReal, factor);
+            }
+            paso(etapa, trabajador);
+            eventosProcesados++;
+            if (pedidosGenerados < sistema.getTotalPedidos() && sistema.isAgotado()) {
+                descartarRestantes();
+            }
+            if (pedidosGenerados >= sistema.getTotalPedidos() && almacen.getEnCurso() == 0) {
+                break;
+            }
+        }
+        if (muestreo != null) {
+            muestreo.accept(reloj);
+        }
+        return reloj;
+    }
+
+    /**
+     * @return cantidad de eventos procesados.
+     */
+    public long getEventosProcesados() {
+        return eventosProcesados;
+    }
+
+    /**
+     * @return almacén donde viven los pedidos en curso.
+     */
+    public AlmacenPedidos getAlmacen() {
+        return almacen;
+    }
+
+    /**
+     * @return tiempo virtual actual en milisegundos.
+     */
+    public long getReloj() {
+        return reloj;
+    }
+
+    private void acompasar(long inicioReal, double factor) {
+        long objetivo = inicioReal + (long) (reloj * 1_000_000L / factor);
+        long faltante = objetivo - System.nanoTime();
+        if (faltante > 0) {
+            try {
+                Thread.sleep(faltante / 1_000_000L, (int) (faltante % 1_000_000L));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void programar(int etapa, int trabajador, long demora) {
+        eventos.agregar(reloj + demora, etapa, trabajador);
+    }
+
+    private void despertar(ArrayDeque<Integer> esperando, int etapa) {
+        Integer trabajador = esperando.poll();
+        if (trabajador != null) {
+            programar(etapa, trabajador, 0);
+        }
+    }
+
+    /**
+     * Un ciclo de un trabajador: equivale a una vuelta del bucle run() de su hilo.
+     */
+    private void paso(int etapa, int trabajador) {
+        if (etapa >= ETAPAS) {
+            reingresar(etapa, trabajador);
+            return;
+        }
+        if (etapa == REPARACION) {
+            reparar(trabajador);
+            return;
+        }
+        int pendiente = pendientes[etapa][trabajador];
+        if (pendiente >= 0) {
+            pendientes[etapa][trabajador] = -1;
+            salida(etapa, trabajador, pendiente);
+            return;
+        }
+
+        if (etapa == PREPARACION) {
+            if (pedidosGenerados >= sistema.getTotalPedidos()) {
+                return;
+            }
+            int casillero = sistema.intentarOcuparNumero();
+            if (casillero < 0) {
+                esperandoCasillero.add(trabajador);
+                return;
+            }
+            pedidosGenerados++;
+            int h = almacen.crear(pedidosGenerados, casillero);
+            latencias.transicion(almacen, h, EstadoPedido.PREPARACION);
+            ClasePedido clase = cfg.sortearClase(rnd);
+            almacen.setClase(h, clase, almacen.getMarca(h, EstadoPedido.PREPARACION)
+                    + TimeUnit.MILLISECONDS.toNanos(cfg.getPlazoMs(clase)));
+            salida(etapa, trabajador, h);
+            return;
+        }
+
+        int h = colas[etapa - 1].intentarTomar();
+        if (h < 0) {
+            esperandoEntrada[etapa].add(trabajador);
+            return;
+        }
+        despertar(esperandoEspacio[etapa - 1], etapa - 1);
+
+        switch (etapa) {
+            case DESPACHO:
+                if (falla(cfg.getFallaDespacho())) {
+                    sistema.setCasilleroFueraServicio(almacen.getCasillero(h));
+                    despertar(esperandoEntrada[REPARACION], REPARACION);
+                    fallar(etapa, trabajador, h, EtapaFalla.DESPACHO);
+                } else {
+                    sistema.desocuparCasillero(almacen.getCasillero(h));
+                    despertar(esperandoCasillero, PREPARACION);
+                    salida(etapa, trabajador, h);
+                }
+                break;
+            case ENTREGA:
+                if (falla(cfg.getFallaEntrega())) {
+                    fallar(etapa, trabajador, h, EtapaFalla.ENTREGA);
+                } else {
+                    salida(etapa, trabajador, h);
+                }
+                break;
+            default:
+                if (falla(fallaVerificacion)) {
+                    fallar(etapa, trabajador, h, EtapaFalla.VERIFICACION);
+                } else {
+                    latencias.transicion(almacen, h, EstadoPedido.VERIFICADO);
+                    if (reintentos != null && almacen.getIntentos(h) > 0) {
+                        reintentos.contarRecuperado();
+                    }
+                    terminar(h, almacen.getMarca(h, EstadoPedido.VERIFICADO) - almacen.getInicio(h));
+                    programar(etapa, trabajador, esperas[etapa].sortear(rnd));
+                }
+                break;
+        }
+    }
+
+    /**
+     * Un ciclo de un reparador: devuelve a la grilla el casillero que tenía en
+     * reparación, si lo había, y toma el siguiente averiado.
+     */
+    private void reparar(int trabajador) {
+        int nro = pendientes[REPARACION][trabajador];
+        if (nro >= 0) {
+            pendientes[REPARACION][trabajador] = -1;
+            sistema.repararCasillero(nro);
+            despertar(esperandoCasillero, PREPARACION);
+        }
+        nro = salud.intentarTomarAveriado();
+        if (nro < 0) {
+            esperandoEntrada[REPARACION].add(trabajador);
+            return;
+        }
+        pendientes[REPARACION][trabajador] = nro;
+        programar(REPARACION, trabajador, esperas[REPARACION].sortear(rnd));
+    }
+
+    /**
+     * Entrega el pedido a la cola siguiente; si está llena, el trabajador queda esperando lugar.
+     */
+    private void salida(int etapa, int trabajador, int h) {
+        if (!colas[etapa].intentarPoner(h, clave(h))) {
+            pendientes[etapa][trabajador] = h;
+            esperandoEspacio[etapa].add(trabajador);
+            return;
+        }
+        if (etapa == DESPACHO) {
+            latencias.transicion(almacen, h, EstadoPedido.TRANSITO);
+        } else if (etapa == ENTREGA) {
+            latencias.transicion(almacen, h, EstadoPedido.ENTREGADO);
+        }
+        despertar(esperandoEntrada[etapa + 1], etapa + 1);
+        programar(etapa, trabajador, esperas[etapa].sortear(rnd));
+    }
+
+    /**
+     * @return clave de orden del pedido en las colas: su plazo con PLAZO, su clase con PRIORIDAD.
+     */
+    private long clave(int h) {
+        return cfg.getOrdenSeleccion() == OrdenSeleccion.PLAZO ? almacen.getVence(h) : almacen.getClase(h).ordinal();
+    }
+
+    /**
+     * Programa el reintento del pedido que falló o, si no le quedan, lo termina como fallido.
+     */
+    private void fallar(int etapa, int trabajador, int h, EtapaFalla falla) {
+        if (reintentos != null && reintentos.puedeReintentar(almacen.getIntentos(h))) {
+            int intento = almacen.sumarIntento(h);
+            reintentos.contarProgramado(falla);
+            latencias.transicion(almacen, h, EstadoPedido.REINTENTO);
+            int tipo = falla.getDestino() == EstadoPedido.PREPARACION ? REINTENTO_PREPARACION : REINTENTO_TRANSITO;
+            programar(tipo, h, reintentos.demora(intento));
+        } else {
+            if (reintentos != null) {
+                reintentos.contarAgotado();
+            }
+            latencias.transicion(almacen, h, EstadoPedido.FALLIDO);
+            terminar(h, 0);
+        }
+        programar(etapa, trabajador, esperas[etapa].sortear(rnd));
+    }
+
+    /**
+     * Vence el reintento de un pedido: si falló en el despacho le busca otro casillero,
+     * y lo pone en la cola de la que lo toma la etapa que falló. Si no hay casillero o
+     * lugar en la cola, lo vuelve a probar tras la espera base.
+     */
+    private void reingresar(int tipo, int h) {
+        int etapa = tipo == REINTENTO_PREPARACION ? PREPARACION : DESPACHO;
+        if (tipo == REINTENTO_PREPARACION && almacen.getEstado(h) == EstadoPedido.REINTENTO) {
+            int casillero = sistema.intentarOcuparNumero();
+            if (casillero < 0) {
+                if (sistema.isAgotado()) {
+                    reintentos.contarAgotado();
+                    latencias.transicion(almacen, h, EstadoPedido.FALLIDO);
+                    terminar(h, 0);
+                } else {
+                    reintentos.contarEsperaCasillero();
+                    programar(tipo, h, reintentos.getEsperaBaseMs());
+                }
+                return;
+            }
+            almacen.setCasillero(h, casillero);
+            reintentos.contarReasignado();
+            latencias.transicion(almacen, h, EstadoPedido.PREPARACION);
+        }
+        if (!colas[etapa].intentarPoner(h, clave(h))) {
+            programar(tipo, h, reintentos.getEsperaBaseMs());
+            return;
+        }
+        if (tipo == REINTENTO_TRANSITO) {
+            latencias.transicion(almacen, h, EstadoPedido.TRANSITO);
+        }
+        despertar(esperandoEntrada[etapa + 1], etapa + 1);
+    }
+
+    /**
+     * Cuenta el pedido terminado en el registro y recicla su handle.
+     */
+    /**
+     * Con la grilla entera fuera de servicio y sin reparadores no se va a generar
+     * ningún pedido más: se descartan en el registro, como hace {@link Preparacion},
+     * para que verificados, fallidos y descartados sumen el total.
+     */
+    private void descartarRestantes() {
+        registro.descartarPedidos(sistema.getTotalPedidos() - pedidosGenerados);
+        pedidosGenerados = sistema.getTotalPedidos();
+    }
+
+    private void terminar(int h, long latenciaTotal) {
+        registro.contarTerminal(almacen.getId(h), almacen.getCasillero(h), almacen.getEstado(h), latenciaTotal);
+        almacen.liberar(h);
+    }
+
+    private boolean falla(double porcentaje) {
+        return rnd.nextDouble() * 100 < porcentaje;
+    }
+}
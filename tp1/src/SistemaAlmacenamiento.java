@@ -1,109 +1,385 @@
 import java.util.ArrayList;
-import java.util.Date;
-import java.util.Random;
-import java.util.concurrent.locks.Condition;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.Arrays;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.random.RandomGenerator;
 
 /**
  * Modelo de sistema de almacenamiento concurrente mediante casilleros.
  * Un hilo productor ocupa casilleros y un hilo consumidor los desocupa.
+ *
+ * Los casilleros se reparten en franjas con lock propio, y el estado de cada
+ * casillero cambia por CAS. Un semáforo cuenta los casilleros libres: cada
+ * liberación despierta a un único productor en espera.
+ *
+ * Los casilleros que fallan quedan fuera de servicio hasta que un hilo de
+ * {@link Reparacion} los devuelve a la grilla (ver {@link SaludCasilleros}). Sin
+ * reparación, si la grilla entera queda fuera de servicio el sistema se declara
+ * agotado: los productores en espera se despiertan y no reciben casillero.
  */
 public class SistemaAlmacenamiento {
     private ArrayList<Casillero> matriz;
-    private int casillerosVisitados = 0;
-    private Integer cantPedidos;
+    private FranjaCasilleros[] franjas;
+    private AtomicInteger cantPedidos;
     private Integer totalPedidos;
+    private volatile boolean logActivo = true;
+    private final int nCasilleros;
 
     private static final int N_CASILLEROS = 200;
 
-    private ReentrantLock lockCasillero = new ReentrantLock(false);
-    private final Condition casilleroLibre = lockCasillero.newCondition();
-  
+    private final Semaphore casillerosLibres;
+    private final LongAdder ocupados = new LongAdder();
+    private final LongAdder fueraServicio = new LongAdder();
+    private final SaludCasilleros salud;
+    private final AtomicBoolean agotado = new AtomicBoolean();
+    private volatile TrazaEjecucion traza;
+
 
     /**
      * Constructor del sistema.
      * @param totalPedidos cantidad total de pedidos a gestionar en el sistema.
      */
     SistemaAlmacenamiento(Integer totalPedidos) {
-        matriz = new ArrayList<>(N_CASILLEROS);
-        for (int i = 0; i < N_CASILLEROS; i++) {
+        this(totalPedidos, PoliticaAsignacion.ALEATORIA);
+    }
+
+    /**
+     * Constructor del sistema con política de asignación explícita.
+     * @param totalPedidos cantidad total de pedidos a gestionar en el sistema.
+     * @param politica criterio para elegir el casillero de cada pedido.
+     */
+    SistemaAlmacenamiento(Integer totalPedidos, PoliticaAsignacion politica) {
+        this(totalPedidos, politica, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructor del sistema con política y cantidad de franjas explícitas.
+     * @param totalPedidos cantidad total de pedidos a gestionar en el sistema.
+     * @param politica criterio para elegir el casillero de cada pedido.
+     * @param nFranjas cantidad de franjas en las que se reparten los casilleros.
+     */
+    SistemaAlmacenamiento(Integer totalPedidos, PoliticaAsignacion politica, int nFranjas) {
+        this(totalPedidos, N_CASILLEROS, politica, nFranjas);
+    }
+
+    /**
+     * Constructor del sistema con todos los parámetros de la grilla.
+     * @param totalPedidos cantidad total de pedidos a gestionar en el sistema.
+     * @param nCasilleros cantidad de casilleros de la grilla.
+     * @param politica criterio para elegir el casillero de cada pedido.
+     * @param nFranjas cantidad de franjas en las que se reparten los casilleros.
+     */
+    SistemaAlmacenamiento(Integer totalPedidos, int nCasilleros, PoliticaAsignacion politica, int nFranjas) {
+        this(totalPedidos, nCasilleros, politica, nFranjas, new SaludCasilleros(nCasilleros));
+    }
+
+    /**
+     * Constructor del sistema con todos los parámetros de la grilla y su salud.
+     * @param totalPedidos cantidad total de pedidos a gestionar en el sistema.
+     * @param nCasilleros cantidad de casilleros de la grilla.
+     * @param politica criterio para elegir el casillero de cada pedido.
+     * @param nFranjas cantidad de franjas en las que se reparten los casilleros.
+     * @param salud historial de fallas y cola de reparación de los casilleros.
+     */
+    SistemaAlmacenamiento(Integer totalPedidos, int nCasilleros, PoliticaAsignacion politica, int nFranjas,
+                          SaludCasilleros salud) {
+        this.nCasilleros = nCasilleros;
+        this.salud = salud;
+        matriz = new ArrayList<>(nCasilleros);
+        for (int i = 0; i < nCasilleros; i++) {
             matriz.add(new Casillero());
         }
-        cantPedidos = 0;
+        nFranjas = Math.max(1, Math.min(nFranjas, nCasilleros));
+        franjas = new FranjaCasilleros[nFranjas];
+        int desde = 0;
+        for (int f = 0; f < nFranjas; f++) {
+            int cantidad = nCasilleros / nFranjas + (f < nCasilleros % nFranjas ? 1 : 0);
+            franjas[f] = new FranjaCasilleros(matriz, politica, desde, cantidad, salud);
+            desde += cantidad;
+        }
+        casillerosLibres = new Semaphore(nCasilleros);
+        cantPedidos = new AtomicInteger(0);
         this.totalPedidos = totalPedidos;
     }
 
     /**
      * Método para ocupar un casillero vacío y funcional.
-     * Espera si todos los casilleros están llenos.
-     * @return Pedido asociado al casillero ocupado.
+     * Reserva un lugar en el semáforo de libres y luego toma el casillero de la
+     * franja propia del hilo, o de otra franja si la propia está vacía o tomada.
+     * Espera si no queda ningún casillero libre.
+     * @return Pedido asociado al casillero ocupado, o null si el hilo fue interrumpido
+     *         o el sistema quedó agotado.
      */
     public Pedido ocuparCasillero() {
-        lockCasillero.lock();
-        try {
-            int nroCasillero;
-            Casillero casillero;
-
-            while (casillerosVisitados == N_CASILLEROS) {
-                log("CASILLEROS_LLENOS", null);
-                try {
-                    casilleroLibre.await();    
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
-                }
+        if (!casillerosLibres.tryAcquire()) {
+            log(AccionEvento.CASILLEROS_LLENOS, null);
+            try {
+                casillerosLibres.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
             }
+        }
+
+        return ocuparReservado();
+    }
+
+    /**
+     * Variante no bloqueante de {@link #ocuparCasillero()}.
+     * @return Pedido asociado al casillero ocupado, o null si no hay casilleros libres.
+     */
+    public Pedido intentarOcuparCasillero() {
+        if (!casillerosLibres.tryAcquire()) {
+            return null;
+        }
+        return ocuparReservado();
+    }
+
+    /**
+     * Variante no bloqueante que ocupa un casillero sin crear el {@link Pedido}; la usa
+     * el motor de eventos discretos, que guarda los pedidos en un {@link AlmacenPedidos}.
+     * @return número de casillero ocupado, o -1 si no hay casilleros libres.
+     */
+    public int intentarOcuparNumero() {
+        if (!casillerosLibres.tryAcquire() || agotado.get()) {
+            return -1;
+        }
+        int nroCasillero = tomarCasilleroReservado();
+        matriz.get(nroCasillero).intentarOcupar();
+        ocupados.increment();
+        return nroCasillero;
+    }
+
+    private Pedido ocuparReservado() {
+        if (agotado.get()) {
+            return null;
+        }
+        int nroCasillero = tomarCasilleroReservado();
+        matriz.get(nroCasillero).intentarOcupar();
+        ocupados.increment();
+
+        Pedido pedido = new Pedido(nroCasillero, cantPedidos.incrementAndGet());
+        anotar(EventoTraza.OCUPAR, pedido.id, nroCasillero);
+        log(AccionEvento.CASILLERO_OCUPADO, pedido);
+        return pedido;
+    }
 
-            while (true) {
-                nroCasillero = new Random().nextInt(N_CASILLEROS);
-                casillero = matriz.get(nroCasillero);
-                if (casillero.estaVacio()) {
-                    casillerosVisitados++;
-                    casillero.ocupar();
-                    break;
+    /**
+     * Ocupa un casillero elegido de antemano, si está libre. La usa la reproducción
+     * de una traza, que repite las elecciones de la corrida original.
+     * @param nro número de casillero.
+     * @return true si el casillero estaba libre y quedó ocupado.
+     */
+    public boolean ocuparNumero(int nro) {
+        if (agotado.get() || !casillerosLibres.tryAcquire()) {
+            return false;
+        }
+        if (!franjaDe(nro).tomarNumero(nro)) {
+            casillerosLibres.release();
+            return false;
+        }
+        matriz.get(nro).intentarOcupar();
+        ocupados.increment();
+        return true;
+    }
+
+    /**
+     * Busca el casillero correspondiente a un lugar ya reservado en el semáforo.
+     * Primero recorre las franjas sin bloquear; si todas están tomadas, espera
+     * el lock de cada una en orden. Siempre termina porque la reserva garantiza
+     * que hay un casillero libre sin reclamar.
+     * @return número de casillero tomado.
+     */
+    private int tomarCasilleroReservado() {
+        RandomGenerator rnd = FuenteAleatoria.actual();
+        int inicio = (int) (Thread.currentThread().getId() % franjas.length);
+        boolean esperar = false;
+        while (true) {
+            for (int i = 0; i < franjas.length; i++) {
+                int nro = franjas[(inicio + i) % franjas.length].tomar(rnd, esperar);
+                if (nro >= 0) {
+                    return nro;
                 }
             }
+            esperar = true;
+        }
+    }
 
-            Pedido pedido = new Pedido(nroCasillero, ++cantPedidos);
-            log("CASILLERO_OCUPADO ", pedido);
-            return pedido;
-        } catch (Exception e) {
-            return null;
-        } finally {
-            lockCasillero.unlock();
+    /**
+     * @param nro número de casillero.
+     * @return franja a la que pertenece el casillero.
+     */
+    private FranjaCasilleros franjaDe(int nro) {
+        int base = nCasilleros / franjas.length;
+        int resto = nCasilleros % franjas.length;
+        int limite = resto * (base + 1);
+        if (nro < limite) {
+            return franjas[nro / (base + 1)];
         }
+        return franjas[resto + (nro - limite) / base];
     }
 
     /**
      * Método para desocupar un casillero previamente ocupado.
-     * Notifica a hilos en espera de casilleros disponibles.
+     * Despierta a un único hilo en espera de casilleros disponibles.
      * @param pedido Pedido asociado al casillero a desocupar.
      */
     public void desocuparCasillero(Pedido pedido) {
-        lockCasillero.lock();
-        try {
-            matriz.get(pedido.getCasillero()).desocupar();
-            casillerosVisitados--;
-            casilleroLibre.signalAll(); 
-            log("CASILLERO_LIBERADO", pedido);
-        } 
-        finally{
-            lockCasillero.unlock();
+        desocupar(pedido.getCasillero(), pedido.id);
+        log(AccionEvento.CASILLERO_LIBERADO, pedido);
+    }
+
+    /**
+     * Desocupa un casillero por número, sin registrar el evento.
+     * @param nro número de casillero.
+     */
+    public void desocuparCasillero(int nro) {
+        desocupar(nro, -1);
+    }
+
+    private void desocupar(int nro, int pedido) {
+        if (matriz.get(nro).intentarDesocupar()) {
+            anotar(EventoTraza.LIBERAR, pedido, nro);
+            ocupados.decrement();
+            franjaDe(nro).liberar(nro);
+            casillerosLibres.release();
         }
     }
 
     /**
-     * Marca un casillero como fuera de servicio.
+     * Desocupa los casilleros de un lote de pedidos. Agrupa los casilleros por franja
+     * para tomar cada lock una sola vez, y libera todos los lugares del semáforo de
+     * una vez.
+     * @param pedidos arreglo con los pedidos cuyos casilleros se liberan.
+     * @param n cantidad de pedidos del arreglo, desde el principio.
+     */
+    public void desocuparCasilleros(Pedido[] pedidos, int n) {
+        int[] nros = new int[n];
+        int liberados = 0;
+        for (int i = 0; i < n; i++) {
+            int nro = pedidos[i].getCasillero();
+            if (matriz.get(nro).intentarDesocupar()) {
+                anotar(EventoTraza.LIBERAR, pedidos[i].id, nro);
+                nros[liberados++] = nro;
+            }
+        }
+        if (liberados > 0) {
+            // Las franjas son rangos contiguos: ordenar agrupa los casilleros de cada una.
+            Arrays.sort(nros, 0, liberados);
+            int desde = 0;
+            while (desde < liberados) {
+                FranjaCasilleros franja = franjaDe(nros[desde]);
+                int hasta = desde + 1;
+                while (hasta < liberados && franja.contiene(nros[hasta])) {
+                    hasta++;
+                }
+                franja.liberarTodos(nros, desde, hasta);
+                desde = hasta;
+            }
+            ocupados.add(-liberados);
+            casillerosLibres.release(liberados);
+        }
+        for (int i = 0; i < n; i++) {
+            log(AccionEvento.CASILLERO_LIBERADO, pedidos[i]);
+        }
+    }
+
+    /**
+     * Marca un casillero ocupado como fuera de servicio.
+     * El casillero no vuelve al índice de libres, por lo que no libera lugar en el semáforo.
      * @param pedido Pedido asociado al casillero fallido.
      */
     public void setCasilleroFueraServicio(Pedido pedido) {
-            lockCasillero.lock();
-            try {
-                matriz.get(pedido.getCasillero()).setFueraServicio();
-                log("PEDIDO_FALLIDO   ", pedido);   
-            } 
-            finally{
-                lockCasillero.unlock();
+        fueraServicio(pedido.getCasillero(), pedido.id);
+        log(AccionEvento.PEDIDO_FALLIDO, pedido);
+    }
+
+    /**
+     * Marca un casillero ocupado como fuera de servicio por número, sin registrar el evento.
+     * Lo anota en la salud de la grilla, que lo encola para reparar si hay reparadores.
+     * @param nro número de casillero.
+     */
+    public void setCasilleroFueraServicio(int nro) {
+        fueraServicio(nro, -1);
+    }
+
+    private void fueraServicio(int nro, int pedido) {
+        if (matriz.get(nro).intentarFueraServicio()) {
+            anotar(EventoTraza.AVERIAR, pedido, nro);
+            ocupados.decrement();
+            fueraServicio.increment();
+            salud.averiar(nro);
+            if (!salud.conReparacion() && fueraServicio.sum() == nCasilleros) {
+                agotar();
             }
+        }
+    }
+
+    /**
+     * Devuelve a la grilla un casillero fuera de servicio: vuelve vacío a su franja,
+     * que lo clasifica como sano o degradado según su historial, y libera su lugar en
+     * el semáforo.
+     * @param nro número de casillero.
+     */
+    public void repararCasillero(int nro) {
+        if (matriz.get(nro).intentarReparar()) {
+            anotar(EventoTraza.REPARAR, -1, nro);
+            fueraServicio.decrement();
+            salud.reparado(nro);
+            franjaDe(nro).liberar(nro);
+            casillerosLibres.release();
+            log(AccionEvento.CASILLERO_REPARADO, null);
+        }
+    }
+
+    /**
+     * Sin casilleros funcionales ni reparación, ningún productor va a conseguir
+     * casillero: se despierta a los que esperan para que desistan.
+     */
+    private void agotar() {
+        if (agotado.compareAndSet(false, true)) {
+            casillerosLibres.release(Integer.MAX_VALUE / 2);
+        }
+    }
+
+    /**
+     * Empieza a anotar en una traza las ocupaciones, liberaciones, averías y
+     * reparaciones de casilleros.
+     * @param traza traza de la corrida, o null para dejar de anotar.
+     */
+    public void setTraza(TrazaEjecucion traza) {
+        this.traza = traza;
+    }
+
+    private void anotar(EventoTraza evento, int pedido, int nro) {
+        TrazaEjecucion t = traza;
+        if (t != null) {
+            t.anotar(evento, pedido, nro);
+        }
+    }
+
+    /**
+     * @return true si la grilla quedó toda fuera de servicio sin reparación posible.
+     */
+    public boolean isAgotado() {
+        return agotado.get();
+    }
+
+    /**
+     * @return historial de fallas y cola de reparación de los casilleros.
+     */
+    public SaludCasilleros getSalud() {
+        return salud;
+    }
+
+    /**
+     * Activa o desactiva el registro en consola de cada operación.
+     * @param activo true para registrar.
+     */
+    public void setLogActivo(boolean activo) {
+        logActivo = activo;
     }
 
     /**
@@ -114,43 +390,76 @@ public class SistemaAlmacenamiento {
     }
 
     /**
+     * @return Cantidad de casilleros de la grilla.
+     */
+    public int getCantidadCasilleros() {
+        return nCasilleros;
+    }
+
+    /**
+     * Lectura sin locks, pensada para muestreo frecuente.
+     * @return Cantidad de casilleros ocupados en este momento.
+     */
+    public int getCantidadOcupados() {
+        return (int) ocupados.sum();
+    }
+
+    /**
+     * @return Locks de las franjas de casilleros, en orden, con sus tiempos de espera.
+     */
+    public LockMedido[] getLocks() {
+        LockMedido[] locks = new LockMedido[franjas.length];
+        for (int f = 0; f < franjas.length; f++) {
+            locks[f] = franjas[f].getLock();
+        }
+        return locks;
+    }
+
+    /**
+     * Lectura sin locks, pensada para muestreo frecuente.
+     * @return Cantidad de casilleros fuera de servicio en este momento.
+     */
+    public int getCantidadFueraServicio() {
+        return (int) fueraServicio.sum();
+    }
+
+    /**
+     * Lectura sin locks del contador de fuera de servicio, que se actualiza en la
+     * misma transición CAS del casillero.
      * @return Cantidad de casilleros marcados como fuera de servicio.
      */
     public Integer getCasillerosFallidos() {
-        int fallidos = 0;
-        for (int i = 0; i < N_CASILLEROS; i++) {
-            if (matriz.get(i).estaFueraServicio()) {
-                fallidos++;
-            }
-        }
-        return fallidos;
+        return (int) fueraServicio.sum();
     }
 
     /**
      * @return Cantidad de casilleros funcionales.
      */
     public Integer getCasillerosFuncionales() {
-        int funcionando = 0;
-        for (int i = 0; i < N_CASILLEROS; i++) {
-            if (!matriz.get(i).estaFueraServicio()) {
-                funcionando++;
-            }
-        }
-        return funcionando;
+        return nCasilleros - getCasillerosFallidos();
+    }
+
+    /**
+     * Toma una foto de la grilla en una pasada paralela, sin detener a los hilos
+     * (ver {@link InstantaneaCasilleros}).
+     * @param ranking cantidad de casilleros en los rankings de más y menos usados.
+     * @param conGrilla si es true, la foto guarda el estado y el contador de cada casillero.
+     * @return foto de la grilla.
+     */
+    public InstantaneaCasilleros tomarInstantanea(int ranking, boolean conGrilla) {
+        return InstantaneaCasilleros.tomar(matriz, ranking, conGrilla);
     }
 
     /**
-     * Registra en consola información sobre acciones realizadas en el sistema.
+     * Registra en el log de eventos asíncrono una acción realizada en el sistema.
      * @param accion Descripción de la acción.
      * @param pedido Pedido involucrado (puede ser null).
      */
-    private void log(String accion, Pedido pedido) {
-        String msg = String.format("%1$tF %1$tT.%1$tL [%2$s] %3$s %4$s",
-                new Date(),
-                Thread.currentThread().getName(),
-                accion,
-                (pedido != null ? pedido : ""));
-        System.out.println(msg);
+    private void log(AccionEvento accion, Pedido pedido) {
+        if (!logActivo) {
+            return;
+        }
+        RegistroEventos.log(accion, pedido);
     }
 
     /**
@@ -0,0 +1,89 @@
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Archivo donde se vuelcan los pedidos terminados (fallidos y verificados) cuando
+ * el registro no los retiene en memoria.
+ *
+ * Formato: cabecera de {@value #CABECERA} bytes (magia, versión, tamaño de registro,
+ * reservado) seguida de registros de {@value #TAM_REGISTRO} bytes en big-endian:
+ * número de pedido, casillero, estado final (ordinal de {@link EstadoPedido}) y
+ * latencia total en nanosegundos (0 si el pedido falló).
+ *
+ * Las escrituras se protegen con un {@link ReentrantLock} y no con
+ * {@code synchronized}, porque pueden llegar al disco y un hilo virtual que espera
+ * dentro de un bloque sincronizado retiene su hilo portador.
+ */
+public class SumideroTerminales implements Closeable {
+    public static final int MAGIA = 0x5445524D; // "TERM"
+    public static final int VERSION = 1;
+    public static final int CABECERA = 16;
+    public static final int TAM_REGISTRO = 4 + 4 + 1 + 8;
+
+    private final DataOutputStream salida;
+    private final ReentrantLock lock = new ReentrantLock();
+    private long registros;
+
+    /**
+     * Crea (o reemplaza) el archivo de volcado.
+     * @param ruta archivo de destino.
+     * @throws IOException si no se puede crear el archivo.
+     */
+    public SumideroTerminales(Path ruta) throws IOException {
+        salida = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(ruta), 1 << 16));
+        salida.writeInt(MAGIA);
+        salida.writeInt(VERSION);
+        salida.writeInt(TAM_REGISTRO);
+        salida.writeInt(0);
+    }
+
+    /**
+     * Vuelca un pedido terminado. Se puede llamar desde varios hilos.
+     * @param id número de pedido.
+     * @param casillero casillero que ocupó el pedido (-1 si no tiene).
+     * @param estado FALLIDO o VERIFICADO.
+     * @param latenciaTotal nanosegundos desde que se ocupó el casillero, o 0.
+     */
+    public void volcar(int id, int casillero, EstadoPedido estado, long latenciaTotal) {
+        lock.lock();
+        try {
+            salida.writeInt(id);
+            salida.writeInt(casillero);
+            salida.writeByte(estado.ordinal());
+            salida.writeLong(latenciaTotal);
+            registros++;
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo volcar el Pedido #" + id, e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return cantidad de pedidos volcados.
+     */
+    public long getRegistros() {
+        lock.lock();
+        try {
+            return registros;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            salida.close();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
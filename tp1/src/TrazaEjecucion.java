@@ -0,0 +1,131 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Traza binaria de una corrida en tiempo real: el orden en que se tomaron las
+ * decisiones sobre casilleros y los pasos de cada pedido entre etapas. La lee
+ * {@link ReproductorTraza} para repetir la corrida sin esperas.
+ *
+ * Para que el orden de la traza sea siempre reproducible, las operaciones que dejan
+ * un casillero disponible (liberar, reparar) se anotan antes de devolverlo a la
+ * grilla, y las que lo ocupan, después de sacarlo: así la liberación de un casillero
+ * siempre queda antes de su próxima ocupación. Del mismo modo, cada paso de un
+ * pedido se anota antes de pasarlo a la cola siguiente.
+ *
+ * Los registros se acumulan en un buffer bajo un lock corto y se vuelcan al archivo
+ * cuando se llena. Formato: cabecera de {@value #CABECERA} bytes (magia, versión,
+ * tamaño de registro, casilleros, franjas, política, pedidos, capacidad de las
+ * etapas y cantidad de registros) seguida de registros de {@value #TAM_REGISTRO}
+ * bytes (evento, pedido, dato), en orden little-endian.
+ */
+public class TrazaEjecucion implements Closeable {
+    public static final int MAGIA = 0x54524143; // "TRAC"
+    public static final int VERSION = 1;
+    public static final int CABECERA = 40;
+    public static final int TAM_REGISTRO = 1 + 4 + 4;
+
+    private static final int TAM_BUFFER = 1 << 16;
+    private static final EventoTraza[] EVENTOS = EventoTraza.values();
+
+    private final FileChannel canal;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(TAM_BUFFER).order(ByteOrder.LITTLE_ENDIAN);
+    private final ReentrantLock lock = new ReentrantLock();
+    private long registros;
+    private boolean cerrada;
+
+    /**
+     * Crea (o reemplaza) la traza en la ruta indicada.
+     * @param ruta archivo de la traza.
+     * @param cfg escenario de la corrida; su grilla y sus colas se guardan en la cabecera.
+     * @throws IOException si no se puede crear el archivo.
+     */
+    public TrazaEjecucion(Path ruta, ConfiguracionEscenario cfg) throws IOException {
+        canal = FileChannel.open(ruta, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        buffer.putInt(MAGIA).putInt(VERSION).putInt(TAM_REGISTRO).putInt(cfg.getCasilleros())
+                .putInt(cfg.getFranjas()).putInt(cfg.getPolitica().ordinal()).putInt(cfg.getPedidos())
+                .putInt(cfg.getCapacidadEtapa()).putLong(0);
+    }
+
+    /**
+     * Anota una decisión.
+     * @param evento decisión tomada.
+     * @param pedido número de pedido, o -1 si no involucra a uno.
+     * @param dato dato del evento (ver {@link EventoTraza}).
+     */
+    public void anotar(EventoTraza evento, int pedido, int dato) {
+        lock.lock();
+        try {
+            if (cerrada) {
+                return;
+            }
+            if (buffer.remaining() < TAM_REGISTRO) {
+                volcar();
+            }
+            buffer.put((byte) evento.ordinal()).putInt(pedido).putInt(dato);
+            registros++;
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo escribir la traza", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void volcar() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            canal.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * @return registros anotados hasta ahora.
+     */
+    public long getRegistros() {
+        lock.lock();
+        try {
+            return registros;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Vuelca lo pendiente, completa la cantidad de registros en la cabecera y cierra
+     * el archivo. Las anotaciones posteriores se ignoran.
+     * @throws IOException si falla la escritura.
+     */
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if (cerrada) {
+                return;
+            }
+            cerrada = true;
+            volcar();
+            ByteBuffer cantidad = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN).putLong(0, registros);
+            canal.write(cantidad, CABECERA - 8);
+            canal.force(true);
+            canal.close();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @param codigo código de evento leído de la traza.
+     * @return el evento correspondiente.
+     */
+    static EventoTraza evento(byte codigo) {
+        return EVENTOS[codigo];
+    }
+}
@@ -1,65 +1,177 @@
-import java.util.Date;
-import java.util.Random;
 
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Clase VerificacionFinal que controla los pedidos entregados y los pasa a
+ * verificados o informa su falla al registro.
+ * Cada pedido pasa por una {@link CadenaVerificacion}. Con {@code verificacion.lote}
+ * mayor a 1, cada verificador retira un lote de entregados de una vez y lanza los
+ * controles de todos sus pedidos a la vez, así que la etapa no atiende de a un
+ * pedido por hilo; la espera de la etapa es por lote.
+ */
 public class VerificacionFinal implements Runnable {
+    /** Máximo de hilos de plataforma para los controles de un verificador. */
+    public static final int MAX_HILOS_CONTROLES = 256;
+
     private RegistrodePedidos registropedidos;
-    private boolean finalizacion = false;
+    private ConfiguracionEscenario configuracion;
+    private final CadenaVerificacion cadena;
 
     public VerificacionFinal(RegistrodePedidos registropedidos) {
+        this(registropedidos, new ConfiguracionEscenario());
+    }
+
+    /**
+     * Constructor.
+     * @param registropedidos referencia al registro compartido de pedidos.
+     * @param configuracion escenario con la tasa de falla y los tiempos de verificación.
+     */
+    public VerificacionFinal(RegistrodePedidos registropedidos, ConfiguracionEscenario configuracion) {
+        this(registropedidos, configuracion, new FabricaHilos(ModoHilos.PLATAFORMA));
+    }
+
+    /**
+     * Constructor.
+     * @param registropedidos referencia al registro compartido de pedidos.
+     * @param configuracion escenario con la tasa de falla y los tiempos de verificación.
+     * @param fabrica fábrica de los hilos en los que corren los controles en paralelo.
+     */
+    public VerificacionFinal(RegistrodePedidos registropedidos, ConfiguracionEscenario configuracion,
+                             FabricaHilos fabrica) {
+        this(registropedidos, configuracion, crearCadena(configuracion, fabrica));
+    }
+
+    /**
+     * Constructor con una cadena de controles propia.
+     * @param registropedidos referencia al registro compartido de pedidos.
+     * @param configuracion escenario con los tiempos y el lote de verificación.
+     * @param cadena controles que debe pasar cada pedido.
+     */
+    public VerificacionFinal(RegistrodePedidos registropedidos, ConfiguracionEscenario configuracion,
+                             CadenaVerificacion cadena) {
         this.registropedidos = registropedidos;
+        this.configuracion = configuracion;
+        this.cadena = cadena;
+    }
+
+    /**
+     * Los controles corren en paralelo si son varios o si se verifica por lotes; un
+     * único control de a un pedido corre en el hilo del verificador, como el original.
+     * Con hilos de plataforma, alcanzan tantos como controles pueden estar en curso a
+     * la vez, hasta {@value #MAX_HILOS_CONTROLES}.
+     */
+    private static CadenaVerificacion crearCadena(ConfiguracionEscenario configuracion, FabricaHilos fabrica) {
+        List<VerificadorSimulado> controles = configuracion.crearControlesVerificacion();
+        long enCurso = (long) configuracion.getHilosVerificacion() * configuracion.getLoteVerificacion()
+                * controles.size();
+        return new CadenaVerificacion(controles, controles.size() > 1 || configuracion.getLoteVerificacion() > 1,
+                fabrica, (int) Math.max(1, Math.min(enCurso, MAX_HILOS_CONTROLES)));
     }
     
-    public void VerificarPedido() {
+    /**
+     * Verifica un pedido de la lista de entregados o informa su falla al registro.
+     * @return false si la etapa de entregados se cerró y no hay más pedidos.
+     */
+    public boolean VerificarPedido() {
         Pedido pedido = registropedidos.getListaEntregados();
-        if (pedido.pedidoPoison()) {
-            registropedidos.addListaEntregados(pedido);
-            finalizacion = true;
-            return;
+        if (pedido == null) {
+            return false;
         }
+        verificar(pedido);
+        return true;
+    }
 
-        Random rnd = new Random();
+    /**
+     * Verifica un pedido ya retirado de la lista de entregados de este almacén.
+     * @param pedido pedido a verificar.
+     */
+    public void verificar(Pedido pedido) {
+        registrar(pedido, cadena.verificar(pedido));
+    }
 
-        if (rnd.nextInt(100) < 5) { // 5% de fallas
-            pedido.setFallido();
-            registropedidos.addListaFallidos(pedido);
-            log("PEDIDO_FALLIDO", pedido);
-        } else {
+    /**
+     * Verifica un lote: retira hasta {@code max} pedidos de entregados de una vez,
+     * lanza los controles de todos y registra cada pedido en cuanto termina su
+     * verificación, en el hilo del control que la completó; después espera el lote
+     * entero.
+     * @param lote arreglo de trabajo, de al menos {@code max} posiciones.
+     * @param registrados arreglo de trabajo para las registraciones, del mismo tamaño.
+     * @param max cantidad máxima de pedidos a verificar.
+     * @return cantidad de pedidos verificados; 0 si la etapa de entregados se cerró.
+     */
+    public int verificarLote(Pedido[] lote, CompletableFuture<?>[] registrados, int max) {
+        int n = registropedidos.drainEntregados(lote, max);
+        for (int i = 0; i < n; i++) {
+            Pedido pedido = lote[i];
+            registrados[i] = cadena.verificarAsync(pedido).thenAccept(aprobado -> registrar(pedido, aprobado));
+        }
+        for (int i = 0; i < n; i++) {
+            registrados[i].join();
+            registrados[i] = null;
+        }
+        return n;
+    }
+
+    private void registrar(Pedido pedido, boolean aprobado) {
+        if (aprobado) {
             registropedidos.addListaVerificados(pedido);
-            log("PEDIDO_VERIFICADO", pedido);
+            log(AccionEvento.PEDIDO_VERIFICADO, pedido);
+        } else {
+            registropedidos.fallar(pedido, EtapaFalla.VERIFICACION);
+            log(AccionEvento.PEDIDO_FALLIDO, pedido);
         }
     }
 
+    /**
+     * @return controles que pasa cada pedido.
+     */
+    public CadenaVerificacion getCadena() {
+        return cadena;
+    }
+
 
      /**
-     * Registra en consola información sobre acciones realizadas en el sistema.
+     * Registra en el log de eventos asíncrono una acción realizada en el sistema.
      * @param accion Descripción de la acción.
      * @param pedido Pedido involucrado (puede ser null).
      */
-    private void log(String accion, Pedido pedido) {
-        String msg = String.format("%1$tF %1$tT.%1$tL [%2$s] %3$s %4$s",
-                new Date(),
-                Thread.currentThread().getName(),
-                accion,
-                (pedido != null ? pedido : ""));
-        System.out.println(msg);
+    private void log(AccionEvento accion, Pedido pedido) {
+        if (!configuracion.isLog()) {
+            return;
+        }
+        RegistroEventos.log(accion, pedido);
     }
 
 
      /**
-     * Ejecuta el hilo de verificacion hasta completar la cantidad total de pedidos.
+     * Ejecuta el hilo de verificacion hasta que se cierra la etapa de entregados.
      */
     @Override
     public void run() {
-        while (!finalizacion){
-            VerificarPedido();
-            try {
-                Random rnd = new Random();
-                Thread.sleep(rnd.nextInt(60, 120));
-            } catch (InterruptedException e) {
-                e.printStackTrace();
+        int tamLote = configuracion.getLoteVerificacion();
+        if (tamLote > 1) {
+            Pedido[] lote = new Pedido[tamLote];
+            CompletableFuture<?>[] registrados = new CompletableFuture<?>[tamLote];
+            while (verificarLote(lote, registrados, tamLote) > 0) {
+                esperar();
+            }
+        } else {
+            while (VerificarPedido()) {
+                esperar();
+            }
+        }
+        log(AccionEvento.VERIFICACION_FINALIZACION, null);
+    }
+
+    private void esperar() {
+        try {
+            int espera = configuracion.getEsperaVerificacion().sortear(FuenteAleatoria.actual());
+            if (espera > 0) {
+                Thread.sleep(espera);
             }
+        } catch (InterruptedException e) {
+            e.printStackTrace();
         }
-        log("VERIFICACION_FINALIZACION", null);
-        
     }
 }
\ No newline at end of file
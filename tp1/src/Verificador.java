@@ -0,0 +1,21 @@
+/**
+ * Control que forma parte de la verificación final de un pedido (firma, foto,
+ * dirección, ...). Los controles de una {@link CadenaVerificacion} corren en
+ * paralelo, así que cada uno debe poder llamarse desde varios hilos a la vez y no
+ * depender del resultado de los otros. Si otro control ya rechazó el pedido, se
+ * interrumpe el hilo del control: puede cortar su espera, y lo que devuelva se
+ * descarta.
+ */
+public interface Verificador {
+    /**
+     * @return nombre del control, para los resúmenes.
+     */
+    String getNombre();
+
+    /**
+     * Controla un pedido entregado. Puede tardar (por ejemplo, si consulta un servicio externo).
+     * @param pedido pedido a controlar; no se modifica.
+     * @return true si el pedido pasa el control.
+     */
+    boolean verificar(Pedido pedido);
+}
@@ -0,0 +1,54 @@
+/**
+ * Control simulado: tarda un tiempo sorteado dentro de un rango y falla con una
+ * probabilidad fija, con la aleatoriedad del hilo que lo ejecuta.
+ */
+public class VerificadorSimulado implements Verificador {
+    private final String nombre;
+    private final double falla;
+    private final ConfiguracionEscenario.RangoEspera espera;
+
+    /**
+     * Constructor.
+     * @param nombre nombre del control.
+     * @param falla porcentaje de pedidos que no pasan el control.
+     * @param espera tiempo que tarda el control con cada pedido, en milisegundos.
+     */
+    public VerificadorSimulado(String nombre, double falla, ConfiguracionEscenario.RangoEspera espera) {
+        this.nombre = nombre;
+        this.falla = falla;
+        this.espera = espera;
+    }
+
+    @Override
+    public String getNombre() {
+        return nombre;
+    }
+
+    @Override
+    public boolean verificar(Pedido pedido) {
+        int ms = espera.sortear(FuenteAleatoria.actual());
+        if (ms > 0) {
+            try {
+                Thread.sleep(ms);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return FuenteAleatoria.actual().nextDouble() * 100 >= falla;
+    }
+
+    /** @return porcentaje de pedidos que no pasan el control. */
+    public double getFalla() {
+        return falla;
+    }
+
+    /** @return tiempo que tarda el control con cada pedido. */
+    public ConfiguracionEscenario.RangoEspera getEspera() {
+        return espera;
+    }
+
+    @Override
+    public String toString() {
+        return nombre + ":" + falla + ":" + espera;
+    }
+}